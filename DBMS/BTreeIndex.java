@@ -0,0 +1,465 @@
+package DBMS;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Disk-based B+tree secondary index of one column, stored in
+ * Tables/<table>/<column>.bt as fixed-size nodes. Every entry maps a column
+ * value to the (page, slot) of the record holding it; entries are ordered by
+ * value in the order of the column type, then by page and slot, so equal
+ * values are kept apart and every entry is unique.
+ *
+ * Layout:
+ *   node 0    header [magic int, version int, root int, nodeCount int, height int, size long]
+ *   leaf      [1 byte, count short, next leaf int, then per entry:
+ *             key length short, UTF-8 key, page int, slot int]
+ *   internal  [0 byte, count short, first child int, then per separator:
+ *             key length short, UTF-8 key, page int, slot int, child int]
+ *
+ * The child right of a separator holds the entries at or above it. Leaves are
+ * chained in order, so a range scan descends once and then walks the leaves.
+ * Lookups read height + 1 nodes plus the leaves of the range. Null values are
+ * not indexed.
+ */
+public class BTreeIndex implements AutoCloseable
+{
+	static final int MAGIC = 0x42545245; // "BTRE"
+	static final int VERSION = 1;
+	static final int NODE_SIZE = 4096;
+	// longest key in bytes, so that a split node always fits
+	static final int MAX_KEY_BYTES = 512;
+	private static final int LEAF_HEADER = 7;
+	private static final int INTERNAL_HEADER = 7;
+
+	private final File file;
+	private final ColumnType type;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private int root;
+	private int nodeCount;
+	private int height;
+	private long size;
+	private int nodeReads;
+
+	private static class Node
+	{
+		final int id;
+		boolean leaf;
+		int next = -1;
+		final ArrayList<String> keys = new ArrayList<String>();
+		final ArrayList<int[]> refs = new ArrayList<int[]>();
+		// internal nodes only: keys.size() + 1 children
+		final ArrayList<Integer> children = new ArrayList<Integer>();
+
+		Node(int id, boolean leaf)
+		{
+			this.id = id;
+			this.leaf = leaf;
+		}
+
+		int byteSize()
+		{
+			int res = leaf ? LEAF_HEADER : INTERNAL_HEADER;
+			for(String k : keys)
+			{
+				res += 2 + k.getBytes(StandardCharsets.UTF_8).length + 8 + (leaf ? 0 : 4);
+			}
+			return res;
+		}
+	}
+
+	// type orders the keys, null for columns compared as strings
+	public BTreeIndex(File file, ColumnType type) throws IOException
+	{
+		this.file = file;
+		this.type = type;
+		boolean exists = file.exists() && file.length() >= NODE_SIZE;
+		this.raf = new RandomAccessFile(file, "rw");
+		this.channel = raf.getChannel();
+		if(exists)
+		{
+			ByteBuffer header = ByteBuffer.allocate(28);
+			channel.read(header, 0);
+			header.flip();
+			if(header.getInt() != MAGIC)
+			{
+				close();
+				throw new IOException("Not a B+tree index: " + file);
+			}
+			header.getInt();
+			root = header.getInt();
+			nodeCount = header.getInt();
+			height = header.getInt();
+			size = header.getLong();
+		}
+		else
+		{
+			nodeCount = 1;
+			Node leaf = newNode(true);
+			root = leaf.id;
+			writeNode(leaf);
+			writeHeader();
+		}
+	}
+
+	private void writeHeader() throws IOException
+	{
+		ByteBuffer header = ByteBuffer.allocate(28);
+		header.putInt(MAGIC).putInt(VERSION).putInt(root).putInt(nodeCount).putInt(height).putLong(size);
+		header.flip();
+		channel.write(header, 0);
+	}
+
+	private Node newNode(boolean leaf)
+	{
+		return new Node(nodeCount++, leaf);
+	}
+
+	private Node readNode(int id) throws IOException
+	{
+		nodeReads++;
+		ByteBuffer buf = ByteBuffer.allocate(NODE_SIZE);
+		channel.read(buf, (long)id * NODE_SIZE);
+		buf.flip();
+		Node n = new Node(id, buf.get() == 1);
+		int count = buf.getShort();
+		if(n.leaf)
+		{
+			n.next = buf.getInt();
+		}
+		else
+		{
+			n.children.add(buf.getInt());
+		}
+		for(int i = 0; i < count; i++)
+		{
+			byte[] key = new byte[buf.getShort()];
+			buf.get(key);
+			n.keys.add(new String(key, StandardCharsets.UTF_8));
+			n.refs.add(new int[]{buf.getInt(), buf.getInt()});
+			if(!n.leaf)
+			{
+				n.children.add(buf.getInt());
+			}
+		}
+		return n;
+	}
+
+	private void writeNode(Node n) throws IOException
+	{
+		ByteBuffer buf = ByteBuffer.allocate(NODE_SIZE);
+		buf.put((byte)(n.leaf ? 1 : 0)).putShort((short)n.keys.size());
+		buf.putInt(n.leaf ? n.next : n.children.get(0));
+		for(int i = 0; i < n.keys.size(); i++)
+		{
+			byte[] key = n.keys.get(i).getBytes(StandardCharsets.UTF_8);
+			buf.putShort((short)key.length).put(key);
+			buf.putInt(n.refs.get(i)[0]).putInt(n.refs.get(i)[1]);
+			if(!n.leaf)
+			{
+				buf.putInt(n.children.get(i + 1));
+			}
+		}
+		buf.rewind();
+		channel.write(buf, (long)n.id * NODE_SIZE);
+	}
+
+	private int compareKeys(String a, String b)
+	{
+		return type == null ? a.compareTo(b) : type.compare(a, b);
+	}
+
+	// Orders entries by key, then page, then slot.
+	private int compare(String key, int page, int slot, String otherKey, int[] otherRef)
+	{
+		int c = compareKeys(key, otherKey);
+		if(c != 0)
+		{
+			return c;
+		}
+		c = Integer.compare(page, otherRef[0]);
+		return c != 0 ? c : Integer.compare(slot, otherRef[1]);
+	}
+
+	// Number of separators of an internal node at or below the entry, which
+	// is the child to descend into.
+	private int childIndex(Node n, String key, int page, int slot)
+	{
+		int lo = 0;
+		int hi = n.keys.size();
+		while(lo < hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			if(compare(key, page, slot, n.keys.get(mid), n.refs.get(mid)) >= 0)
+			{
+				lo = mid + 1;
+			}
+			else
+			{
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	public void insert(String key, int page, int slot) throws IOException
+	{
+		if(key == null)
+		{
+			return;
+		}
+		checkKey(key);
+		Object[] split = insert(readNode(root), key, page, slot);
+		if(split != null)
+		{
+			Node newRoot = newNode(false);
+			newRoot.children.add(root);
+			newRoot.keys.add((String)split[0]);
+			newRoot.refs.add((int[])split[1]);
+			newRoot.children.add((Integer)split[2]);
+			writeNode(newRoot);
+			root = newRoot.id;
+			height++;
+		}
+		size++;
+		writeHeader();
+	}
+
+	static void checkKey(String key)
+	{
+		if(key.getBytes(StandardCharsets.UTF_8).length > MAX_KEY_BYTES)
+		{
+			throw new IllegalArgumentException("Value too long for a B+tree index: " + key.length() + " characters");
+		}
+	}
+
+	// Inserts below the node; returns the separator and the new right
+	// sibling [key, ref, node id] when the node had to split.
+	private Object[] insert(Node n, String key, int page, int slot) throws IOException
+	{
+		int i = childIndex(n, key, page, slot);
+		if(n.leaf)
+		{
+			n.keys.add(i, key);
+			n.refs.add(i, new int[]{page, slot});
+		}
+		else
+		{
+			Object[] split = insert(readNode(n.children.get(i)), key, page, slot);
+			if(split == null)
+			{
+				return null;
+			}
+			n.keys.add(i, (String)split[0]);
+			n.refs.add(i, (int[])split[1]);
+			n.children.add(i + 1, (Integer)split[2]);
+		}
+		if(n.byteSize() <= NODE_SIZE)
+		{
+			writeNode(n);
+			return null;
+		}
+		return split(n);
+	}
+
+	private Object[] split(Node n) throws IOException
+	{
+		Node right = newNode(n.leaf);
+		int mid = n.keys.size() / 2;
+		Object[] res;
+		if(n.leaf)
+		{
+			right.keys.addAll(n.keys.subList(mid, n.keys.size()));
+			right.refs.addAll(n.refs.subList(mid, n.refs.size()));
+			right.next = n.next;
+			n.next = right.id;
+			res = new Object[]{right.keys.get(0), right.refs.get(0), right.id};
+		}
+		else
+		{
+			// the middle separator moves up
+			res = new Object[]{n.keys.get(mid), n.refs.get(mid), right.id};
+			right.keys.addAll(n.keys.subList(mid + 1, n.keys.size()));
+			right.refs.addAll(n.refs.subList(mid + 1, n.refs.size()));
+			right.children.addAll(n.children.subList(mid + 1, n.children.size()));
+			n.children.subList(mid + 1, n.children.size()).clear();
+		}
+		n.keys.subList(mid, n.keys.size()).clear();
+		n.refs.subList(mid, n.refs.size()).clear();
+		writeNode(n);
+		writeNode(right);
+		return res;
+	}
+
+	// Replaces the whole index with the entries, given as {key, page, slot}
+	// and sorted by sort(), filling the nodes bottom up. Nodes are filled to
+	// three quarters to leave room for later inserts.
+	public void build(List<Object[]> entries) throws IOException
+	{
+		channel.truncate(NODE_SIZE);
+		nodeCount = 1;
+		height = 0;
+		size = 0;
+		int fill = NODE_SIZE * 3 / 4;
+		ArrayList<Node> level = new ArrayList<Node>();
+		Node leaf = newNode(true);
+		int bytes = LEAF_HEADER;
+		for(Object[] e : entries)
+		{
+			String key = (String)e[0];
+			if(key == null)
+			{
+				continue;
+			}
+			checkKey(key);
+			int entryBytes = 2 + key.getBytes(StandardCharsets.UTF_8).length + 8;
+			if(bytes + entryBytes > fill && !leaf.keys.isEmpty())
+			{
+				Node next = newNode(true);
+				leaf.next = next.id;
+				writeNode(leaf);
+				level.add(leaf);
+				leaf = next;
+				bytes = LEAF_HEADER;
+			}
+			leaf.keys.add(key);
+			leaf.refs.add(new int[]{(Integer)e[1], (Integer)e[2]});
+			bytes += entryBytes;
+			size++;
+		}
+		writeNode(leaf);
+		level.add(leaf);
+		// smallest entry below every node of the level, which separates it
+		// from its left sibling one level up
+		ArrayList<String> minKeys = new ArrayList<String>();
+		ArrayList<int[]> minRefs = new ArrayList<int[]>();
+		for(Node n : level)
+		{
+			minKeys.add(n.keys.isEmpty() ? null : n.keys.get(0));
+			minRefs.add(n.refs.isEmpty() ? null : n.refs.get(0));
+		}
+		while(level.size() > 1)
+		{
+			ArrayList<Node> parents = new ArrayList<Node>();
+			ArrayList<String> parentKeys = new ArrayList<String>();
+			ArrayList<int[]> parentRefs = new ArrayList<int[]>();
+			Node parent = null;
+			for(int i = 0; i < level.size(); i++)
+			{
+				String key = minKeys.get(i);
+				int entryBytes = 2 + key.getBytes(StandardCharsets.UTF_8).length + 12;
+				if(parent == null || bytes + entryBytes > fill)
+				{
+					if(parent != null)
+					{
+						writeNode(parent);
+					}
+					parent = newNode(false);
+					parent.children.add(level.get(i).id);
+					parents.add(parent);
+					parentKeys.add(key);
+					parentRefs.add(minRefs.get(i));
+					bytes = INTERNAL_HEADER;
+					continue;
+				}
+				parent.keys.add(key);
+				parent.refs.add(minRefs.get(i));
+				parent.children.add(level.get(i).id);
+				bytes += entryBytes;
+			}
+			writeNode(parent);
+			level = parents;
+			minKeys = parentKeys;
+			minRefs = parentRefs;
+			height++;
+		}
+		root = level.get(0).id;
+		writeHeader();
+	}
+
+	// Sorts {key, page, slot} entries into index order.
+	public void sort(List<Object[]> entries)
+	{
+		entries.removeIf(e -> e[0] == null);
+		entries.sort((a, b) -> compare((String)a[0], (Integer)a[1], (Integer)a[2],
+				(String)b[0], new int[]{(Integer)b[1], (Integer)b[2]}));
+	}
+
+	// {page, slot} of every entry with low <= key <= high in index order; a
+	// null bound leaves that side open and the inclusive flags make the
+	// bounds strict when false.
+	public ArrayList<int[]> range(String low, boolean lowInclusive, String high, boolean highInclusive) throws IOException
+	{
+		ArrayList<int[]> res = new ArrayList<int[]>();
+		Node n = readNode(root);
+		while(!n.leaf)
+		{
+			n = readNode(n.children.get(low == null ? 0 : childIndex(n, low, Integer.MIN_VALUE, Integer.MIN_VALUE)));
+		}
+		while(true)
+		{
+			for(int i = 0; i < n.keys.size(); i++)
+			{
+				String key = n.keys.get(i);
+				if(low != null)
+				{
+					int c = compareKeys(key, low);
+					if(c < 0 || (c == 0 && !lowInclusive))
+					{
+						continue;
+					}
+				}
+				if(high != null)
+				{
+					int c = compareKeys(key, high);
+					if(c > 0 || (c == 0 && !highInclusive))
+					{
+						return res;
+					}
+				}
+				res.add(n.refs.get(i));
+			}
+			if(n.next < 0)
+			{
+				return res;
+			}
+			n = readNode(n.next);
+		}
+	}
+
+	public ArrayList<int[]> search(String key) throws IOException
+	{
+		return range(key, true, key, true);
+	}
+
+	public long size()
+	{
+		return size;
+	}
+
+	// Levels of internal nodes above the leaves, 0 while the root is a leaf.
+	public int getHeight()
+	{
+		return height;
+	}
+
+	// Nodes read since the index was opened.
+	public int getNodeReads()
+	{
+		return nodeReads;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		channel.close();
+		raf.close();
+	}
+}
@@ -0,0 +1,160 @@
+package DBMS;
+import java.io.File;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import java.util.*;
+import org.junit.Test;
+public class BTreeTests
+{
+
+	@Test(timeout = 1000000)
+	public void testPointAndRangeLookupsAcrossSplits() throws Exception
+	{
+		FileManager.reset();
+		File dir = new File(FileManager.directory, "bt0");
+		dir.mkdirs();
+		File file = new File(dir, "id.bt");
+		ArrayList<Integer> keys = new ArrayList<Integer>();
+		for(int i=0;i<20000;i++)
+		{
+			keys.add(i);
+		}
+		Collections.shuffle(keys, new Random(7));
+		try(BTreeIndex index = new BTreeIndex(file, ColumnType.INT))
+		{
+			for(int i=0;i<keys.size();i++)
+			{
+				index.insert(""+keys.get(i), i/100, i%100);
+			}
+			assertEquals(20000, index.size());
+			assertTrue("Twenty thousand keys should not fit in one leaf.", index.getHeight() > 0);
+		}
+		try(BTreeIndex index = new BTreeIndex(file, ColumnType.INT))
+		{
+			int before = index.getNodeReads();
+			ArrayList<int[]> hit = index.search("12345");
+			assertEquals(1, hit.size());
+			int at = keys.indexOf(12345);
+			assertEquals(at/100, hit.get(0)[0]);
+			assertEquals(at%100, hit.get(0)[1]);
+			assertEquals("A point lookup should read one node per level.", index.getHeight() + 1, index.getNodeReads() - before);
+			assertEquals(0, index.search("20000").size());
+
+			ArrayList<int[]> range = index.range("100", true, "199", true);
+			assertEquals(100, range.size());
+			for(int i=0;i<range.size();i++)
+			{
+				int pos = range.get(i)[0]*100 + range.get(i)[1];
+				assertEquals("Ranges should come back in key order.", 100+i, (int)keys.get(pos));
+			}
+			assertEquals(98, index.range("100", false, "199", false).size());
+			assertEquals(10, index.range(null, false, "9", true).size());
+			assertEquals(5, index.range("19995", true, null, false).size());
+		}
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testBuildKeepsDuplicatesApart() throws Exception
+	{
+		FileManager.reset();
+		File dir = new File(FileManager.directory, "bt1");
+		dir.mkdirs();
+		File file = new File(dir, "name.bt");
+		ArrayList<Object[]> entries = new ArrayList<Object[]>();
+		for(int i=0;i<5000;i++)
+		{
+			entries.add(new Object[]{"n"+(i%50), i/10, i%10});
+		}
+		entries.add(new Object[]{null, 600, 0});
+		try(BTreeIndex index = new BTreeIndex(file, null))
+		{
+			index.sort(entries);
+			index.build(entries);
+			assertEquals("Null values should not be indexed.", 5000, index.size());
+			ArrayList<int[]> hit = index.search("n7");
+			assertEquals(100, hit.size());
+			for(int i=1;i<hit.size();i++)
+			{
+				assertTrue("Equal keys should be ordered by position.",
+						hit.get(i-1)[0]*10+hit.get(i-1)[1] < hit.get(i)[0]*10+hit.get(i)[1]);
+			}
+			index.insert("n7", 500, 0);
+			assertEquals(101, index.search("n7").size());
+			assertEquals(200, index.range("n10", true, "n11", true).size());
+		}
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testSelectIndexUsesBTree() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 7;
+		DBApp.createTable("bt2", new String[]{"id","major","gpa"}, new ColumnType[]{ColumnType.INT, ColumnType.varchar(5), ColumnType.DOUBLE});
+		for(int i=0;i<50;i++)
+		{
+			DBApp.insert("bt2", new String[]{""+(i*3%50), "m"+(i%3), ""+(i%4)});
+		}
+		DBApp.createBTreeIndex("bt2", "id");
+		assertTrue(DBApp.getLastTrace("bt2").startsWith("B+tree index created for column: id"));
+		// maintained by later inserts
+		List<String[]> batch = new ArrayList<String[]>();
+		for(int i=50;i<60;i++)
+		{
+			batch.add(new String[]{""+i, "m"+(i%3), ""+(i%4)});
+		}
+		DBApp.insertBatch("bt2", batch);
+		DBApp.insert("bt2", new String[]{"7", "m9", "1.5"});
+
+		ArrayList<String[]> res = DBApp.selectIndex("bt2", new String[]{"id"}, new String[]{"7"});
+		assertEquals(2, res.size());
+		assertTrue(DBApp.getLastTrace("bt2").startsWith("Select index condition:[id]->[7], Indexed columns: [id], Indexed selection count: 2, Final count: 2"));
+		res = DBApp.selectIndex("bt2", new String[]{"id", "major"}, new String[]{"7", "m9"});
+		assertEquals(1, res.size());
+		assertTrue(DBApp.getLastTrace("bt2").contains("Indexed columns: [id], Indexed selection count: 2, Non Indexed: [major], Final count: 1"));
+
+		res = DBApp.selectIndex("bt2", Predicate.between("id", "10", "19"), Predicate.eq("major", "m1"));
+		int expected = 0;
+		for(String[] row : DBApp.select("bt2"))
+		{
+			int id = Integer.parseInt(row[0]);
+			if(id >= 10 && id <= 19 && row[1].equals("m1")) expected++;
+		}
+		assertEquals(expected, res.size());
+		assertTrue(DBApp.getLastTrace("bt2").contains("Indexed columns: [id], Indexed selection count: 10, Non Indexed: [major]"));
+		assertEquals(3, DBApp.selectIndex("bt2", Predicate.gt("id", "56")).size());
+		assertEquals(3, DBApp.selectIndex("bt2", Predicate.in("id", "0", "7", "100")).size());
+
+		ArrayList<String[]> ordered = DBApp.selectOrdered("bt2", "id");
+		assertEquals(61, ordered.size());
+		for(int i=1;i<ordered.size();i++)
+		{
+			assertTrue("Records should come back in column order.",
+					Integer.parseInt(ordered.get(i-1)[0]) <= Integer.parseInt(ordered.get(i)[0]));
+		}
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testBTreeRebuiltByBulkLoad() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 4;
+		DBApp.createTable("bt3", new String[]{"id","name"});
+		DBApp.insert("bt3", new String[]{"a", "first"});
+		DBApp.createBTreeIndex("bt3", "id");
+		ArrayList<String[]> rows = new ArrayList<String[]>();
+		for(int i=0;i<30;i++)
+		{
+			rows.add(new String[]{"k"+i, "n"+i});
+		}
+		DBApp.bulkLoad("bt3", rows.iterator());
+		assertEquals(1, DBApp.selectIndex("bt3", new String[]{"id"}, new String[]{"k17"}).size());
+		assertEquals("n17", DBApp.selectIndex("bt3", new String[]{"id"}, new String[]{"k17"}).get(0)[1]);
+		assertEquals(0, DBApp.selectIndex("bt3", new String[]{"id"}, new String[]{"k30"}).size());
+		assertEquals(31, DBApp.selectOrdered("bt3", "id").size());
+		assertEquals("a", DBApp.selectOrdered("bt3", "id").get(0)[0]);
+		FileManager.reset();
+	}
+}
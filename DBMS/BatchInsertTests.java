@@ -0,0 +1,78 @@
+package DBMS;
+import java.io.File;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import java.util.*;
+import org.junit.Test;
+public class BatchInsertTests
+{
+
+	@Test(timeout = 1000000)
+	public void testBatchMatchesSingleInserts() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 3;
+		String[] cols = {"id","name","major"};
+		DBApp.createTable("bi1", cols);
+		DBApp.createTable("bi2", cols);
+		DBApp.createBitMapIndex("bi1", "major");
+		DBApp.createBitMapIndex("bi2", "major");
+		DBApp.insert("bi1", new String[]{"0", "n0", "m0"});
+		DBApp.insert("bi2", new String[]{"0", "n0", "m0"});
+		ArrayList<String[]> batch = new ArrayList<String[]>();
+		for(int i=1;i<11;i++)
+		{
+			String[] record = {""+i, "n"+i, "m"+(i%3)};
+			DBApp.insert("bi1", record);
+			batch.add(record);
+		}
+		DBApp.insertBatch("bi2", batch);
+		ArrayList<String[]> single = DBApp.select("bi1");
+		ArrayList<String[]> batched = DBApp.select("bi2");
+		assertEquals("Batch insert should store every record.", single.size(), batched.size());
+		for(int i=0;i<single.size();i++)
+		{
+			assertTrue("Batch insert should keep the record order.", Arrays.equals(single.get(i), batched.get(i)));
+		}
+		assertEquals("Batch insert should fill the same pages.", 4, new File(FileManager.directory, "bi2").listFiles((d, n) -> n.matches("\\d+\\.db")).length);
+		assertEquals("Batch insert should update the index.", DBApp.getValueBits("bi1", "major", "m1"), DBApp.getValueBits("bi2", "major", "m1"));
+		String trace = DBApp.getFullTrace("bi2");
+		assertTrue("Batch insert should trace every record.", trace.contains("Inserted:[10, n10, m1], at page number:3"));
+		assertEquals("Batch insert should keep the last trace line format.", "Inserted:[10, n10, m1], at page number:3", DBApp.getLastTrace("bi2").substring(0, "Inserted:[10, n10, m1], at page number:3".length()));
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testBulkLoadRebuildsIndexes() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 4;
+		int oldBatch = DBApp.bulkLoadBatchSize;
+		DBApp.bulkLoadBatchSize = 7;
+		try
+		{
+			String[] cols = {"id","major"};
+			DBApp.createTable("bl1", cols);
+			DBApp.insert("bl1", new String[]{"0", "m0"});
+			DBApp.createBitMapIndex("bl1", "major");
+			ArrayList<String[]> records = new ArrayList<String[]>();
+			StringBuilder expected = new StringBuilder("0");
+			for(int i=1;i<30;i++)
+			{
+				records.add(new String[]{""+i, "m"+(i%5)});
+				expected.append(i%5==2 ? '1' : '0');
+			}
+			DBApp.bulkLoad("bl1", records.iterator());
+			assertEquals("Bulk load should store every record.", 30, DBApp.select("bl1").size());
+			assertEquals("Bulk load should rebuild the index.", expected.toString(), DBApp.getValueBits("bl1", "major", "m2"));
+			File delta = new File(FileManager.directory.getAbsolutePath()+ File.separator + "bl1" + File.separator + "major.delta");
+			assertTrue("Bulk load should not log index entries.", !delta.exists());
+			assertEquals("Bulk load results should be selectable through the index.", 6, DBApp.selectIndex("bl1", new String[]{"major"}, new String[]{"m2"}).size());
+		}
+		finally
+		{
+			DBApp.bulkLoadBatchSize = oldBatch;
+		}
+		FileManager.reset();
+	}
+}
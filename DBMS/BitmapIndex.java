@@ -4,70 +4,101 @@ import java.io.Serializable;
 import java.util.*;
 
 public class BitmapIndex implements Serializable {
-    private static final long serialVersionUID = 1L;
-    // value -> list of bits (0 or 1)
-    private Map<String, ArrayList<Integer>> index;
+    private static final long serialVersionUID = 3L;
+    // dictionary of the indexed values; the compressed set of the record
+    // positions holding a value is at its code, so each value is kept once
+    private ColumnDictionary values;
+    private ArrayList<CompressedBitmap> bitmaps;
     private int recordCount; // Track total records
     
 
     public BitmapIndex() {
-        this.index = new HashMap<>();
+        this.values = new ColumnDictionary();
+        this.bitmaps = new ArrayList<>();
         this.recordCount = 0;
     }
 
     // Initialize a new entry for a column value
     public void addValue(String value) {
-        index.putIfAbsent(value, new ArrayList<>(Collections.nCopies(recordCount, 0)));
+        bitmapOf(value);
     }
 
-    // Append 0 or 1 to the bitmap of a specific value
-    public void appendBit(String value, int bit) {
-    	// Pad all existing bitstreams to recordCount
-        for (String key : index.keySet()) {
-            ArrayList<Integer> bits = index.get(key);
-            while (bits.size() < recordCount) {
-                bits.add(0);
-            }
+    // Bitmap of the value, added empty when new
+    private CompressedBitmap bitmapOf(String value) {
+        int code = values.add(value);
+        if (code == bitmaps.size()) {
+            bitmaps.add(new CompressedBitmap());
         }
-        // Add or update the value's bitstream
-        index.computeIfAbsent(value, k -> new ArrayList<>(Collections.nCopies(recordCount, 0)));
-        index.get(value).add(bit);
-        // Pad other values with 0
-        for (String key : index.keySet()) {
-            if (!key.equals(value)) {
-                index.get(key).add(0);
-            }
+        return bitmaps.get(code);
+    }
+
+    // Append 0 or 1 to the bitmap of a specific value; every other value is
+    // implicitly 0 at the new position
+    public void appendBit(String value, int bit) {
+        CompressedBitmap bits = bitmapOf(value);
+        if (bit == 1) {
+            bits.append(recordCount);
         }
         recordCount++;
     }
 
+    // Set the bit of the record at position, as replayed from the delta log;
+    // positions already covered by the index are ignored
+    void appendBitAt(String value, int position) {
+        if (position < recordCount) {
+            return;
+        }
+        bitmapOf(value).append(position);
+        recordCount = position + 1;
+    }
+
     // Return the bitstream as a string (e.g. "101")
     public String getBitStream(String value) {
-    	ArrayList<Integer> bits = index.getOrDefault(value, new ArrayList<>(Collections.nCopies(recordCount, 0)));
-        StringBuilder result = new StringBuilder();
-        for (int b : bits) {
-            result.append(b);
-        }
-        // Pad with zeros to match recordCount
-        while (result.length() < recordCount) {
-            result.append('0');
-        }
-        return result.toString();
+        return getBitmap(value).toBitString(recordCount);
+    }
+
+    // Compressed positions of the records holding the value (empty if unknown)
+    public CompressedBitmap getBitmap(String value) {
+        int code = values.code(value);
+        return code < 0 ? new CompressedBitmap() : bitmaps.get(code);
+    }
+
+    // Code of the value in the dictionary of the index, -1 if unknown
+    public int getCode(String value) {
+        return values.code(value);
+    }
+
+    // Number of values the index holds, coded 0 to getSize() - 1
+    public int getSize() {
+        return bitmaps.size();
+    }
+
+    public String getValue(int code) {
+        return values.value(code);
     }
 
+    public CompressedBitmap getBitmap(int code) {
+        return bitmaps.get(code);
+    }
 
     // Optional: Access raw bit list (e.g., for AND operations)
     public ArrayList<Integer> getBits(String value) {
-    	ArrayList<Integer> bits = index.getOrDefault(value, new ArrayList<>(Collections.nCopies(recordCount, 0)));
-        while (bits.size() < recordCount) {
-            bits.add(0);
-        }
+        ArrayList<Integer> bits = new ArrayList<>(Collections.nCopies(recordCount, 0));
+        getBitmap(value).forEach(i -> {
+            if (i < recordCount) {
+                bits.set(i, 1);
+            }
+        });
         return bits;
     }
 
     // Return all values (i.e., keys in the index)
     public Set<String> getValues() {
-        return index.keySet();
+        return values.values();
+    }
+
+    public int getRecordCount() {
+        return recordCount;
     }
     
     public void insertBit(String value, int position, int bit) {
@@ -76,32 +107,16 @@ public class BitmapIndex implements Serializable {
             throw new IllegalArgumentException("Position " + position + " exceeds record count " + recordCount);
         }
 
-        // Loop through all existing keys (values) in the bitmap index
-        for (String key : index.keySet()) {
-            ArrayList<Integer> bits = index.get(key); // Get the bit list for this value
-
-            // Ensure the list is large enough to support insertion at the given position
-            while (bits.size() <= position) {
-                bits.add(0); // Fill with 0s if needed
-            }
-
-            // Insert the new bit at the specified position
-            // Set to the provided bit if this key matches the value being inserted; otherwise insert 0
-            bits.add(position, key.equals(value) ? bit : 0);
-
-            // Ensure the list has length at least recordCount + 1 after the insertion
-            while (bits.size() < recordCount + 1) {
-                bits.add(0);
-            }
+        // Shift every value's positions at or after the insertion point by one
+        for (int code = 0; code < bitmaps.size(); code++) {
+            bitmaps.set(code, bitmaps.get(code).insertZeroAt(position));
         }
 
-        // If the value is not already in the index, create a new bit list for it
-        index.computeIfAbsent(value, k -> {
-            // Initialize with 0s, one longer than current recordCount
-            ArrayList<Integer> bits = new ArrayList<>(Collections.nCopies(recordCount + 1, 0));
-            bits.set(position, bit); // Set the bit at the correct position
-            return bits;
-        });
+        // Set the bit of the inserted value, creating its bitmap if needed
+        CompressedBitmap bits = bitmapOf(value);
+        if (bit == 1) {
+            bits.add(position);
+        }
 
         // Increment the total record count since a new record has been inserted
         recordCount++;
@@ -112,8 +127,8 @@ public class BitmapIndex implements Serializable {
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        for (String val : index.keySet()) {
-            sb.append(val).append(": ").append(getBitStream(val)).append("\n");
+        for (int code = 0; code < bitmaps.size(); code++) {
+            sb.append(values.value(code)).append(": ").append(bitmaps.get(code).toBitString(recordCount)).append("\n");
         }
         return sb.toString();
     }
@@ -0,0 +1,274 @@
+package DBMS;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of table pages sitting between Table/DBApp and the page
+ * files written by FileManager. Frames are kept in LRU order and track
+ * whether they still have to be written back. The pool is bounded by a page
+ * count.
+ *
+ * Every write and delete of a page goes through put or invalidate, so a hit
+ * is served without touching the file system. A page file deleted from
+ * outside is only noticed by FileManager.pageExists, which drops its frame.
+ */
+public class BufferPool
+{
+	// maximum number of cached pages, 0 disables the pool
+	static int capacityPages = 1024;
+
+	private static final LinkedHashMap<String, Frame> frames = new LinkedHashMap<String, Frame>(16, 0.75f, true);
+	private static long hits;
+	private static long misses;
+	private static long evictions;
+	private static long prefetchHits;
+	private static long prefetchUnused;
+
+	static class Frame
+	{
+		String tableName;
+		int pageNumber;
+		Page page;
+		boolean dirty;
+		// read ahead by the Prefetcher and not requested yet
+		boolean prefetched;
+	}
+
+	private static String key(String tableName, int pageNumber)
+	{
+		return tableName + File.separator + pageNumber;
+	}
+
+	// Returns the cached page or null.
+	static synchronized Page lookup(String tableName, int pageNumber)
+	{
+		Frame f = frames.get(key(tableName, pageNumber));
+		if(f == null)
+		{
+			misses++;
+			return null;
+		}
+		hits++;
+		if(f.prefetched)
+		{
+			prefetchHits++;
+			f.prefetched = false;
+		}
+		return f.page;
+	}
+
+	// Caches p as the current image of the given page. Dirty frames pushed out
+	// to make room are written back once the pool lock is released.
+	static void put(String tableName, int pageNumber, Page p, boolean dirty)
+	{
+		ArrayList<Frame> victims;
+		synchronized(BufferPool.class)
+		{
+			if(capacityPages <= 0)
+			{
+				return;
+			}
+			String k = key(tableName, pageNumber);
+			Frame f = frames.get(k);
+			if(f == null)
+			{
+				f = new Frame();
+				f.tableName = tableName;
+				f.pageNumber = pageNumber;
+				frames.put(k, f);
+			}
+			f.page = p;
+			f.dirty = f.dirty || dirty;
+			victims = evict();
+		}
+		writeBack(victims);
+	}
+
+	// Caches a page read ahead of a scan unless the page is cached already.
+	static boolean putPrefetched(String tableName, int pageNumber, Page p)
+	{
+		ArrayList<Frame> victims;
+		synchronized(BufferPool.class)
+		{
+			String k = key(tableName, pageNumber);
+			if(capacityPages <= 0 || frames.containsKey(k))
+			{
+				return false;
+			}
+			Frame f = new Frame();
+			f.tableName = tableName;
+			f.pageNumber = pageNumber;
+			f.page = p;
+			f.prefetched = true;
+			frames.put(k, f);
+			victims = evict();
+		}
+		writeBack(victims);
+		return true;
+	}
+
+	static synchronized boolean isDirty(String tableName, int pageNumber)
+	{
+		Frame f = frames.get(key(tableName, pageNumber));
+		return f != null && f.dirty;
+	}
+
+	static synchronized boolean contains(String tableName, int pageNumber)
+	{
+		return frames.containsKey(key(tableName, pageNumber));
+	}
+
+	// Must be called with the pool lock held.
+	private static ArrayList<Frame> evict()
+	{
+		ArrayList<Frame> victims = new ArrayList<Frame>();
+		Iterator<Frame> it = frames.values().iterator();
+		while(frames.size() > capacityPages && it.hasNext())
+		{
+			Frame f = it.next();
+			it.remove();
+			evictions++;
+			if(f.prefetched)
+			{
+				prefetchUnused++;
+			}
+			if(f.dirty)
+			{
+				victims.add(f);
+			}
+		}
+		return victims;
+	}
+
+	private static void remove(Frame f)
+	{
+		frames.remove(key(f.tableName, f.pageNumber));
+	}
+
+	private static void writeBack(ArrayList<Frame> victims)
+	{
+		for(Frame f : victims)
+		{
+			FileManager.writeTablePage(f.tableName, f.pageNumber, f.page);
+		}
+	}
+
+	// Writes every dirty page of the table (all tables when tableName is null).
+	public static void flush(String tableName)
+	{
+		ArrayList<Frame> dirty = new ArrayList<Frame>();
+		synchronized(BufferPool.class)
+		{
+			for(Frame f : frames.values())
+			{
+				if(f.dirty && (tableName == null || f.tableName.equals(tableName)))
+				{
+					f.dirty = false;
+					dirty.add(f);
+				}
+			}
+		}
+		writeBack(dirty);
+	}
+
+	// Writes the page if its frame is still dirty, for a page store that was
+	// waiting for its log entry to be forced up to lsn. A frame holding a
+	// later image is left to the store of that image.
+	static void flushPage(String tableName, int pageNumber, long lsn)
+	{
+		Frame f;
+		synchronized(BufferPool.class)
+		{
+			f = frames.get(key(tableName, pageNumber));
+			if(f == null || !f.dirty || f.page.getLsn() > lsn)
+			{
+				return;
+			}
+			f.dirty = false;
+		}
+		FileManager.writeTablePage(f.tableName, f.pageNumber, f.page);
+	}
+
+	public static void flushAll()
+	{
+		flush(null);
+	}
+
+	static synchronized void invalidate(String tableName, int pageNumber)
+	{
+		Frame f = frames.get(key(tableName, pageNumber));
+		if(f != null)
+		{
+			remove(f);
+		}
+	}
+
+	// Drops every frame of the table without writing it back.
+	static synchronized void invalidateTable(String tableName)
+	{
+		Iterator<Map.Entry<String, Frame>> it = frames.entrySet().iterator();
+		while(it.hasNext())
+		{
+			Frame f = it.next().getValue();
+			if(f.tableName.equals(tableName))
+			{
+				it.remove();
+			}
+		}
+	}
+
+	static synchronized void clear()
+	{
+		frames.clear();
+	}
+
+	public static synchronized int size()
+	{
+		return frames.size();
+	}
+
+	public static synchronized long getHits()
+	{
+		return hits;
+	}
+
+	public static synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	public static synchronized long getEvictions()
+	{
+		return evictions;
+	}
+
+	public static synchronized long getPrefetchHits()
+	{
+		return prefetchHits;
+	}
+
+	public static synchronized long getPrefetchUnused()
+	{
+		return prefetchUnused;
+	}
+
+	public static synchronized void resetStats()
+	{
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+		prefetchHits = 0;
+		prefetchUnused = 0;
+	}
+
+	public static synchronized String getStats()
+	{
+		return "Buffer pool pages:" + frames.size() + "/" + capacityPages
+				+ ", hits:" + hits + ", misses:" + misses
+				+ ", evictions:" + evictions;
+	}
+}
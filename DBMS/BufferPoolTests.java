@@ -0,0 +1,76 @@
+package DBMS;
+import java.io.File;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import java.util.*;
+import org.junit.Test;
+public class BufferPoolTests
+{
+
+	@Test(timeout = 1000000)
+	public void testRepeatedSelectServedFromPool() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 2;
+		String[] cols = {"id","name","major"};
+		DBApp.createTable("bp1", cols);
+		for(int i=0;i<20;i++)
+		{
+			DBApp.insert("bp1", new String[]{""+i, "n"+i, "m"+(i%3)});
+		}
+		DBApp.select("bp1");
+		BufferPool.resetStats();
+		ArrayList<String[]> res = DBApp.select("bp1", new String[]{"major"}, new String[]{"m1"});
+		int pageCount = (int)Math.ceil(20.0/DBApp.dataPageSize);
+		assertEquals("A select over cached pages should not miss.", 0, BufferPool.getMisses());
+		assertEquals("A select over cached pages should hit every page.", pageCount, BufferPool.getHits());
+		assertEquals("Cached pages should produce the same result.", 7, res.size());
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testPoolIsBoundedInPages() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 2;
+		int oldCapacity = BufferPool.capacityPages;
+		BufferPool.capacityPages = 3;
+		try
+		{
+			String[] cols = {"a","b"};
+			DBApp.createTable("bp2", cols);
+			for(int i=0;i<30;i++)
+			{
+				DBApp.insert("bp2", new String[]{"a"+i, "b"+i});
+			}
+			BufferPool.resetStats();
+			assertEquals("Evicting pages should not lose records.", 30, DBApp.select("bp2").size());
+			assertTrue("The pool should never hold more pages than its capacity.", BufferPool.size() <= 3);
+			assertTrue("Scanning more pages than the capacity should evict.", BufferPool.getEvictions() > 0);
+		}
+		finally
+		{
+			BufferPool.capacityPages = oldCapacity;
+		}
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testDeletedPageIsNotServedFromPool() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 2;
+		String[] cols = {"a","b"};
+		DBApp.createTable("bp3", cols);
+		for(int i=0;i<6;i++)
+		{
+			DBApp.insert("bp3", new String[]{"a"+i, "b"+i});
+		}
+		DBApp.select("bp3");
+		File page0 = new File(FileManager.directory.getAbsolutePath()+ File.separator + "bp3"+ File.separator+"0.db");
+		page0.delete();
+		assertEquals("Validation should still detect the deleted page.", DBApp.dataPageSize, DBApp.validateRecords("bp3").size());
+		assertTrue("A page validation found deleted should not be returned from the pool.", FileManager.loadTablePage("bp3", 0) == null);
+		FileManager.reset();
+	}
+}
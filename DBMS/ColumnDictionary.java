@@ -0,0 +1,87 @@
+package DBMS;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Dictionary of the distinct values of a column, numbering them from 0 in the
+ * order they are first added. Codes never change, so they stand for their
+ * values wherever the dictionary is at hand.
+ *
+ * Table keeps one for every string column with few distinct values, holding
+ * every value inserted in the column: records share the dictionary's instance
+ * of each value, and an equality select on a value the dictionary lacks
+ * returns nothing without reading a page. BitmapIndex keys its bitmaps by the
+ * codes of a dictionary of its own.
+ */
+public class ColumnDictionary implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	// distinct values a table dictionary holds before its column is left
+	// unencoded, so codes fit a byte
+	static final int TABLE_LIMIT = 256;
+
+	private final ArrayList<String> values = new ArrayList<String>();
+	private final HashMap<String, Integer> codes = new HashMap<String, Integer>();
+	private final int limit;
+
+	public ColumnDictionary()
+	{
+		this(Integer.MAX_VALUE);
+	}
+
+	ColumnDictionary(int limit)
+	{
+		this.limit = limit;
+	}
+
+	// Code of the value, added when new; -1 when the dictionary is full.
+	synchronized int add(String value)
+	{
+		Integer code = codes.get(value);
+		if(code != null)
+		{
+			return code;
+		}
+		if(values.size() == limit)
+		{
+			return -1;
+		}
+		codes.put(value, values.size());
+		values.add(value);
+		return values.size() - 1;
+	}
+
+	// Code of the value, -1 when it was never added.
+	public synchronized int code(String value)
+	{
+		Integer code = codes.get(value);
+		return code == null ? -1 : code;
+	}
+
+	public synchronized String value(int code)
+	{
+		return values.get(code);
+	}
+
+	public synchronized int size()
+	{
+		return values.size();
+	}
+
+	public synchronized Set<String> values()
+	{
+		return new HashSet<String>(codes.keySet());
+	}
+
+	private synchronized void writeObject(ObjectOutputStream out) throws IOException
+	{
+		out.defaultWriteObject();
+	}
+}
@@ -0,0 +1,113 @@
+package DBMS;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import java.util.*;
+import org.junit.Test;
+public class ColumnDictionaryTests
+{
+
+	// 1000 students over 50 pages: 5 majors, 2 statuses and a unique id.
+	private static void createTable(String name)
+	{
+		DBApp.dataPageSize = 20;
+		DBApp.createTable(name, new String[]{"id","major","status"});
+		List<String[]> records = new ArrayList<String[]>();
+		for(int i=0;i<1000;i++)
+		{
+			records.add(new String[]{""+i, "major"+(i%5), i%3==0 ? "inactive" : "active"});
+		}
+		DBApp.insertBatch(name, records);
+	}
+
+	@Test(timeout = 1000000)
+	public void testStringColumnsAreEncoded() throws Exception
+	{
+		FileManager.reset();
+		createTable("cd1");
+		Table t = FileManager.loadTable("cd1");
+		assertEquals(5, t.getDictionary("major").size());
+		assertEquals(2, t.getDictionary("status").size());
+		assertEquals("A column with many values should not be encoded.", null, t.getDictionary("id"));
+		assertEquals(0, t.getDictionary("major").code("major0"));
+
+		ArrayList<String[]> res = DBApp.select("cd1");
+		assertTrue("Records should share the dictionary instance of a value.", res.get(0)[1] == res.get(5)[1]);
+		DBApp.insert("cd1", new String[]{"1000", "major9", "active"});
+		assertEquals(6, FileManager.loadTable("cd1").getDictionary("major").size());
+		assertEquals(1, DBApp.select("cd1", new String[]{"major"}, new String[]{"major9"}).size());
+
+		DBApp.createTable("cd2", new String[]{"id","name"}, new ColumnType[]{ColumnType.INT, ColumnType.varchar(10)});
+		DBApp.insert("cd2", new String[]{"1", "ali"});
+		assertEquals("Only string columns should be encoded.", null, FileManager.loadTable("cd2").getDictionary("id"));
+		assertEquals(1, FileManager.loadTable("cd2").getDictionary("name").size());
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testAbsentValuesReadNoPage() throws Exception
+	{
+		FileManager.reset();
+		createTable("cd3");
+		BufferPool.clear();
+		assertEquals(0, DBApp.select("cd3", new String[]{"major","status"}, new String[]{"major7","active"}).size());
+		assertTrue(DBApp.getLastTrace("cd3").startsWith("Select condition:[major, status]->[major7, active], Records per page:[], records:0"));
+		assertEquals(0, DBApp.select("cd3", Predicate.in("status", "retired", "expelled")).size());
+		assertTrue("Every page should be skipped: " + DBApp.getLastTrace("cd3"), DBApp.getLastTrace("cd3").contains("skipped pages:50"));
+		assertEquals("No page should have been read.", 0, BufferPool.size());
+
+		assertEquals(200, DBApp.select("cd3", new String[]{"major"}, new String[]{"major3"}).size());
+		assertEquals(666, DBApp.select("cd3", Predicate.in("status", "retired", "active")).size());
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testBitmapIndexKeyedByCodes() throws Exception
+	{
+		BitmapIndex index = new BitmapIndex();
+		String[] values = {"a", "b", "a", null, "c", "a"};
+		for(String v : values)
+		{
+			index.appendBit(v, 1);
+		}
+		assertEquals(4, index.getSize());
+		assertEquals(0, index.getCode("a"));
+		assertEquals(-1, index.getCode("z"));
+		assertEquals("b", index.getValue(1));
+		assertEquals("101001", index.getBitStream("a"));
+		assertEquals("000100", index.getBitmap(index.getCode(null)).toBitString(6));
+		index.insertBit("b", 1, 1);
+		assertEquals("1001001", index.getBitStream("a"));
+		assertEquals("0110000", index.getBitStream("b"));
+
+		FileManager.reset();
+		createTable("cd4");
+		DBApp.createBitMapIndex("cd4", "major");
+		BitmapIndex stored = FileManager.loadTableIndex("cd4", "major");
+		assertEquals(5, stored.getSize());
+		assertEquals(200, stored.getBitmap("major2").cardinality());
+		assertEquals(200, DBApp.selectIndex("cd4", Predicate.gt("major", "major2"), Predicate.lt("major", "major4")).size());
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testDictionariesAreLoggedAsTheyGrow() throws Exception
+	{
+		FileManager.reset();
+		createTable("cd5");
+		java.io.File log = new java.io.File(FileManager.directory, "cd5" + java.io.File.separator + "cd5.dict");
+		long logged = log.length();
+		assertTrue("The dictionaries should be logged.", logged > 0);
+		DBApp.insert("cd5", new String[]{"1000", "major1", "active"});
+		assertEquals("Known values should not grow the log.", logged, log.length());
+		DBApp.insert("cd5", new String[]{"1001", "major9", "active"});
+		assertTrue("A new value should be appended to the log.", log.length() > logged);
+		FileManager.dropCachedStats();
+		Table t = FileManager.loadTable("cd5");
+		assertEquals(6, t.getDictionary("major").size());
+		assertEquals(5, t.getDictionary("major").code("major9"));
+		assertEquals(2, t.getDictionary("status").size());
+		assertEquals("A dropped dictionary should stay dropped.", null, t.getDictionary("id"));
+		assertEquals(1, DBApp.select("cd5", new String[]{"major"}, new String[]{"major9"}).size());
+		FileManager.reset();
+	}
+}
@@ -0,0 +1,360 @@
+package DBMS;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics of one column, kept in the TableStats of the table for the
+ * query planner: row and null counts, minimum and maximum, a HyperLogLog
+ * estimate of the distinct values, the most common values and an equi-depth
+ * histogram.
+ *
+ * Table.insert keeps every statistic current in memory except the histogram,
+ * which DBApp.analyze builds from a sample of the table along with exact most
+ * common values. Between analyzes the most common values are tracked with
+ * Space-Saving counters, which may over-count a value by the smallest
+ * counter. The statistics of records inserted after the stats file was last
+ * written are lost on a crash.
+ */
+public class ColumnStats implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	// 2^HLL_BITS registers, a standard error of about 3%
+	static final int HLL_BITS = 10;
+	static final int MCV_SIZE = 16;
+	static final int BUCKETS = 32;
+	// rows analyze samples for the histogram and the most common values
+	static final int SAMPLE_SIZE = 30000;
+
+	private final ColumnType type;
+	private long rows;
+	private long nulls;
+	private String min;
+	private String max;
+	private final byte[] registers = new byte[1 << HLL_BITS];
+	private final HashMap<String, Long> mcv = new HashMap<String, Long>();
+	// BUCKETS + 1 bounds of buckets holding equal shares of the non-null
+	// values, null until the first analyze
+	private String[] histogram;
+
+	// type orders the values, null for columns compared as strings
+	public ColumnStats(ColumnType type)
+	{
+		this.type = type;
+	}
+
+	synchronized void add(String value)
+	{
+		rows++;
+		if(value == null)
+		{
+			nulls++;
+			return;
+		}
+		if(min == null || compare(value, min) < 0)
+		{
+			min = value;
+		}
+		if(max == null || compare(value, max) > 0)
+		{
+			max = value;
+		}
+		long h = hash(value);
+		int register = (int)(h >>> (64 - HLL_BITS));
+		int rank = Math.min(Long.numberOfLeadingZeros(h << HLL_BITS) + 1, 64 - HLL_BITS + 1);
+		if(rank > registers[register])
+		{
+			registers[register] = (byte)rank;
+		}
+		count(value);
+	}
+
+	// Space-Saving: a value without a counter takes over the smallest one
+	private void count(String value)
+	{
+		Long n = mcv.get(value);
+		if(n != null || mcv.size() < MCV_SIZE)
+		{
+			mcv.put(value, n == null ? 1 : n + 1);
+			return;
+		}
+		String smallest = null;
+		long least = Long.MAX_VALUE;
+		for(Map.Entry<String, Long> e : mcv.entrySet())
+		{
+			if(e.getValue() < least)
+			{
+				smallest = e.getKey();
+				least = e.getValue();
+			}
+		}
+		mcv.remove(smallest);
+		mcv.put(value, least + 1);
+	}
+
+	// Replaces the most common values and the histogram with those of a
+	// uniform sample of the non-null and null values of the column; the
+	// counts are scaled from the sample to the whole column.
+	synchronized void analyze(List<String> sample)
+	{
+		ArrayList<String> values = new ArrayList<String>();
+		HashMap<String, Integer> counts = new HashMap<String, Integer>();
+		for(String v : sample)
+		{
+			if(v != null)
+			{
+				values.add(v);
+				counts.merge(v, 1, Integer::sum);
+			}
+		}
+		double scale = sample.isEmpty() ? 0 : (double)rows / sample.size();
+		ArrayList<Map.Entry<String, Integer>> common = new ArrayList<Map.Entry<String, Integer>>(counts.entrySet());
+		common.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+		mcv.clear();
+		for(Map.Entry<String, Integer> e : common)
+		{
+			// a value seen once in the sample is not common
+			if(mcv.size() == MCV_SIZE || e.getValue() < 2)
+			{
+				break;
+			}
+			mcv.put(e.getKey(), Math.max(1, Math.round(e.getValue() * scale)));
+		}
+		if(values.isEmpty())
+		{
+			histogram = null;
+			return;
+		}
+		Collections.sort(values, this::compare);
+		histogram = new String[BUCKETS + 1];
+		for(int i = 0; i <= BUCKETS; i++)
+		{
+			histogram[i] = values.get((int)((long)i * (values.size() - 1) / BUCKETS));
+		}
+	}
+
+	private int compare(String a, String b)
+	{
+		return type == null ? a.compareTo(b) : type.compare(a, b);
+	}
+
+	// FNV-1a over the characters, then the MurmurHash3 finalizer
+	static long hash(String value)
+	{
+		long h = 0xcbf29ce484222325L;
+		for(int i = 0; i < value.length(); i++)
+		{
+			h ^= value.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	public synchronized long getRows()
+	{
+		return rows;
+	}
+
+	public synchronized long getNulls()
+	{
+		return nulls;
+	}
+
+	public synchronized String getMin()
+	{
+		return min;
+	}
+
+	public synchronized String getMax()
+	{
+		return max;
+	}
+
+	// HyperLogLog estimate of the distinct non-null values, with the small
+	// range correction.
+	public synchronized long getDistinct()
+	{
+		int m = registers.length;
+		double sum = 0;
+		int zeros = 0;
+		for(byte r : registers)
+		{
+			sum += Math.pow(2, -r);
+			if(r == 0)
+			{
+				zeros++;
+			}
+		}
+		double estimate = 0.7213 / (1 + 1.079 / m) * m * m / sum;
+		if(estimate <= 2.5 * m && zeros > 0)
+		{
+			estimate = m * Math.log((double)m / zeros);
+		}
+		return Math.min(Math.round(estimate), rows - nulls);
+	}
+
+	// Most common values with their (estimated) counts.
+	public synchronized Map<String, Long> getMostCommonValues()
+	{
+		return Collections.unmodifiableMap(new HashMap<String, Long>(mcv));
+	}
+
+	// Bucket bounds of the last analyze, null before it.
+	public synchronized String[] getHistogram()
+	{
+		return histogram == null ? null : histogram.clone();
+	}
+
+	// Estimated fraction of the rows whose value satisfies the predicate,
+	// bound to this column.
+	public synchronized double selectivity(Predicate p)
+	{
+		if(rows == 0)
+		{
+			return 0;
+		}
+		String[] v = p.getValues();
+		double nonNull = (double)(rows - nulls) / rows;
+		double res;
+		try
+		{
+			switch(p.getOp())
+			{
+				case EQ: res = equal(v[0]); break;
+				case IN:
+					res = 0;
+					for(String value : v)
+					{
+						res += equal(value);
+					}
+					break;
+				case LT: res = nonNull * below(v[0], false); break;
+				case LE: res = nonNull * below(v[0], true); break;
+				case GT: res = nonNull * (1 - below(v[0], true)); break;
+				case GE: res = nonNull * (1 - below(v[0], false)); break;
+				default: res = nonNull * (below(v[1], true) - below(v[0], false)); break;
+			}
+		}
+		catch(IllegalArgumentException e)
+		{
+			// a value outside the column type matches no row
+			return 0;
+		}
+		return Math.max(0, Math.min(1, res));
+	}
+
+	// Fraction of the rows equal to the value: its count when it is a common
+	// value, else an even share of the rows left to the other values.
+	private double equal(String value)
+	{
+		if(value == null || min == null || compare(value, min) < 0 || compare(value, max) > 0)
+		{
+			return 0;
+		}
+		Long n = mcv.get(value);
+		if(n != null)
+		{
+			return Math.min(1, (double)n / rows);
+		}
+		long common = 0;
+		for(long c : mcv.values())
+		{
+			common += c;
+		}
+		long others = Math.max(1, getDistinct() - mcv.size());
+		return Math.max(0, rows - nulls - common) / (double)others / rows;
+	}
+
+	// Fraction of the non-null values below the value, or at most the value
+	// when inclusive.
+	private double below(String value, boolean inclusive)
+	{
+		if(min == null || value == null)
+		{
+			return 0;
+		}
+		if(compare(value, min) < 0)
+		{
+			return 0;
+		}
+		if(compare(value, max) > 0)
+		{
+			return 1;
+		}
+		double nonNull = rows - nulls;
+		double at = nonNull == 0 ? 0 : equal(value) * rows / nonNull;
+		double res;
+		if(histogram != null)
+		{
+			res = histogramBelow(value);
+		}
+		else if(numeric())
+		{
+			double lo = Double.parseDouble(min);
+			double hi = Double.parseDouble(max);
+			res = hi == lo ? 0 : (Double.parseDouble(value) - lo) / (hi - lo);
+		}
+		else
+		{
+			res = QueryPlanner.RANGE_SELECTIVITY;
+		}
+		return Math.max(0, Math.min(1, inclusive ? res + at : res));
+	}
+
+	// Whole buckets below the value plus half of the bucket holding it, or a
+	// linear share of it for numbers.
+	private double histogramBelow(String value)
+	{
+		if(compare(value, histogram[0]) < 0)
+		{
+			return 0;
+		}
+		for(int i = 0; i < BUCKETS; i++)
+		{
+			String lo = histogram[i];
+			String hi = histogram[i + 1];
+			if(compare(value, hi) < 0)
+			{
+				double within = 0.5;
+				if(numeric())
+				{
+					double l = Double.parseDouble(lo);
+					double h = Double.parseDouble(hi);
+					within = h == l ? 0 : (Double.parseDouble(value) - l) / (h - l);
+				}
+				return (i + within) / BUCKETS;
+			}
+		}
+		return 1;
+	}
+
+	private boolean numeric()
+	{
+		return type != null && (type.getKind() == ColumnType.Kind.INT
+				|| type.getKind() == ColumnType.Kind.LONG || type.getKind() == ColumnType.Kind.DOUBLE);
+	}
+
+	private synchronized void writeObject(ObjectOutputStream out) throws IOException
+	{
+		out.defaultWriteObject();
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return "rows:" + rows + ", nulls:" + nulls + ", distinct:" + getDistinct()
+				+ ", min:" + min + ", max:" + max + ", most common:" + mcv.keySet();
+	}
+}
@@ -0,0 +1,130 @@
+package DBMS;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import java.util.*;
+import org.junit.Test;
+public class ColumnStatsTests
+{
+
+	@Test(timeout = 1000000)
+	public void testDistinctEstimate() throws Exception
+	{
+		ColumnStats small = new ColumnStats(null);
+		ColumnStats large = new ColumnStats(ColumnType.INT);
+		for(int i=0;i<200000;i++)
+		{
+			small.add("v"+(i%300));
+			large.add(""+i);
+		}
+		small.add(null);
+		assertEquals(200001, small.getRows());
+		assertEquals(1, small.getNulls());
+		assertTrue("300 values estimated as " + small.getDistinct(), Math.abs(small.getDistinct() - 300) <= 15);
+		assertTrue("200000 values estimated as " + large.getDistinct(), Math.abs(large.getDistinct() - 200000) <= 200000 * 0.1);
+		assertEquals("0", large.getMin());
+		assertEquals("199999", large.getMax());
+	}
+
+	@Test(timeout = 1000000)
+	public void testStatisticsFollowInserts() throws Exception
+	{
+		FileManager.reset();
+		DBApp.createTable("cs1", new String[]{"id","grp"}, new ColumnType[]{ColumnType.INT, ColumnType.varchar(10)});
+		List<String[]> records = new ArrayList<String[]>();
+		for(int i=0;i<1000;i++)
+		{
+			records.add(new String[]{""+i, i%2==0 ? "hot" : "g"+i});
+		}
+		DBApp.insertBatch("cs1", records);
+		DBApp.insert("cs1", new String[]{"1000", "hot"});
+		ColumnStats id = FileManager.loadTable("cs1").getColumnStats("id");
+		assertEquals(1001, id.getRows());
+		assertEquals("Integers should be ordered by value.", "1000", id.getMax());
+		assertEquals("0", id.getMin());
+		ColumnStats grp = FileManager.loadTable("cs1").getColumnStats("grp");
+		assertTrue(grp.getMostCommonValues().get("hot") >= 501);
+		assertTrue("The histogram waits for analyze.", grp.getHistogram() == null);
+		double eq = grp.selectivity(Predicate.eq("grp", "hot"));
+		assertTrue("hot is half of the rows: " + eq, eq > 0.45 && eq < 0.6);
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testAnalyzeBuildsHistogram() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 100;
+		DBApp.createTable("cs2", new String[]{"id","score"}, new ColumnType[]{ColumnType.INT, ColumnType.INT});
+		List<String[]> records = new ArrayList<String[]>();
+		Random random = new Random(5);
+		int below = 0;
+		for(int i=0;i<20000;i++)
+		{
+			// skewed: most scores are small
+			int score = (int)(Math.pow(random.nextDouble(), 4) * 10000);
+			if(score < 100) below++;
+			records.add(new String[]{""+i, ""+score});
+		}
+		DBApp.insertBatch("cs2", records);
+		DBApp.analyze("cs2");
+		assertTrue(DBApp.getLastTrace("cs2").startsWith("Analyzed columns:[id, score], records:20000"));
+		ColumnStats score = FileManager.loadTable("cs2").getColumnStats("score");
+		assertEquals(ColumnStats.BUCKETS + 1, score.getHistogram().length);
+		double estimate = score.selectivity(Predicate.lt("score", "100")) * 20000;
+		assertTrue("Estimated " + estimate + " rows below 100 of " + below, Math.abs(estimate - below) < below * 0.2);
+		double outside = score.selectivity(Predicate.gt("score", "10000"));
+		assertTrue(outside == 0);
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testPlannerUsesStatistics() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 20;
+		DBApp.createTable("cs3", new String[]{"id","grp"}, new ColumnType[]{ColumnType.INT, ColumnType.varchar(10)});
+		List<String[]> records = new ArrayList<String[]>();
+		for(int i=0;i<5000;i++)
+		{
+			records.add(new String[]{""+i, "g"+(i%10)});
+		}
+		DBApp.insertBatch("cs3", records);
+		DBApp.createBTreeIndex("cs3", "id");
+		DBApp.analyze("cs3");
+		QueryPlan plan = DBApp.explain("cs3", Predicate.lt("id", "100"));
+		assertEquals(QueryPlan.Access.INDEX, plan.getAccess());
+		long estimate = plan.getSteps().get(0).getEstimatedRows();
+		assertTrue("Estimated " + estimate + " rows below 100.", estimate > 80 && estimate < 120);
+		assertEquals(100, plan.getActualRows());
+
+		plan = DBApp.explain("cs3", Predicate.lt("id", "100"), Predicate.eq("grp", "g3"));
+		assertTrue("Estimated " + plan.getEstimatedRows() + " rows.", plan.getEstimatedRows() >= 8 && plan.getEstimatedRows() <= 12);
+		assertEquals(10, plan.getActualRows());
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testStatisticsAreWrittenAtCheckpoints() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 100;
+		DBApp.createTable("cs4", new String[]{"id","score"}, new ColumnType[]{ColumnType.INT, ColumnType.INT});
+		DBApp.insert("cs4", new String[]{"0", "0"});
+		DBApp.analyze("cs4");
+		java.io.File stats = new java.io.File(FileManager.directory, "cs4" + java.io.File.separator + "cs4.stats");
+		long written = stats.lastModified();
+		byte[] before = java.nio.file.Files.readAllBytes(stats.toPath());
+		for(int i=1;i<100;i++)
+		{
+			DBApp.insert("cs4", new String[]{""+i, ""+i});
+		}
+		assertEquals(100, FileManager.loadTable("cs4").getColumnStats("id").getRows());
+		assertTrue("Inserts should not rewrite the stats file.",
+				Arrays.equals(before, java.nio.file.Files.readAllBytes(stats.toPath())) && written == stats.lastModified());
+		assertTrue(WriteAheadLog.checkpoint("cs4"));
+		FileManager.dropCachedStats();
+		assertEquals("A checkpoint should write the counted statistics.", 100,
+				FileManager.loadTable("cs4").getColumnStats("id").getRows());
+		FileManager.reset();
+	}
+}
@@ -0,0 +1,221 @@
+package DBMS;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Type of a column of a typed table. Records keep travelling through DBApp as
+ * strings, but a typed table only accepts values that parse as their column
+ * type and keeps them in a canonical form (7 rather than 007, 1.0 rather than
+ * 1, ISO dates, lower case booleans), so two values are equal exactly when
+ * their strings are.
+ *
+ * PageCodec stores typed values in binary form: INT and DATE (days since
+ * 1970-01-01) in 4 bytes, LONG and DOUBLE in 8, BOOLEAN in 1 and VARCHAR as a
+ * length int followed by UTF-8 bytes. Encoded values of the same type are
+ * equal exactly when their bytes are.
+ */
+public final class ColumnType implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	public enum Kind { INT, LONG, DOUBLE, DATE, VARCHAR, BOOLEAN }
+
+	public static final ColumnType INT = new ColumnType(Kind.INT, 0);
+	public static final ColumnType LONG = new ColumnType(Kind.LONG, 0);
+	public static final ColumnType DOUBLE = new ColumnType(Kind.DOUBLE, 0);
+	public static final ColumnType DATE = new ColumnType(Kind.DATE, 0);
+	public static final ColumnType BOOLEAN = new ColumnType(Kind.BOOLEAN, 0);
+
+	private final Kind kind;
+	// maximum number of characters of a VARCHAR, 0 for the other kinds
+	private final int length;
+
+	private ColumnType(Kind kind, int length)
+	{
+		this.kind = kind;
+		this.length = length;
+	}
+
+	public static ColumnType varchar(int length)
+	{
+		if(length <= 0)
+		{
+			throw new IllegalArgumentException("VARCHAR length must be positive: " + length);
+		}
+		return new ColumnType(Kind.VARCHAR, length);
+	}
+
+	// Parses a type name as written in a schema: INT, LONG, DOUBLE, DATE,
+	// BOOLEAN or VARCHAR(n), in any case.
+	public static ColumnType parse(String name)
+	{
+		String s = name.trim().toUpperCase();
+		if(s.startsWith("VARCHAR(") && s.endsWith(")"))
+		{
+			try
+			{
+				return varchar(Integer.parseInt(s.substring(8, s.length() - 1).trim()));
+			}
+			catch (NumberFormatException e)
+			{
+				throw new IllegalArgumentException("Invalid column type: " + name);
+			}
+		}
+		try
+		{
+			Kind kind = Kind.valueOf(s);
+			if(kind != Kind.VARCHAR)
+			{
+				return of(kind, 0);
+			}
+		}
+		catch (IllegalArgumentException e)
+		{
+			// reported below
+		}
+		throw new IllegalArgumentException("Invalid column type: " + name);
+	}
+
+	static ColumnType of(Kind kind, int length)
+	{
+		switch(kind)
+		{
+			case INT: return INT;
+			case LONG: return LONG;
+			case DOUBLE: return DOUBLE;
+			case DATE: return DATE;
+			case BOOLEAN: return BOOLEAN;
+			default: return new ColumnType(Kind.VARCHAR, length);
+		}
+	}
+
+	public Kind getKind()
+	{
+		return kind;
+	}
+
+	public int getLength()
+	{
+		return length;
+	}
+
+	// Canonical form of a value, null staying null. Throws
+	// IllegalArgumentException when the value is not of this type.
+	public String canonical(String value)
+	{
+		if(value == null)
+		{
+			return null;
+		}
+		try
+		{
+			switch(kind)
+			{
+				case INT: return Integer.toString(Integer.parseInt(value));
+				case LONG: return Long.toString(Long.parseLong(value));
+				case DOUBLE: return Double.toString(Double.parseDouble(value));
+				case DATE: return LocalDate.parse(value).toString();
+				case BOOLEAN:
+					if(value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false"))
+					{
+						return value.toLowerCase();
+					}
+					break;
+				default:
+					if(value.length() <= length)
+					{
+						return value;
+					}
+			}
+		}
+		catch (NumberFormatException | DateTimeParseException e)
+		{
+			// reported below
+		}
+		throw new IllegalArgumentException("Value " + value + " is not a valid " + this);
+	}
+
+	// Compares two canonical values in the order of the type, nulls first.
+	public int compare(String a, String b)
+	{
+		if(a == null || b == null)
+		{
+			return a == null ? (b == null ? 0 : -1) : 1;
+		}
+		switch(kind)
+		{
+			case INT: return Integer.compare(Integer.parseInt(a), Integer.parseInt(b));
+			case LONG: return Long.compare(Long.parseLong(a), Long.parseLong(b));
+			case DOUBLE: return Double.compare(Double.parseDouble(a), Double.parseDouble(b));
+			case BOOLEAN: return Boolean.compare(Boolean.parseBoolean(a), Boolean.parseBoolean(b));
+			// ISO dates sort as strings
+			default: return a.compareTo(b);
+		}
+	}
+
+	// Binary form of a canonical value.
+	byte[] toBytes(String value)
+	{
+		switch(kind)
+		{
+			case INT: return ByteBuffer.allocate(4).putInt(Integer.parseInt(value)).array();
+			case LONG: return ByteBuffer.allocate(8).putLong(Long.parseLong(value)).array();
+			case DOUBLE: return ByteBuffer.allocate(8).putDouble(Double.parseDouble(value)).array();
+			case DATE: return ByteBuffer.allocate(4).putInt((int)LocalDate.parse(value).toEpochDay()).array();
+			case BOOLEAN: return new byte[]{(byte)(Boolean.parseBoolean(value) ? 1 : 0)};
+			default:
+				byte[] b = value.getBytes(StandardCharsets.UTF_8);
+				return ByteBuffer.allocate(4 + b.length).putInt(b.length).put(b).array();
+		}
+	}
+
+	// Size of the encoded value starting at pos.
+	int sizeAt(ByteBuffer buf, int pos)
+	{
+		switch(kind)
+		{
+			case INT:
+			case DATE: return 4;
+			case LONG:
+			case DOUBLE: return 8;
+			case BOOLEAN: return 1;
+			default: return 4 + buf.getInt(pos);
+		}
+	}
+
+	// Decodes the value starting at pos back to its canonical string.
+	String read(ByteBuffer buf, int pos)
+	{
+		switch(kind)
+		{
+			case INT: return Integer.toString(buf.getInt(pos));
+			case LONG: return Long.toString(buf.getLong(pos));
+			case DOUBLE: return Double.toString(buf.getDouble(pos));
+			case DATE: return LocalDate.ofEpochDay(buf.getInt(pos)).toString();
+			case BOOLEAN: return buf.get(pos) != 0 ? "true" : "false";
+			default: return PageCodec.decodeString(buf, pos + 4, buf.getInt(pos));
+		}
+	}
+
+	@Override
+	public boolean equals(Object o)
+	{
+		return o instanceof ColumnType && ((ColumnType)o).kind == kind && ((ColumnType)o).length == length;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return kind.hashCode() * 31 + length;
+	}
+
+	@Override
+	public String toString()
+	{
+		return kind == Kind.VARCHAR ? "VARCHAR(" + length + ")" : kind.name();
+	}
+}
@@ -0,0 +1,130 @@
+package DBMS;
+import java.nio.ByteBuffer;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import java.util.*;
+import org.junit.Test;
+public class ColumnarPageTests
+{
+
+	private static ArrayList<String[]> records(int n)
+	{
+		ArrayList<String[]> records = new ArrayList<String[]>();
+		for(int i=0;i<n;i++)
+		{
+			records.add(new String[]{""+i, "major"+(i%4), i%7==0 ? null : "name"+i, "café"});
+		}
+		return records;
+	}
+
+	private static byte[] encode(Page p, boolean columnar)
+	{
+		PageCodec.columnar = columnar;
+		try
+		{
+			return PageCodec.encode(p);
+		}
+		finally
+		{
+			PageCodec.columnar = false;
+		}
+	}
+
+	@Test(timeout = 1000000)
+	public void testRoundTrip() throws Exception
+	{
+		Page p = new Page(records(300));
+		byte[] rows = encode(p, false);
+		byte[] columns = encode(p, true);
+		assertTrue("Dictionary vectors should make the page smaller.", columns.length < rows.length);
+		Page q = PageCodec.decode(ByteBuffer.wrap(columns));
+		assertEquals(300, q.select().size());
+		for(int i=0;i<300;i++)
+		{
+			assertTrue("Decoding should keep every value.", Arrays.equals(p.select().get(i), q.select().get(i)));
+		}
+
+		DBApp.dataPageSize = 100;
+		Page typed = new Page(new ColumnType[]{ColumnType.INT, ColumnType.varchar(10), ColumnType.DOUBLE});
+		for(int i=0;i<50;i++)
+		{
+			typed.insert(new String[]{""+i, i%2==0 ? "even" : null, (i/10)+".5"}, i%5==0 ? 7 : 0);
+		}
+		q = PageCodec.decode(ByteBuffer.wrap(encode(typed, true)));
+		assertEquals(7, q.getCommitTs(0));
+		assertEquals(0, q.getCommitTs(1));
+		for(int i=0;i<50;i++)
+		{
+			assertTrue("Decoding should keep every typed value.", Arrays.equals(typed.select().get(i), q.select().get(i)));
+		}
+	}
+
+	@Test(timeout = 1000000)
+	public void testSelectionVectors() throws Exception
+	{
+		Page p = new Page(records(300));
+		ByteBuffer buf = ByteBuffer.wrap(encode(p, true));
+		String[][] conds = {
+				{null, "major1", null, null},
+				{null, "major1", "name9", null},
+				{"42", null, null, "café"},
+				{null, "absent", null, null},
+				{null, null, null, null}};
+		for(String[] cond : conds)
+		{
+			ArrayList<String[]> expected = p.select(cond);
+			ArrayList<String[]> res = PageCodec.select(buf, cond);
+			assertEquals("The columnar select should match the decoded select.", expected.size(), res.size());
+			for(int i=0;i<res.size();i++)
+			{
+				assertTrue(Arrays.equals(expected.get(i), res.get(i)));
+			}
+		}
+		ArrayList<String[]> res = PageCodec.select(buf, new String[]{null, "major2", null, null}, Long.MAX_VALUE, new int[]{2, 0});
+		assertEquals(75, res.size());
+		assertTrue("Only the requested columns should be returned.", Arrays.equals(new String[]{"name2", "2"}, res.get(0)));
+		assertTrue(Arrays.equals(new String[]{null, "14"}, res.get(3)));
+	}
+
+	@Test(timeout = 1000000)
+	public void testSelectColumnsOnWideTable() throws Exception
+	{
+		FileManager.reset();
+		PageCodec.columnar = true;
+		try
+		{
+			DBApp.dataPageSize = 100;
+			String[] cols = new String[30];
+			for(int j=0;j<30;j++)
+			{
+				cols[j] = "c"+j;
+			}
+			DBApp.createTable("cp1", cols);
+			List<String[]> records = new ArrayList<String[]>();
+			for(int i=0;i<1000;i++)
+			{
+				String[] record = new String[30];
+				for(int j=0;j<30;j++)
+				{
+					record[j] = j==5 ? "s"+(i%3) : "v"+i+"_"+j;
+				}
+				records.add(record);
+			}
+			DBApp.insertBatch("cp1", records);
+			BufferPool.clear();
+			ArrayList<String[]> res = DBApp.selectColumns("cp1", new String[]{"c0", "c29"}, new String[]{"c5"}, new String[]{"s1"});
+			assertEquals(333, res.size());
+			assertTrue(Arrays.equals(new String[]{"v1_0", "v1_29"}, res.get(0)));
+			assertTrue("The trace should list the columns: " + DBApp.getLastTrace("cp1"),
+					DBApp.getLastTrace("cp1").startsWith("Select columns:[c0, c29], condition:[c5]->[s1], records:333"));
+			assertEquals("Projected reads should not fill the buffer pool.", 0, BufferPool.size());
+			assertEquals(333, DBApp.select("cp1", new String[]{"c5"}, new String[]{"s1"}).size());
+			assertEquals(333, DBApp.selectColumns("cp1", new String[]{"c5"}, new String[]{"c5"}, new String[]{"s1"}).size());
+		}
+		finally
+		{
+			PageCodec.columnar = false;
+		}
+		FileManager.reset();
+	}
+}
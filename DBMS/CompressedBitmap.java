@@ -0,0 +1,504 @@
+package DBMS;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of row positions in the style of Roaring bitmaps. Positions
+ * are split on their high 16 bits into containers; a container holds its low
+ * 16 bits either as a sorted char array (sparse) or as a 1024-word bitmap
+ * (dense, more than 4096 entries). Memory therefore follows the number of
+ * set bits instead of the number of rows.
+ */
+public class CompressedBitmap implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+	static final int ARRAY_MAX = 4096;
+
+	private char[] keys;
+	private Container[] containers;
+	private int size;
+
+	static final class Container implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+		// exactly one of array / bits is in use
+		char[] array;
+		long[] bits;
+		int cardinality;
+
+		Container()
+		{
+			this.array = new char[1];
+		}
+
+		boolean contains(char low)
+		{
+			if(bits != null)
+			{
+				return (bits[low >>> 6] & (1L << low)) != 0;
+			}
+			return Arrays.binarySearch(array, 0, cardinality, low) >= 0;
+		}
+
+		void add(char low)
+		{
+			if(bits != null)
+			{
+				long mask = 1L << low;
+				if((bits[low >>> 6] & mask) == 0)
+				{
+					bits[low >>> 6] |= mask;
+					cardinality++;
+				}
+				return;
+			}
+			int i = Arrays.binarySearch(array, 0, cardinality, low);
+			if(i >= 0)
+			{
+				return;
+			}
+			i = -i - 1;
+			if(cardinality == ARRAY_MAX)
+			{
+				toBits();
+				add(low);
+				return;
+			}
+			if(cardinality == array.length)
+			{
+				array = Arrays.copyOf(array, Math.min(ARRAY_MAX, array.length * 2));
+			}
+			System.arraycopy(array, i, array, i + 1, cardinality - i);
+			array[i] = low;
+			cardinality++;
+		}
+
+		private void toBits()
+		{
+			bits = new long[1024];
+			for(int i = 0; i < cardinality; i++)
+			{
+				bits[array[i] >>> 6] |= 1L << array[i];
+			}
+			array = null;
+		}
+
+		// Switches a bitmap container back to an array once it becomes sparse.
+		Container normalize()
+		{
+			if(bits != null && cardinality <= ARRAY_MAX)
+			{
+				char[] a = new char[Math.max(cardinality, 1)];
+				int k = 0;
+				for(int w = 0; w < 1024; w++)
+				{
+					long word = bits[w];
+					while(word != 0)
+					{
+						a[k++] = (char)(w * 64 + Long.numberOfTrailingZeros(word));
+						word &= word - 1;
+					}
+				}
+				array = a;
+				bits = null;
+			}
+			return this;
+		}
+
+		long[] asBits()
+		{
+			if(bits != null)
+			{
+				return bits;
+			}
+			long[] b = new long[1024];
+			for(int i = 0; i < cardinality; i++)
+			{
+				b[array[i] >>> 6] |= 1L << array[i];
+			}
+			return b;
+		}
+
+		static Container fromBits(long[] b)
+		{
+			Container c = new Container();
+			c.array = null;
+			c.bits = b;
+			int card = 0;
+			for(long w : b)
+			{
+				card += Long.bitCount(w);
+			}
+			c.cardinality = card;
+			return c.normalize();
+		}
+
+		Container and(Container o)
+		{
+			if(bits == null || o.bits == null)
+			{
+				Container sparse = bits == null ? this : o;
+				Container other = sparse == this ? o : this;
+				Container res = new Container();
+				for(int i = 0; i < sparse.cardinality; i++)
+				{
+					if(other.contains(sparse.array[i]))
+					{
+						res.appendSorted(sparse.array[i]);
+					}
+				}
+				return res;
+			}
+			long[] b = new long[1024];
+			for(int w = 0; w < 1024; w++)
+			{
+				b[w] = bits[w] & o.bits[w];
+			}
+			return fromBits(b);
+		}
+
+		Container or(Container o)
+		{
+			long[] a = asBits();
+			long[] c = o.asBits();
+			long[] b = new long[1024];
+			for(int w = 0; w < 1024; w++)
+			{
+				b[w] = a[w] | c[w];
+			}
+			return fromBits(b);
+		}
+
+		Container andNot(Container o)
+		{
+			if(bits == null)
+			{
+				Container res = new Container();
+				for(int i = 0; i < cardinality; i++)
+				{
+					if(!o.contains(array[i]))
+					{
+						res.appendSorted(array[i]);
+					}
+				}
+				return res;
+			}
+			long[] c = o.asBits();
+			long[] b = new long[1024];
+			for(int w = 0; w < 1024; w++)
+			{
+				b[w] = bits[w] & ~c[w];
+			}
+			return fromBits(b);
+		}
+
+		// First set low value >= from, or -1.
+		int nextSetBit(int from)
+		{
+			if(bits != null)
+			{
+				int w = from >>> 6;
+				if(w >= 1024)
+				{
+					return -1;
+				}
+				long word = bits[w] & (-1L << from);
+				while(true)
+				{
+					if(word != 0)
+					{
+						return w * 64 + Long.numberOfTrailingZeros(word);
+					}
+					if(++w == 1024)
+					{
+						return -1;
+					}
+					word = bits[w];
+				}
+			}
+			int i = Arrays.binarySearch(array, 0, cardinality, (char)from);
+			if(i < 0)
+			{
+				i = -i - 1;
+			}
+			return i < cardinality ? array[i] : -1;
+		}
+
+		// Adds a value greater than every value already in an array container.
+		void appendSorted(char low)
+		{
+			if(cardinality == array.length)
+			{
+				array = Arrays.copyOf(array, Math.min(ARRAY_MAX, array.length * 2));
+			}
+			array[cardinality++] = low;
+		}
+
+		void forEach(int high, IntConsumer action)
+		{
+			if(bits != null)
+			{
+				for(int w = 0; w < 1024; w++)
+				{
+					long word = bits[w];
+					while(word != 0)
+					{
+						action.accept(high | (w * 64 + Long.numberOfTrailingZeros(word)));
+						word &= word - 1;
+					}
+				}
+				return;
+			}
+			for(int i = 0; i < cardinality; i++)
+			{
+				action.accept(high | array[i]);
+			}
+		}
+
+		Container copy()
+		{
+			Container c = new Container();
+			c.array = array == null ? null : array.clone();
+			c.bits = bits == null ? null : bits.clone();
+			c.cardinality = cardinality;
+			return c;
+		}
+	}
+
+	public CompressedBitmap()
+	{
+		this.keys = new char[1];
+		this.containers = new Container[1];
+		this.size = 0;
+	}
+
+	private int find(char high)
+	{
+		return Arrays.binarySearch(keys, 0, size, high);
+	}
+
+	private void insertContainer(int i, char high, Container c)
+	{
+		if(size == keys.length)
+		{
+			keys = Arrays.copyOf(keys, size * 2);
+			containers = Arrays.copyOf(containers, size * 2);
+		}
+		System.arraycopy(keys, i, keys, i + 1, size - i);
+		System.arraycopy(containers, i, containers, i + 1, size - i);
+		keys[i] = high;
+		containers[i] = c;
+		size++;
+	}
+
+	private void appendContainer(char high, Container c)
+	{
+		if(c.cardinality > 0)
+		{
+			insertContainer(size, high, c);
+		}
+	}
+
+	public void add(int x)
+	{
+		char high = (char)(x >>> 16);
+		int i = find(high);
+		if(i < 0)
+		{
+			i = -i - 1;
+			insertContainer(i, high, new Container());
+		}
+		containers[i].add((char)x);
+	}
+
+	// Adds a position greater than every position already set, the pattern of
+	// appending rows to an index. Runs in O(1) amortized since only the last
+	// container can be affected; any other position falls back to add.
+	public void append(int x)
+	{
+		char high = (char)(x >>> 16);
+		if(size == 0 || keys[size - 1] < high)
+		{
+			insertContainer(size, high, new Container());
+		}
+		else if(keys[size - 1] > high)
+		{
+			add(x);
+			return;
+		}
+		Container last = containers[size - 1];
+		char low = (char)x;
+		if(last.bits != null || last.cardinality == ARRAY_MAX
+				|| (last.cardinality > 0 && last.array[last.cardinality - 1] >= low))
+		{
+			last.add(low);
+		}
+		else
+		{
+			last.appendSorted(low);
+		}
+	}
+
+	public boolean contains(int x)
+	{
+		int i = find((char)(x >>> 16));
+		return i >= 0 && containers[i].contains((char)x);
+	}
+
+	public int cardinality()
+	{
+		int card = 0;
+		for(int i = 0; i < size; i++)
+		{
+			card += containers[i].cardinality;
+		}
+		return card;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public CompressedBitmap and(CompressedBitmap o)
+	{
+		CompressedBitmap res = new CompressedBitmap();
+		int i = 0, j = 0;
+		while(i < size && j < o.size)
+		{
+			if(keys[i] < o.keys[j])
+			{
+				i++;
+			}
+			else if(keys[i] > o.keys[j])
+			{
+				j++;
+			}
+			else
+			{
+				res.appendContainer(keys[i], containers[i].and(o.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return res;
+	}
+
+	public CompressedBitmap or(CompressedBitmap o)
+	{
+		CompressedBitmap res = new CompressedBitmap();
+		int i = 0, j = 0;
+		while(i < size || j < o.size)
+		{
+			if(j == o.size || (i < size && keys[i] < o.keys[j]))
+			{
+				res.appendContainer(keys[i], containers[i].copy());
+				i++;
+			}
+			else if(i == size || keys[i] > o.keys[j])
+			{
+				res.appendContainer(o.keys[j], o.containers[j].copy());
+				j++;
+			}
+			else
+			{
+				res.appendContainer(keys[i], containers[i].or(o.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return res;
+	}
+
+	public CompressedBitmap andNot(CompressedBitmap o)
+	{
+		CompressedBitmap res = new CompressedBitmap();
+		int j = 0;
+		for(int i = 0; i < size; i++)
+		{
+			while(j < o.size && o.keys[j] < keys[i])
+			{
+				j++;
+			}
+			if(j < o.size && o.keys[j] == keys[i])
+			{
+				res.appendContainer(keys[i], containers[i].andNot(o.containers[j]));
+			}
+			else
+			{
+				res.appendContainer(keys[i], containers[i].copy());
+			}
+		}
+		return res;
+	}
+
+	// Returns the first set position >= from, or -1 when there is none.
+	public int nextSetBit(int from)
+	{
+		from = Math.max(from, 0);
+		int i = find((char)(from >>> 16));
+		int low = from & 0xFFFF;
+		if(i < 0)
+		{
+			i = -i - 1;
+			low = 0;
+		}
+		for(; i < size; i++, low = 0)
+		{
+			int next = containers[i].nextSetBit(low);
+			if(next >= 0)
+			{
+				return (keys[i] << 16) | next;
+			}
+		}
+		return -1;
+	}
+
+	// Visits the set positions in increasing order.
+	public void forEach(IntConsumer action)
+	{
+		for(int i = 0; i < size; i++)
+		{
+			containers[i].forEach(keys[i] << 16, action);
+		}
+	}
+
+	// Returns a copy where every position >= position moved up by one, leaving
+	// position itself clear.
+	public CompressedBitmap insertZeroAt(int position)
+	{
+		final CompressedBitmap res = new CompressedBitmap();
+		forEach(x -> res.add(x >= position ? x + 1 : x));
+		return res;
+	}
+
+	// Renders the first length positions as a string of '0' and '1'.
+	public String toBitString(int length)
+	{
+		final char[] res = new char[length];
+		Arrays.fill(res, '0');
+		forEach(x -> {
+			if(x < length)
+			{
+				res[x] = '1';
+			}
+		});
+		return new String(res);
+	}
+
+	@Override
+	public String toString()
+	{
+		final StringBuilder sb = new StringBuilder("{");
+		forEach(x -> {
+			if(sb.length() > 1)
+			{
+				sb.append(", ");
+			}
+			sb.append(x);
+		});
+		return sb.append("}").toString();
+	}
+}
@@ -0,0 +1,105 @@
+package DBMS;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import java.util.*;
+import org.junit.Test;
+public class CompressedBitmapTests
+{
+
+	private static CompressedBitmap random(Random r, BitSet ref, int range, double density)
+	{
+		CompressedBitmap b = new CompressedBitmap();
+		for(int i=0;i<range;i++)
+		{
+			if(r.nextDouble()<density)
+			{
+				b.add(i);
+				ref.set(i);
+			}
+		}
+		return b;
+	}
+
+	private static BitSet toBitSet(CompressedBitmap b)
+	{
+		BitSet res = new BitSet();
+		b.forEach(i -> res.set(i));
+		return res;
+	}
+
+	@Test(timeout = 1000000)
+	public void testSetOperationsMatchBitSet() throws Exception
+	{
+		Random r = new Random(42);
+		double[] densities = {0.001, 0.05, 0.5, 0.99};
+		for(double d1 : densities)
+		{
+			for(double d2 : densities)
+			{
+				BitSet ra = new BitSet(), rb = new BitSet();
+				CompressedBitmap a = random(r, ra, 200000, d1);
+				CompressedBitmap b = random(r, rb, 200000, d2);
+				BitSet and = (BitSet)ra.clone(); and.and(rb);
+				BitSet or = (BitSet)ra.clone(); or.or(rb);
+				BitSet andNot = (BitSet)ra.clone(); andNot.andNot(rb);
+				assertEquals("AND should match.", and, toBitSet(a.and(b)));
+				assertEquals("OR should match.", or, toBitSet(a.or(b)));
+				assertEquals("ANDNOT should match.", andNot, toBitSet(a.andNot(b)));
+				assertEquals("Cardinality should match.", ra.cardinality(), a.cardinality());
+				assertEquals("AND cardinality should match.", and.cardinality(), a.and(b).cardinality());
+			}
+		}
+	}
+
+	@Test(timeout = 1000000)
+	public void testInsertZeroAtShiftsPositions() throws Exception
+	{
+		CompressedBitmap b = new CompressedBitmap();
+		b.add(0); b.add(3); b.add(70000);
+		CompressedBitmap s = b.insertZeroAt(3);
+		assertTrue("Positions before the insertion point should stay.", s.contains(0));
+		assertTrue("The insertion point should be clear.", !s.contains(3));
+		assertTrue("Positions after the insertion point should move up.", s.contains(4) && s.contains(70001));
+		assertEquals("Bit strings should pad with zeros.", "10010", b.toBitString(5));
+	}
+
+	@Test(timeout = 1000000)
+	public void testBitmapIndexBitStreams() throws Exception
+	{
+		BitmapIndex idx = new BitmapIndex();
+		String[] vals = {"CS","BI","CS","CS","BI"};
+		for(String v : vals)
+		{
+			idx.appendBit(v, 1);
+		}
+		assertEquals("10110", idx.getBitStream("CS"));
+		assertEquals("01001", idx.getBitStream("BI"));
+		assertEquals("00000", idx.getBitStream("MET"));
+		idx.insertBit("MET", 1, 1);
+		assertEquals("100110", idx.getBitStream("CS"));
+		assertEquals("010000", idx.getBitStream("MET"));
+	}
+
+	@Test(timeout = 1000000)
+	public void testHighCardinalityAppendIsLinear() throws Exception
+	{
+		BitmapIndex idx = new BitmapIndex();
+		long start = System.currentTimeMillis();
+		for(int i=0;i<200000;i++)
+		{
+			idx.appendBit("id"+i, 1);
+		}
+		long elapsed = System.currentTimeMillis() - start;
+		assertEquals("Every row should be counted.", 200000, idx.getRecordCount());
+		assertEquals("Each value should own exactly its row.", "0001", idx.getBitStream("id3").substring(0, 4));
+		assertTrue("Appending 200k distinct values should not be quadratic.", elapsed < 10000);
+		CompressedBitmap b = new CompressedBitmap();
+		BitSet ref = new BitSet();
+		for(int i=0;i<300000;i+=(i%7)+1)
+		{
+			b.append(i);
+			ref.set(i);
+		}
+		assertEquals("Appended positions should match.", ref, toBitSet(b));
+	}
+}
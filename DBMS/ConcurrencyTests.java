@@ -0,0 +1,90 @@
+package DBMS;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+public class ConcurrencyTests
+{
+
+	@Test(timeout = 1000000)
+	public void testConcurrentInsertsAndSelects() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 3;
+		String[] cols = {"id","major"};
+		DBApp.createTable("cc1", cols);
+		DBApp.createBitMapIndex("cc1", "major");
+		final ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<Throwable>();
+		final AtomicBoolean done = new AtomicBoolean();
+		Thread[] writers = new Thread[6];
+		for(int t=0;t<writers.length;t++)
+		{
+			final int w = t;
+			writers[t] = new Thread(() -> {
+				try
+				{
+					for(int i=0;i<40;i++)
+					{
+						DBApp.insert("cc1", new String[]{w+"-"+i, "m"+(i%4)});
+					}
+				}
+				catch (Throwable e)
+				{
+					errors.add(e);
+				}
+			});
+		}
+		Thread[] readers = new Thread[2];
+		for(int t=0;t<readers.length;t++)
+		{
+			readers[t] = new Thread(() -> {
+				try
+				{
+					int last = 0;
+					while(!done.get())
+					{
+						int size = DBApp.select("cc1").size();
+						assertTrue("A reader should never see records disappear.", size >= last);
+						last = size;
+						DBApp.select("cc1", new String[]{"major"}, new String[]{"m1"});
+					}
+				}
+				catch (Throwable e)
+				{
+					errors.add(e);
+				}
+			});
+		}
+		for(Thread t : readers)
+		{
+			t.start();
+		}
+		for(Thread t : writers)
+		{
+			t.start();
+		}
+		for(Thread t : writers)
+		{
+			t.join();
+		}
+		done.set(true);
+		for(Thread t : readers)
+		{
+			t.join();
+		}
+		assertTrue("No thread should fail: " + errors, errors.isEmpty());
+		ArrayList<String[]> all = DBApp.select("cc1");
+		assertEquals("No insert should be lost.", 240, all.size());
+		HashSet<String> ids = new HashSet<String>();
+		for(String[] r : all)
+		{
+			ids.add(r[0]);
+		}
+		assertEquals("Every record should be stored once.", 240, ids.size());
+		assertTrue("The catalog counts should match.", DBApp.getFullTrace("cc1").endsWith("Pages Count: 80, Records Count: 240, Indexed Columns: [major]"));
+		assertEquals("The index should see every insert.", 60, DBApp.selectIndex("cc1", new String[]{"major"}, new String[]{"m1"}).size());
+		FileManager.reset();
+	}
+}
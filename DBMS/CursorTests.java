@@ -0,0 +1,110 @@
+package DBMS;
+import java.io.File;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import java.util.*;
+import java.util.stream.Collectors;
+import org.junit.Test;
+public class CursorTests
+{
+
+	@Test(timeout = 1000000)
+	public void testCursorMatchesSelect() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 3;
+		String[] cols = {"id","major","semester"};
+		DBApp.createTable("cu1", cols);
+		for(int i=0;i<40;i++)
+		{
+			DBApp.insert("cu1", new String[]{""+i, "m"+(i%4), "s"+(i%3)});
+		}
+		DBApp.createBitMapIndex("cu1", "major");
+		ArrayList<String[]> all = DBApp.select("cu1");
+		List<String[]> streamed = DBApp.stream("cu1").collect(Collectors.toList());
+		assertEquals("Streaming should return every record.", all.size(), streamed.size());
+		ArrayList<String[]> cond = DBApp.select("cu1", new String[]{"major","semester"}, new String[]{"m1","s2"});
+		List<String[]> condStreamed = DBApp.stream("cu1", new String[]{"major","semester"}, new String[]{"m1","s2"}).collect(Collectors.toList());
+		assertEquals("A condition stream should match the condition select.", cond.size(), condStreamed.size());
+		for(int i=0;i<cond.size();i++)
+		{
+			assertTrue("A condition stream should keep the order.", Arrays.equals(cond.get(i), condStreamed.get(i)));
+		}
+		List<String[]> indexStreamed = DBApp.streamIndex("cu1", new String[]{"major","semester"}, new String[]{"m1","s2"}).collect(Collectors.toList());
+		assertEquals("An index stream should match the condition select.", cond.size(), indexStreamed.size());
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testCursorStopsEarly() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 2;
+		String[] cols = {"id","name"};
+		DBApp.createTable("cu2", cols);
+		for(int i=0;i<30;i++)
+		{
+			DBApp.insert("cu2", new String[]{""+i, "n"+i});
+		}
+		BufferPool.clear();
+		BufferPool.resetStats();
+		TableCursor cursor = DBApp.selectCursor("cu2");
+		for(int i=0;i<3;i++)
+		{
+			cursor.next();
+		}
+		cursor.close();
+		assertTrue("A closed cursor should not return more records.", !cursor.hasNext());
+		assertEquals("Stopping early should only read the pages consumed.", 2, BufferPool.getMisses());
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testSelectIndexReadsOnlyMatchingPages() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 5;
+		String[] cols = {"id","status"};
+		DBApp.createTable("cu3", cols);
+		for(int i=0;i<200;i++)
+		{
+			DBApp.insert("cu3", new String[]{""+i, (i==17 || i==18 || i==133) ? "rare" : "common"});
+		}
+		DBApp.createBitMapIndex("cu3", "status");
+		BufferPool.clear();
+		BufferPool.resetStats();
+		ArrayList<String[]> res = DBApp.selectIndex("cu3", new String[]{"status"}, new String[]{"rare"});
+		assertEquals("The indexed lookup should find every match.", 3, res.size());
+		assertEquals("The indexed lookup should return matches in order.", "133", res.get(2)[0]);
+		assertEquals("Only the pages holding matches should be read.", 2, BufferPool.getMisses() + BufferPool.getHits());
+		CompressedBitmap b = new CompressedBitmap();
+		b.add(3); b.add(70000); b.add(70001);
+		assertEquals(3, b.nextSetBit(0));
+		assertEquals(70000, b.nextSetBit(4));
+		assertEquals(70001, b.nextSetBit(70001));
+		assertEquals(-1, b.nextSetBit(70002));
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testIndexSelectKeepsThePageSizeOfTheTable() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 2;
+		String[] cols = {"id","major"};
+		DBApp.createTable("cu4", cols);
+		DBApp.createBitMapIndex("cu4", "major");
+		for(int i=0;i<5;i++)
+		{
+			DBApp.insert("cu4", new String[]{""+i, "m1"});
+		}
+		DBApp.dataPageSize = 3;
+		assertEquals("Index positions should map to the pages the table was built with.", 5, DBApp.selectIndex("cu4", new String[]{"major"}, new String[]{"m1"}).size());
+		DBApp.insert("cu4", new String[]{"5", "m1"});
+		assertEquals("New records should fill pages of the table's own size.", 3, FileManager.loadTable("cu4").getPageCount());
+		assertEquals(6, DBApp.selectIndex("cu4", new String[]{"major"}, new String[]{"m1"}).size());
+		assertEquals(6, DBApp.select("cu4").size());
+		DBApp.dataPageSize = 2;
+		FileManager.reset();
+	}
+}
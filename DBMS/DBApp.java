@@ -6,34 +6,157 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Stream;
 
 public class DBApp
 {
 	static int dataPageSize = 2;
+	// records per batch when bulk loading
+	static int bulkLoadBatchSize = 10000;
 
 
 	public static void createTable(String tableName, String[] columnsNames)
 	{
-		Table t = new Table(tableName, columnsNames);
-		FileManager.storeTable(tableName, t);
+		createTable(tableName, new Table(tableName, columnsNames));
+	}
+
+	// Creates a typed table: inserted values must parse as their column type,
+	// are kept in canonical form and stored in binary form in the pages.
+	public static void createTable(String tableName, String[] columnsNames, ColumnType[] columnTypes)
+	{
+		createTable(tableName, new Table(tableName, columnsNames, columnTypes));
+	}
+
+	private static void createTable(String tableName, Table t)
+	{
+		Lock lock = LockManager.writeLock(tableName);
+		lock.lock();
+		try
+		{
+			WriteAheadLog.drop(tableName);
+			FileManager.dropTableHistory(tableName);
+			FileManager.storeTable(tableName, t);
+		}
+		finally
+		{
+			lock.unlock();
+		}
 	}
 
 	
 	public static void insert(String tableName, String[] record) {
-	    Table t = FileManager.loadTable(tableName);
-	    if (t == null) {
-	        throw new IllegalArgumentException("Table " + tableName + " does not exist");
+	    Lock lock = LockManager.readLock(tableName);
+	    Lock append = LockManager.appendLock(tableName);
+	    TreeMap<Integer, Long> commits;
+	    lock.lock();
+	    append.lock();
+	    try {
+	        Table t = FileManager.loadTable(tableName);
+	        if (t == null) {
+	            throw new IllegalArgumentException("Table " + tableName + " does not exist");
+	        }
+
+	        // 1) Insert into the table and persist it
+	        record = t.conform(record);
+	        checkIndexKeys(tableName, t, Collections.singletonList(record));
+	        t.insert(record);
+	        FileManager.storeTable(tableName, t);
+
+	        // 2) Update only the columns that actually have a bitmap index
+	        appendIndexEntries(tableName, t, Collections.singletonList(record));
+	        commits = t.drainCommits();
+	    } finally {
+	        append.unlock();
+	        lock.unlock();
 	    }
+	    // 3) Wait for the log outside the locks, so concurrent inserts share forces
+	    FileManager.commitTable(tableName, commits);
+	}
 
-	    // 1) Insert into the table and persist it
-	    t.insert(record);
-	    FileManager.storeTable(tableName, t);
+	// Inserts a batch of records as one unit: pages are filled in memory and
+	// each touched page is written once, every bitmap index gets one append
+	// for the whole batch and the catalog is stored once.
+	public static void insertBatch(String tableName, List<String[]> records) {
+	    Lock lock = LockManager.readLock(tableName);
+	    Lock append = LockManager.appendLock(tableName);
+	    TreeMap<Integer, Long> commits;
+	    lock.lock();
+	    append.lock();
+	    try {
+	        Table t = FileManager.loadTable(tableName);
+	        if (t == null) {
+	            throw new IllegalArgumentException("Table " + tableName + " does not exist");
+	        }
+	        if (records.isEmpty()) return;
+
+	        records = conformAll(t, records);
+	        checkIndexKeys(tableName, t, records);
+	        t.insertBatch(records);
+	        FileManager.storeTable(tableName, t);
+	        appendIndexEntries(tableName, t, records);
+	        commits = t.drainCommits();
+	    } finally {
+	        append.unlock();
+	        lock.unlock();
+	    }
+	    FileManager.commitTable(tableName, commits);
+	}
+
+	// Loads a large stream of records in batches of bulkLoadBatchSize. Indexes
+	// are not maintained while loading; each one is rebuilt once at the end.
+	public static void bulkLoad(String tableName, Iterator<String[]> records) {
+	    Lock lock = LockManager.writeLock(tableName);
+	    TreeMap<Integer, Long> commits;
+	    lock.lock();
+	    try {
+	        Table t = FileManager.loadTable(tableName);
+	        if (t == null) {
+	            throw new IllegalArgumentException("Table " + tableName + " does not exist");
+	        }
+	        ArrayList<String[]> batch = new ArrayList<>(bulkLoadBatchSize);
+	        while (records.hasNext()) {
+	            batch.add(records.next());
+	            if (batch.size() == bulkLoadBatchSize || !records.hasNext()) {
+	                List<String[]> rows = conformAll(t, batch);
+	                checkIndexKeys(tableName, t, rows);
+	                t.insertBatch(rows);
+	                FileManager.storeTable(tableName, t);
+	                batch.clear();
+	            }
+	        }
+	        for (String idxCol : t.getIndexedColumns()) {
+	            int colIndex = Arrays.asList(t.getColumnNames()).indexOf(idxCol);
+	            if (colIndex >= 0 && FileManager.indexExists(tableName, idxCol)) {
+	                FileManager.storeTableIndex(tableName, idxCol, buildIndex(tableName, t, colIndex));
+	            }
+	        }
+	        rebuildEntryIndexes(tableName, t);
+	        commits = t.drainCommits();
+	    } finally {
+	        lock.unlock();
+	    }
+	    FileManager.commitTable(tableName, commits);
+	}
+
+	private static List<String[]> conformAll(Table t, List<String[]> records) {
+	    if (t.getColumnTypes() == null) return records;
+	    List<String[]> res = new ArrayList<>(records.size());
+	    for (String[] record : records) {
+	        res.add(t.conform(record));
+	    }
+	    return res;
+	}
 
-	    // 2) Update only the columns that actually have a bitmap index
+	// Appends the indexed column values of newly inserted records to the
+	// delta log of every bitmap index of the table.
+	private static void appendIndexEntries(String tableName, Table t, List<String[]> records) {
 	    List<String> indexedCols = t.getIndexedColumns();
 	    for (String idxCol : indexedCols) {
-	        BitmapIndex idx = FileManager.loadTableIndex(tableName, idxCol);
-	        if (idx == null) continue;
+	        boolean bitmap = FileManager.indexExists(tableName, idxCol);
+	        boolean btree = FileManager.btreeIndexExists(tableName, idxCol);
+	        boolean hash = FileManager.hashIndexExists(tableName, idxCol);
+	        if (!bitmap && !btree && !hash) continue;
 
 	        // find the position of idxCol in the table schema
 	        String[] allCols = t.getColumnNames();
@@ -46,21 +169,58 @@ public class DBApp
 	        }
 	        if (colIndex < 0) continue;
 
-	        // append a “1” bit for the new record’s value in this column
-	        String val = record[colIndex];
-	        idx.appendBit(val, 1);
+	        if (btree || hash) {
+	            // the new records hold the last positions of the table
+	            int position = t.getRecordsCount() - records.size();
+	            ArrayList<Object[]> entries = new ArrayList<>(records.size());
+	            for (String[] record : records) {
+	                entries.add(new Object[]{record[colIndex], position / t.getPageSize(), position % t.getPageSize()});
+	                position++;
+	            }
+	            if (btree) FileManager.insertBTreeEntries(tableName, idxCol, columnType(t, colIndex), entries);
+	            if (hash) FileManager.insertHashEntries(tableName, idxCol, entries);
+	        }
+	        if (!bitmap) continue;
 
-	        // persist the updated index
-	        FileManager.storeTableIndex(tableName, idxCol, idx);
+	        // append a “1” bit for each new record’s value in this column to the
+	        // index delta log instead of rewriting the whole index
+	        ArrayList<String> vals = new ArrayList<>(records.size());
+	        for (String[] record : records) {
+	            vals.add(record[colIndex]);
+	        }
+	        FileManager.appendTableIndexDeltas(tableName, idxCol, vals);
 	    }
 	}
 
+	private static ColumnType columnType(Table t, int colIndex) {
+	    return t.getColumnTypes() == null ? null : t.getColumnTypes()[colIndex];
+	}
 
+	// Rejects values a B+tree or hash index of the table cannot hold, before
+	// any of the records is stored.
+	private static void checkIndexKeys(String tableName, Table t, List<String[]> records) {
+	    String[] cols = t.getColumnNames();
+	    for (int j = 0; j < cols.length; j++) {
+	        boolean btree = FileManager.btreeIndexExists(tableName, cols[j]);
+	        boolean hash = FileManager.hashIndexExists(tableName, cols[j]);
+	        if (!btree && !hash) continue;
+	        for (String[] record : records) {
+	            if (j >= record.length || record[j] == null) continue;
+	            if (btree) BTreeIndex.checkKey(record[j]);
+	            if (hash) HashIndex.checkKey(record[j]);
+	        }
+	    }
+	}
+
+
+	// Selects take no table lock: the loaded catalog is a snapshot, and the
+	// records inserted after it was stored are skipped by their commit
+	// timestamps, so scans run alongside inserts and bulk loads.
 	public static ArrayList<String []> select(String tableName)
 	{
 		Table t = FileManager.loadTable(tableName);
 		ArrayList<String []> res = t.select();
-		FileManager.storeTable(tableName, t);
+		FileManager.storeTableTrace(tableName, t);
 		return res;
 	}
 
@@ -68,7 +228,7 @@ public class DBApp
 	{
 		Table t = FileManager.loadTable(tableName);
 		ArrayList<String []> res = t.select(pageNumber, recordNumber);
-		FileManager.storeTable(tableName, t);
+		FileManager.storeTableTrace(tableName, t);
 		return res;
 	}
 
@@ -76,10 +236,87 @@ public class DBApp
 	{
 		Table t = FileManager.loadTable(tableName);
 		ArrayList<String []> res = t.select(cols, vals);
-		FileManager.storeTable(tableName, t);
+		FileManager.storeTableTrace(tableName, t);
 		return res;
 	}
 
+	// Selects only the given columns of the records matching the condition,
+	// in the order of columns.
+	public static ArrayList<String []> selectColumns(String tableName, String[] columns, String[] cols, String[] vals)
+	{
+		Table t = FileManager.loadTable(tableName);
+		ArrayList<String []> res = t.selectColumns(columns, cols, vals);
+		FileManager.storeTableTrace(tableName, t);
+		return res;
+	}
+
+	// Selects the records satisfying every predicate, skipping the pages whose
+	// zone map excludes one of them.
+	public static ArrayList<String []> select(String tableName, Predicate... predicates)
+	{
+		Table t = FileManager.loadTable(tableName);
+		ArrayList<String []> res = t.select(predicates);
+		FileManager.storeTableTrace(tableName, t);
+		return res;
+	}
+
+	// Lazy counterparts of the select methods: records are read page by page
+	// as the cursor advances, and the returned cursor must be closed (or the
+	// stream consumed) to release the current page. They do not add trace lines.
+	public static TableCursor selectCursor(String tableName)
+	{
+		Table t = FileManager.loadTable(tableName);
+		return new TableCursor(tableName, t.getPageCount(), null, null, t.getLastCommitTs());
+	}
+
+	public static TableCursor selectCursor(String tableName, String[] cols, String[] vals)
+	{
+		Table t = FileManager.loadTable(tableName);
+		return new TableCursor(tableName, t.getPageCount(), t.fixCond(cols, vals), null, t.getLastCommitTs());
+	}
+
+	public static TableCursor selectIndexCursor(String tableName, String[] cols, String[] vals)
+	{
+		Table t = FileManager.loadTable(tableName);
+		vals = t.conformValues(cols, vals);
+		QueryPlan plan = QueryPlanner.plan(tableName, t, equalities(t, cols, vals));
+		CompressedBitmap positions = null;
+		for (QueryPlan.Step s : plan.getSteps()) {
+		    CompressedBitmap bits = QueryPlanner.positions(tableName, t, s);
+		    positions = (positions == null) ? bits : positions.and(bits);
+		}
+		// the conditions no lookup answered filter the fetched records
+		ArrayList<String> filterCols = new ArrayList<>();
+		ArrayList<String> filterVals = new ArrayList<>();
+		for (int i = 0; i < cols.length; i++) {
+		    boolean looked = false;
+		    for (QueryPlan.Step s : plan.getSteps()) {
+		        looked |= s.getPredicate().getColumn().equals(cols[i]);
+		    }
+		    if (!looked) {
+		        filterCols.add(cols[i]);
+		        filterVals.add(vals[i]);
+		    }
+		}
+		String[] cond = t.fixCond(filterCols.toArray(new String[0]), filterVals.toArray(new String[0]));
+		return new TableCursor(tableName, t.getPageCount(), t.getPageSize(), cond, positions, t.getLastCommitTs());
+	}
+
+	public static Stream<String[]> stream(String tableName)
+	{
+		return selectCursor(tableName).stream();
+	}
+
+	public static Stream<String[]> stream(String tableName, String[] cols, String[] vals)
+	{
+		return selectCursor(tableName, cols, vals).stream();
+	}
+
+	public static Stream<String[]> streamIndex(String tableName, String[] cols, String[] vals)
+	{
+		return selectIndexCursor(tableName, cols, vals).stream();
+	}
+
 	public static String getFullTrace(String tableName)
 	{
 		Table t = FileManager.loadTable(tableName);
@@ -95,497 +332,624 @@ public class DBApp
 	}
 	// Validates records in the specified table by checking if their page files exist.
 	 public static ArrayList<String[]> validateRecords(String tableName) {
-		// Load the table object from storage using FileManager.  
-		 Table table = FileManager.loadTable(tableName);
-		 // If the table doesn't exist, return an empty ArrayList to avoid null pointer issues.
-	        if (table == null) return new ArrayList<>();
-	     // Create a list to collect any missing records
-	        ArrayList<String[]> missingRecords = new ArrayList<>();
-	     // Get the full trace log string from the table
-	        String fullTrace = table.getFullTrace();
-	     // Split the trace into individual lines
-	        String[] traceLines = fullTrace.split("\n");
-	     // Loop through each trace entry
-	        for (String traceEntry : traceLines) {
-	        	// Check only lines that indicate an inserted record
-	            if (traceEntry.startsWith("Inserted:")) {
-	                try {
-	                    int recordStart = traceEntry.indexOf("[");
-	                    int recordEnd = traceEntry.indexOf("]", recordStart);
-	                    String recordString = traceEntry.substring(recordStart + 1, recordEnd);
-	                    String[] record = recordString.split(",\\s*");
-	                 // Extract the page number from the trace string
-	                    String pageToken = "at page number:";
-	                    int pageIndex = traceEntry.indexOf(pageToken) + pageToken.length();
-	                    int commaIndex = traceEntry.indexOf(",", pageIndex);
-	                    String pageNumberStr = traceEntry.substring(pageIndex, commaIndex).trim();
-	                    int pageNumber = Integer.parseInt(pageNumberStr);
-	                 // Build the file path for the page file based on table name and page number
-	                    File pageFile = new File(FileManager.directory + "/" + tableName + "/" + pageNumber + ".db");
-	                 // If the expected page file does not exist, add the record to the list of missing records
-	                    if (!pageFile.exists()) {
-	                        missingRecords.add(record);
+	        Lock lock = LockManager.readLock(tableName);
+	        lock.lock();
+	        try {
+	            // Load the table object from storage using FileManager.
+	            Table table = FileManager.loadTable(tableName);
+	            // If the table doesn't exist, return an empty ArrayList to avoid null pointer issues.
+	            if (table == null) return new ArrayList<>();
+	            // Create a list to collect any missing records
+	            ArrayList<String[]> missingRecords = new ArrayList<>();
+	            // Pages still covered by the write-ahead log report the records of
+	            // their last logged image; the trace is only parsed for older pages
+	            TreeMap<Integer, Page> logged = FileManager.loggedPages(tableName);
+	            HashSet<Integer> reported = new HashSet<>();
+	            // Get the full trace log string from the table
+	            String fullTrace = table.getFullTrace();
+	            // Split the trace into individual lines
+	            String[] traceLines = fullTrace.split("\n");
+	            // Loop through each trace entry
+	            for (String traceEntry : traceLines) {
+	                // Check only lines that indicate an inserted record
+	                if (traceEntry.startsWith("Inserted:")) {
+	                    try {
+	                        int pageNumber = tracePageNumber(traceEntry);
+	                        // If the expected page was never written or has been lost, add the record to the list of missing records
+	                        if (!FileManager.pageExists(tableName, pageNumber)) {
+	                            Page image = logged.get(pageNumber);
+	                            if (image == null) {
+	                                missingRecords.add(traceRecord(traceEntry).split(",\\s*"));
+	                            } else if (reported.add(pageNumber)) {
+	                                missingRecords.addAll(image.select());
+	                            }
+	                        }
+	                    } catch (Exception e) {
+	                        e.printStackTrace();
 	                    }
-	                } catch (Exception e) {
-	                    e.printStackTrace();
 	                }
 	            }
+	            // Add a line to the trace log indicating how many records were found missing
+	            table.addTraceLine("Validating records: " + missingRecords.size() + " records missing.");
+	            FileManager.storeTableTrace(tableName, table);
+	            return missingRecords;
+	        } finally {
+	            lock.unlock();
 	        }
-	     // Add a line to the trace log indicating how many records were found missing
-	        table.addTraceLine("Validating records: " + missingRecords.size() + " records missing.");
-	        FileManager.storeTable(tableName, table);
-	        return missingRecords;
 	    }
+
+	 // Record part of an "Inserted:[...], at page number:..." trace line, without the brackets.
+	 private static String traceRecord(String traceEntry) {
+	     int recordStart = traceEntry.indexOf("[");
+	     int recordEnd = traceEntry.lastIndexOf("], at page number:");
+	     return traceEntry.substring(recordStart + 1, recordEnd);
+	 }
+
+	 // Page number of an "Inserted:" trace line.
+	 private static int tracePageNumber(String traceEntry) {
+	     String pageToken = "], at page number:";
+	     int pageIndex = traceEntry.lastIndexOf(pageToken) + pageToken.length();
+	     int commaIndex = traceEntry.indexOf(",", pageIndex);
+	     return Integer.parseInt(traceEntry.substring(pageIndex, commaIndex).trim());
+	 }
 	 
 
 	 public static void recoverRecords(String tableName, ArrayList<String[]> missing) {
-		    // Load the table object from disk using the table name
-		    Table table = FileManager.loadTable(tableName);
-		    // If table doesn't exist, exit early
-		    if (table == null) return;
-
-		    // List to keep track of page numbers that had records recovered
-		    ArrayList<Integer> recoveredPages = new ArrayList<>();
-
-		    // Get the full trace log of operations from the table
-		    String fullTrace = table.getFullTrace();
-		    // Split the trace log into individual lines
-		    String[] traceLines = fullTrace.split("\n");
-
-		    // Index used to keep track of where we are in inserting/recovering records
-		    int recordIndex = 0;
-
-		    // Loop through each missing record
-		    for (String[] record : missing) {
-		        // Initialize page number where the record will be inserted
-		        int pageNumber = -1;
-
-		        // Format the record for string matching in trace
-		        String recordFormatted = "[" + String.join(", ", record) + "]";
-
-		        // Try to find the page number where this record was previously inserted by checking the trace
-		        for (String traceEntry : traceLines) {
-		            if (traceEntry.startsWith("Inserted:") && traceEntry.contains(recordFormatted)) {
-		                String pageToken = "at page number:";
-		                int pageIndex = traceEntry.indexOf(pageToken) + pageToken.length();
-		                int commaIndex = traceEntry.indexOf(",", pageIndex);
-
-		                // Extract and parse the page number from the trace string
-		                String pageNumberStr = traceEntry.substring(pageIndex, commaIndex).trim();
-		                try {
-		                    pageNumber = Integer.parseInt(pageNumberStr);
-		                } catch (NumberFormatException e) {
-		                    // If there's a parsing error, print it and move on
-		                    e.printStackTrace();
-		                    continue;
-		                }
-		                break; // Exit the inner loop once we find a match
+		    Lock lock = LockManager.writeLock(tableName);
+		    lock.lock();
+		    try {
+		        // Load the table object from disk using the table name
+		        Table table = FileManager.loadTable(tableName);
+		        // If table doesn't exist, exit early
+		        if (table == null) return;
+
+		        // List to keep track of page numbers that had records recovered
+		        ArrayList<Integer> recoveredPages = new ArrayList<>();
+
+		        // Page of every record still covered by the write-ahead log
+		        HashMap<List<String>, Integer> loggedPage = new HashMap<>();
+		        for (Map.Entry<Integer, Page> e : FileManager.loggedPages(tableName).entrySet()) {
+		            for (String[] record : e.getValue().select()) {
+		                loggedPage.putIfAbsent(Arrays.asList(record), e.getKey());
 		            }
 		        }
+		        // Page of every record inserted according to the trace, built on first
+		        // need in one pass so each lookup is a hash probe; the first insert of
+		        // a record wins
+		        HashMap<String, Integer> tracedPage = null;
+
+		        // Index used to keep track of where we are in inserting/recovering records
+		        int recordIndex = 0;
+
+		        // Loop through each missing record
+		        for (String[] record : missing) {
+		            // Initialize page number where the record will be inserted
+		            Integer found = loggedPage.get(Arrays.asList(record));
+		            if (found == null) {
+		                if (tracedPage == null) {
+		                    tracedPage = new HashMap<>();
+		                    for (String traceEntry : table.getFullTrace().split("\n")) {
+		                        if (traceEntry.startsWith("Inserted:")) {
+		                            try {
+		                                tracedPage.putIfAbsent(traceRecord(traceEntry), tracePageNumber(traceEntry));
+		                            } catch (RuntimeException e) {
+		                                // If there's a parsing error, print it and move on
+		                                e.printStackTrace();
+		                            }
+		                        }
+		                    }
+		                }
+		                found = tracedPage.get(String.join(", ", record));
+		            }
+		            int pageNumber = found == null ? -1 : found;
 
-		        // If page number wasn't found in trace, calculate it based on data page size
-		        if (pageNumber == -1) {
-		            pageNumber = recordIndex / dataPageSize;
-		        }
+		            // If page number wasn't found in trace, calculate it based on data page size
+		            if (pageNumber == -1) {
+		                pageNumber = recordIndex / table.getPageSize();
+		            }
 
-		        // Load the page where the record will be inserted
-		        Page page = FileManager.loadTablePage(tableName, pageNumber);
-		        // If page doesn't exist yet, create a new one
-		        if (page == null) {
-		            page = new Page();
-		        }
+		            // Load the page where the record will be inserted
+		            Page page = FileManager.loadTablePage(tableName, pageNumber);
+		            // If page doesn't exist yet, create a new one
+		            if (page == null) {
+		                page = new Page(table.getColumnTypes());
+		            }
 
-		        // Insert the missing record into the page
-		        page.insert(record);
+		            // Insert the missing record into the page
+		            page.insert(record, 0, table.getPageSize());
+		            table.encode(record);
 
-		        // Save the modified page back to disk
-		        FileManager.storeTablePage(tableName, pageNumber, page);
+		            // Save the modified page back to disk
+		            FileManager.storeTablePage(tableName, pageNumber, page);
 
-		        // Keep track of pages that had recovery done to them (avoid duplicates)
-		        if (!recoveredPages.contains(pageNumber)) {
-		            recoveredPages.add(pageNumber);
-		        }
+		            // Keep track of pages that had recovery done to them (avoid duplicates)
+		            if (!recoveredPages.contains(pageNumber)) {
+		                recoveredPages.add(pageNumber);
+		            }
 
-		        // Update the page count in the table if this is a new page
-		        table.updatePageCount(pageNumber + 1);
-		        // Increase the total record count in the table
-		        table.incrementRecordsCount();
-
-		        // Now we update the bitmap index for this record (for each column)
-		        File tableDir = new File(FileManager.directory, tableName);
-		        // Get all index files (excluding table and numbered page files)
-		        File[] files = tableDir.listFiles((dir, name) -> name.endsWith(".db") && !name.equals(tableName + ".db") && !name.matches("\\d+\\.db"));
-
-		        // If index files exist, update the bitmap index
-		        if (files != null) {
-		            for (File f : files) {
-		                // Get column name from file name
-		                String colName = f.getName().replace(".db", "");
-
-		                // Load the bitmap index for this column
-		                BitmapIndex index = FileManager.loadTableIndex(tableName, colName);
-		                if (index == null) continue;
-
-		                // Find the index of this column in the table
-		                int colIndex = -1;
-		                String[] colNames = table.getColumnNames();
-		                for (int i = 0; i < colNames.length; i++) {
-		                    if (colNames[i].equals(colName)) {
-		                        colIndex = i;
-		                        break;
+		            // Update the page count in the table if this is a new page
+		            table.updatePageCount(pageNumber + 1);
+		            table.updateZoneMap(pageNumber, page.select());
+		            // Increase the total record count in the table
+		            table.incrementRecordsCount();
+
+		            // Now we update the bitmap index for this record (for each column)
+		            File tableDir = new File(FileManager.directory, tableName);
+		            // Get all index files (excluding table and numbered page files)
+		            File[] files = tableDir.listFiles((dir, name) -> name.endsWith(".db") && !name.equals(tableName + ".db") && !name.matches("\\d+\\.db"));
+
+		            // If index files exist, update the bitmap index
+		            if (files != null) {
+		                for (File f : files) {
+		                    // Get column name from file name
+		                    String colName = f.getName().replace(".db", "");
+
+		                    // Load the bitmap index for this column
+		                    BitmapIndex index = FileManager.loadTableIndex(tableName, colName);
+		                    if (index == null) continue;
+
+		                    // Find the index of this column in the table
+		                    int colIndex = -1;
+		                    String[] colNames = table.getColumnNames();
+		                    for (int i = 0; i < colNames.length; i++) {
+		                        if (colNames[i].equals(colName)) {
+		                            colIndex = i;
+		                            break;
+		                        }
 		                    }
-		                }
-		                if (colIndex == -1) continue;
+		                    if (colIndex == -1) continue;
 
-		                // Get the value of the column in this record
-		                String val = record[colIndex];
+		                    // Get the value of the column in this record
+		                    String val = record[colIndex];
 
-		                // Insert the corresponding bit (1 = present) in the bitmap index
-		                index.insertBit(val, recordIndex, 1);
+		                    // Insert the corresponding bit (1 = present) in the bitmap index
+		                    index.insertBit(val, recordIndex, 1);
 
-		                // Store the updated index back to disk
-		                FileManager.storeTableIndex(tableName, colName, index);
+		                    // Store the updated index back to disk
+		                    FileManager.storeTableIndex(tableName, colName, index);
+		                }
 		            }
+
+		            // Move to the next record
+		            recordIndex++;
 		        }
 
-		        // Move to the next record
-		        recordIndex++;
-		    }
+		        // Log the recovery operation in the trace
+		        table.addTraceLine("Recovering " + missing.size() + " records in pages: " + recoveredPages + ".");
 
-		    // Log the recovery operation in the trace
-		    table.addTraceLine("Recovering " + missing.size() + " records in pages: " + recoveredPages + ".");
+		        // Recovered records may sit in other slots than before
+		        rebuildEntryIndexes(tableName, table);
 
-		    // Save the updated table metadata and trace
-		    FileManager.storeTable(tableName, table);
+		        // Save the updated table metadata and trace
+		        FileManager.storeTable(tableName, table);
+		    } finally {
+		        lock.unlock();
+		    }
 		}
 
 	 
 	 public static void createBitMapIndex(String tableName, String colName) {
-	     long startTime = System.currentTimeMillis();
-	     Table table = FileManager.loadTable(tableName);
-	     if (table == null) {
-	         System.out.println("Table " + tableName + " not found.");
-	         return;
-	     }
-	     // Determine the position (index) of the target column
-	     int colIndex = -1;
-	     String[] columnNames = table.getColumnNames();
-	     for (int i = 0; i < columnNames.length; i++) {
-	         if (columnNames[i].equals(colName)) {
-	             colIndex = i;
-	             break;
+	     Lock lock = LockManager.writeLock(tableName);
+	     lock.lock();
+	     try {
+	         long startTime = System.currentTimeMillis();
+	         Table table = FileManager.loadTable(tableName);
+	         if (table == null) {
+	             System.out.println("Table " + tableName + " not found.");
+	             return;
 	         }
+	         // Determine the position (index) of the target column
+	         int colIndex = -1;
+	         String[] columnNames = table.getColumnNames();
+	         for (int i = 0; i < columnNames.length; i++) {
+	             if (columnNames[i].equals(colName)) {
+	                 colIndex = i;
+	                 break;
+	             }
+	         }
+	         if (colIndex == -1) {
+	             System.out.println("Column " + colName + " not found.");
+	             return;
+	         }
+	         BitmapIndex index = buildIndex(tableName, table, colIndex);
+	         FileManager.storeTableIndex(tableName, colName, index);
+	         table.setIndexStats(colName, IndexStats.of(index));
+	         long stopTime = System.currentTimeMillis();
+	         // Log index-creation event in the table trace
+	         table.addTraceLine("Index created for column: " + colName +
+	                            ", execution time (mil):" + (stopTime - startTime));
+	         // Add the column name to the table’s list of indexed columns
+	         table.addIndexedColumn(colName);
+	         FileManager.storeTable(tableName, table);
+	     } finally {
+	         lock.unlock();
 	     }
-	     if (colIndex == -1) {
-	         System.out.println("Column " + colName + " not found.");
-	         return;
-	     }
-	     ArrayList<String[]> records = table.select();
-	     BitmapIndex index = new BitmapIndex();
-	     // Collect all distinct values in the target column
-	     Set<String> distinctValues = new HashSet<>();
-	     for (String[] record : records) {
-	         distinctValues.add(record[colIndex]);
-	     }
-	     for (String val : distinctValues) {
-	         index.addValue(val);
-	     }
-	     for (String[] record : records) {
-	         String val = record[colIndex];
-	         index.appendBit(val, 1);
-	     }
-	     FileManager.storeTableIndex(tableName, colName, index);
-	     long stopTime = System.currentTimeMillis();
-	     // Log index-creation event in the table trace
-	     table.addTraceLine("Index created for column: " + colName +
-	                        ", execution time (mil):" + (stopTime - startTime));
-	     // Add the column name to the table’s list of indexed columns
-	     table.addIndexedColumn(colName);
-	     FileManager.storeTable(tableName, table);
 	 }
 
 	 
-	 public static String getValueBits(String tableName, String colName, String value) {
-		    if (tableName == null || colName == null) {
-		        throw new IllegalArgumentException("Table name and column name must not be null.");
-		    }
-
-		    Table table = FileManager.loadTable(tableName);
-		    int recordCount = (table != null) ? table.select().size() : 0;
-
-		    BitmapIndex index = FileManager.loadTableIndex(tableName, colName);
+	 // Builds the index in one pass over the pages; each record only touches
+	 // the bitmap of its own value
+	 private static BitmapIndex buildIndex(String tableName, Table table, int colIndex) {
+	     BitmapIndex index = new BitmapIndex();
+	     for (int p = 0; p < table.getPageCount(); p++) {
+	         Page page = FileManager.loadTablePage(tableName, p);
+	         for (String[] record : page.select()) {
+	             index.appendBit(record[colIndex], 1);
+	         }
+	     }
+	     return index;
+	 }
 
-		    if (index == null) {
-		        // Java 8-compatible repeat
-		        StringBuilder zeros = new StringBuilder();
-		        for (int i = 0; i < recordCount; i++) {
-		            zeros.append('0');
-		        }
-		        return zeros.toString();
-		    }
+	 // Creates a B+tree index on the column, suited to unique and other high
+	 // cardinality columns: lookups and range scans read a number of index
+	 // nodes logarithmic in the table size.
+	 public static void createBTreeIndex(String tableName, String colName) {
+	     Lock lock = LockManager.writeLock(tableName);
+	     lock.lock();
+	     try {
+	         long startTime = System.currentTimeMillis();
+	         Table table = FileManager.loadTable(tableName);
+	         if (table == null) {
+	             System.out.println("Table " + tableName + " not found.");
+	             return;
+	         }
+	         int colIndex = Arrays.asList(table.getColumnNames()).indexOf(colName);
+	         if (colIndex == -1) {
+	             System.out.println("Column " + colName + " not found.");
+	             return;
+	         }
+	         FileManager.storeBTreeIndex(tableName, colName, columnType(table, colIndex), indexEntries(tableName, table, colIndex));
+	         long stopTime = System.currentTimeMillis();
+	         table.addTraceLine("B+tree index created for column: " + colName +
+	                            ", execution time (mil):" + (stopTime - startTime));
+	         table.addIndexedColumn(colName);
+	         FileManager.storeTable(tableName, table);
+	     } finally {
+	         lock.unlock();
+	     }
+	 }
 
-		    String bitStream = index.getBitStream(value);
+	 // Creates a hash index on the column for equality lookups, which read one
+	 // directory slot and one bucket of the index whatever the table size.
+	 // Plain selects and selectIndex use it for equality conditions.
+	 public static void createHashIndex(String tableName, String colName) {
+	     Lock lock = LockManager.writeLock(tableName);
+	     lock.lock();
+	     try {
+	         long startTime = System.currentTimeMillis();
+	         Table table = FileManager.loadTable(tableName);
+	         if (table == null) {
+	             System.out.println("Table " + tableName + " not found.");
+	             return;
+	         }
+	         int colIndex = Arrays.asList(table.getColumnNames()).indexOf(colName);
+	         if (colIndex == -1) {
+	             System.out.println("Column " + colName + " not found.");
+	             return;
+	         }
+	         FileManager.storeHashIndex(tableName, colName, indexEntries(tableName, table, colIndex));
+	         long stopTime = System.currentTimeMillis();
+	         table.addTraceLine("Hash index created for column: " + colName +
+	                            ", execution time (mil):" + (stopTime - startTime));
+	         table.addIndexedColumn(colName);
+	         FileManager.storeTable(tableName, table);
+	     } finally {
+	         lock.unlock();
+	     }
+	 }
 
-		    // Pad with 0s if the bitStream is shorter than the total record count
-		    if (bitStream.length() < recordCount) {
-		        StringBuilder padded = new StringBuilder(bitStream);
-		        while (padded.length() < recordCount) {
-		            padded.append('0');
-		        }
-		        bitStream = padded.toString();
-		    }
+	 // Recomputes the statistics the planner estimates rows with: every
+	 // column gets exact row, null and distinct counts and bounds from a full
+	 // scan, and a histogram and most common values from a uniform sample of
+	 // up to ColumnStats.SAMPLE_SIZE records; the value counts of bitmap
+	 // indexed columns are recounted too.
+	 public static void analyze(String tableName) {
+	     Lock lock = LockManager.writeLock(tableName);
+	     lock.lock();
+	     try {
+	         long startTime = System.currentTimeMillis();
+	         Table table = FileManager.loadTable(tableName);
+	         if (table == null) {
+	             System.out.println("Table " + tableName + " not found.");
+	             return;
+	         }
+	         String[] cols = table.getColumnNames();
+	         ColumnStats[] stats = table.newColumnStats();
+	         IndexStats[] counts = new IndexStats[cols.length];
+	         for (int j = 0; j < cols.length; j++) {
+	             if (FileManager.indexExists(tableName, cols[j])) counts[j] = new IndexStats();
+	         }
+	         // reservoir sample of the records scanned so far
+	         ArrayList<String[]> sample = new ArrayList<>();
+	         Random random = new Random();
+	         long seen = 0;
+	         try (TableCursor cursor = new TableCursor(tableName, table.getPageCount(), null, null, table.getLastCommitTs())) {
+	             while (cursor.hasNext()) {
+	                 String[] record = cursor.next();
+	                 for (int j = 0; j < cols.length; j++) {
+	                     String value = j < record.length ? record[j] : null;
+	                     stats[j].add(value);
+	                     if (counts[j] != null) counts[j].add(value);
+	                 }
+	                 seen++;
+	                 if (sample.size() < ColumnStats.SAMPLE_SIZE) {
+	                     sample.add(record);
+	                 } else {
+	                     long r = (long) (random.nextDouble() * seen);
+	                     if (r < ColumnStats.SAMPLE_SIZE) sample.set((int) r, record);
+	                 }
+	             }
+	         }
+	         for (int j = 0; j < cols.length; j++) {
+	             ArrayList<String> values = new ArrayList<>(sample.size());
+	             for (String[] record : sample) {
+	                 values.add(j < record.length ? record[j] : null);
+	             }
+	             stats[j].analyze(values);
+	             if (counts[j] != null) table.setIndexStats(cols[j], counts[j]);
+	         }
+	         table.setColumnStats(stats);
+	         long stopTime = System.currentTimeMillis();
+	         table.addTraceLine("Analyzed columns:" + Arrays.toString(cols) + ", records:" + seen +
+	                            ", execution time (mil):" + (stopTime - startTime));
+	         FileManager.storeTable(tableName, table);
+	     } finally {
+	         lock.unlock();
+	     }
+	 }
 
-		    return bitStream;
-		}
-public static ArrayList<String[]> selectIndex(String tableName, String[] cols, String[] vals) {
-		    // Start timing the execution to log later
-		    long startTime = System.currentTimeMillis();
-
-		    // Load the table object from disk
-		    Table table = FileManager.loadTable(tableName);
-		    // If the table is not found, return an empty result
-		    if (table == null) return new ArrayList<>();
-
-		    // Get all records from the table
-		    ArrayList<String[]> allRecords = table.select();
-
-		    // Lists to store indexed and non-indexed columns separately
-		    ArrayList<String> indexedCols = new ArrayList<>();
-		    ArrayList<String> nonIndexedCols = new ArrayList<>();
-		    // Map to store column name to its corresponding bitmap index
-		    Map<String, BitmapIndex> indexMap = new HashMap<>();
-
-		    // Iterate over each column to check if it has a bitmap index
-		    for (String col : cols) {
-		        File indexFile = new File(FileManager.directory, tableName + File.separator + col + ".db");
-		        // If the index file exists, load it and store in index map
-		        if (indexFile.exists()) {
-		            BitmapIndex index = FileManager.loadTableIndex(tableName, col);
-		            indexMap.put(col, index);
-		            indexedCols.add(col);
-		        } else {
-		            // Otherwise, mark it as non-indexed
-		            nonIndexedCols.add(col);
-		        }
-		    }
+	 // {value, page, slot} of every record of the table.
+	 private static List<Object[]> indexEntries(String tableName, Table table, int colIndex) {
+	     ArrayList<Object[]> entries = new ArrayList<>();
+	     for (int p = 0; p < table.getPageCount(); p++) {
+	         Page page = FileManager.loadTablePage(tableName, p);
+	         if (page == null) continue;
+	         ArrayList<String[]> records = page.select();
+	         for (int slot = 0; slot < records.size(); slot++) {
+	             entries.add(new Object[]{records.get(slot)[colIndex], p, slot});
+	         }
+	     }
+	     return entries;
+	 }
 
-		    // Case 1: All columns have indexes
-		    if (indexedCols.size() == cols.length) {
-		        ArrayList<Integer> resultBitmap = null;
-
-		        // Generate intersection of bitmaps for all indexed columns
-		        for (int i = 0; i < cols.length; i++) {
-		            String col = cols[i];
-		            String val = vals[i];
-		            BitmapIndex idx = indexMap.get(col);
-		            ArrayList<Integer> bits = idx.getBits(val);
-
-		            if (resultBitmap == null) {
-		                resultBitmap = new ArrayList<>(bits);
-		            } else {
-		                for (int j = 0; j < resultBitmap.size() && j < bits.size(); j++) {
-		                    resultBitmap.set(j, resultBitmap.get(j) & bits.get(j));
-		                }
-		            }
-		        }
+	 // Rebuilds the B+tree and hash indexes, whose entries hold record positions.
+	 private static void rebuildEntryIndexes(String tableName, Table table) {
+	     String[] cols = table.getColumnNames();
+	     for (int j = 0; j < cols.length; j++) {
+	         boolean btree = FileManager.btreeIndexExists(tableName, cols[j]);
+	         boolean hash = FileManager.hashIndexExists(tableName, cols[j]);
+	         if (!btree && !hash) continue;
+	         List<Object[]> entries = indexEntries(tableName, table, j);
+	         if (btree) FileManager.storeBTreeIndex(tableName, cols[j], columnType(table, j), entries);
+	         if (hash) FileManager.storeHashIndex(tableName, cols[j], entries);
+	     }
+	 }
 
-		        // Filter matching records based on the result bitmap
-		        ArrayList<String[]> matched = new ArrayList<>();
-		        for (int i = 0; i < resultBitmap.size(); i++) {
-		            if (resultBitmap.get(i) == 1 && i < allRecords.size()) {
-		                matched.add(allRecords.get(i));
-		            }
+	 public static String getValueBits(String tableName, String colName, String value) {
+		    Lock lock = LockManager.readLock(tableName);
+		    lock.lock();
+		    try {
+		        if (tableName == null || colName == null) {
+		            throw new IllegalArgumentException("Table name and column name must not be null.");
 		        }
 
-		        // Log and return the result
-		        long stopTime = System.currentTimeMillis();
-		     // sort indexed columns
-		        String[] sortedIndexed = indexedCols.toArray(new String[0]);
-		        Arrays.sort(sortedIndexed);
+		        Table table = FileManager.loadTable(tableName);
+		        int recordCount = (table != null) ? table.getRecordsCount() : 0;
+		        if (table != null) value = table.conformValue(colName, value);
 
-		        table.addTraceLine("Select index condition:" + Arrays.toString(cols) + "->" + Arrays.toString(vals) +
-		                ", Indexed columns: " + Arrays.toString(sortedIndexed) +
-		                ", Indexed selection count: " + matched.size() +
-		                ", Final count: " + matched.size() +
-		                ", execution time (mil):" + (stopTime - startTime));
+		        BitmapIndex index = FileManager.loadTableIndex(tableName, colName);
 
-		        FileManager.storeTable(tableName, table);
-		        return matched;
-		    }
-
-		    // Case 2: Only one column is indexed
-		    else if (indexedCols.size() == 1) {
-		        String indexedCol = indexedCols.get(0);
-		        String indexedVal = null;
-
-		        // Find the corresponding value for the indexed column
-		        for (int i = 0; i < cols.length; i++) {
-		            if (cols[i].equals(indexedCol)) {
-		                indexedVal = vals[i];
-		                break;
+		        if (index == null) {
+		            // Java 8-compatible repeat
+		            StringBuilder zeros = new StringBuilder();
+		            for (int i = 0; i < recordCount; i++) {
+		                zeros.append('0');
 		            }
+		            return zeros.toString();
 		        }
 
-		        // Get matching bitmap and filter records
-		        BitmapIndex index = indexMap.get(indexedCol);
-		        ArrayList<Integer> bits = index.getBits(indexedVal);
-		        ArrayList<String[]> temp = new ArrayList<>();
-		        for (int i = 0; i < bits.size(); i++) {
-		            if (bits.get(i) == 1 && i < allRecords.size()) {
-		                temp.add(allRecords.get(i));
-		            }
-		        }
+		        String bitStream = index.getBitStream(value);
 
-		        // Further filter using non-indexed columns
-		        ArrayList<String[]> finalResults = new ArrayList<>();
-		        for (String[] row : temp) {
-		            boolean match = true;
-		            for (int i = 0; i < cols.length; i++) {
-		                if (cols[i].equals(indexedCol)) continue;
-		                String val = vals[i];
-		                String[] colNames = table.getColumnNames();
-		                for (int j = 0; j < colNames.length; j++) {
-		                    if (colNames[j].equals(cols[i]) && !row[j].equals(val)) {
-		                        match = false;
-		                        break;
-		                    }
-		                }
-		                if (!match) break;
+		        // Pad with 0s if the bitStream is shorter than the total record count
+		        if (bitStream.length() < recordCount) {
+		            StringBuilder padded = new StringBuilder(bitStream);
+		            while (padded.length() < recordCount) {
+		                padded.append('0');
 		            }
-		            if (match) finalResults.add(row);
+		            bitStream = padded.toString();
 		        }
 
-		        // Log and return the result
-		        long stopTime = System.currentTimeMillis();
-		     // sort indexed (one) and non-indexed columns
-		        String[] sortedIndexed    = indexedCols.toArray(new String[0]);
-		        String[] sortedNonIndexed = nonIndexedCols.toArray(new String[0]);
-		        Arrays.sort(sortedIndexed);
-		        Arrays.sort(sortedNonIndexed);
-
-		        table.addTraceLine("Select index condition:" + Arrays.toString(cols) + "->" + Arrays.toString(vals) +
-		                ", Indexed columns: " + Arrays.toString(sortedIndexed) +
-		                ", Indexed selection count: " + temp.size() +
-		                ", Non Indexed: " + Arrays.toString(sortedNonIndexed) +
-		                ", Final count: " + finalResults.size() +
-		                ", execution time (mil):" + (stopTime - startTime));
-
-		        FileManager.storeTable(tableName, table);
-		        return finalResults;
+		        return bitStream;
+		    } finally {
+		        lock.unlock();
 		    }
+		}
+// Selects the records equal to every value. QueryPlanner picks the indexes
+	// to intersect, most selective first, or a scan when that reads fewer
+	// pages; the trace reports the columns with an index and the records
+	// satisfying their conditions whichever path was taken.
+	public static ArrayList<String[]> selectIndex(String tableName, String[] cols, String[] vals) {
+	    Lock lock = LockManager.readLock(tableName);
+	    lock.lock();
+	    try {
+	        // Start timing the execution to log later
+	        long startTime = System.currentTimeMillis();
+
+	        // Load the table object from disk
+	        Table table = FileManager.loadTable(tableName);
+	        // If the table is not found, return an empty result
+	        if (table == null) return new ArrayList<>();
+	        vals = table.conformValues(cols, vals);
+
+	        QueryPlan plan = QueryPlanner.plan(tableName, table, equalities(table, cols, vals));
+	        int[] indexedCount = new int[1];
+	        ArrayList<String[]> finalResults = execute(tableName, table, plan, indexedCount);
+
+	        // Log and return the result, with sorted column lists
+	        long stopTime = System.currentTimeMillis();
+	        String[] sortedIndexed = plan.getIndexedColumns().toArray(new String[0]);
+	        String[] sortedNonIndexed = plan.getNonIndexedColumns().toArray(new String[0]);
+	        Arrays.sort(sortedIndexed);
+	        Arrays.sort(sortedNonIndexed);
+
+	        String tracer = "Select index condition:" + Arrays.toString(cols) + "->" + Arrays.toString(vals);
+	        if (sortedIndexed.length > 0) {
+	            tracer += ", Indexed columns: " + Arrays.toString(sortedIndexed) +
+	                      ", Indexed selection count: " + indexedCount[0];
+	        }
+	        if (sortedNonIndexed.length > 0) {
+	            tracer += ", Non Indexed: " + Arrays.toString(sortedNonIndexed);
+	        }
+	        table.addTraceLine(tracer + ", Final count: " + finalResults.size() +
+	                ", execution time (mil):" + (stopTime - startTime));
 
-		    // Case 3: Some (but not all) columns are indexed
-		    else if (indexedCols.size() > 0) {
-		        ArrayList<Integer> resultBitmap = null;
-
-		        // Combine indexed column bitmaps
-		        for (String indexedCol : indexedCols) {
-		            String val = null;
-		            for (int i = 0; i < cols.length; i++) {
-		                if (cols[i].equals(indexedCol)) {
-		                    val = vals[i];
-		                    break;
-		                }
-		            }
-
-		            BitmapIndex idx = indexMap.get(indexedCol);
-		            ArrayList<Integer> bits = idx.getBits(val);
-		            if (resultBitmap == null) {
-		                resultBitmap = new ArrayList<>(bits);
-		            } else {
-		                for (int i = 0; i < resultBitmap.size() && i < bits.size(); i++) {
-		                    resultBitmap.set(i, resultBitmap.get(i) & bits.get(i));
-		                }
-		            }
-		        }
-
-		        // Filter records based on combined bitmap
-		        ArrayList<String[]> temp = new ArrayList<>();
-		        for (int i = 0; i < resultBitmap.size(); i++) {
-		            if (resultBitmap.get(i) == 1 && i < allRecords.size()) {
-		                temp.add(allRecords.get(i));
-		            }
-		        }
+	        FileManager.storeTableTrace(tableName, table);
+	        return finalResults;
+	    } finally {
+	        lock.unlock();
+	    }
+	}
 
-		        // Further filter using non-indexed columns
-		        ArrayList<String[]> finalResults = new ArrayList<>();
-		        for (String[] row : temp) {
-		            boolean match = true;
-		            for (int i = 0; i < cols.length; i++) {
-		                if (indexedCols.contains(cols[i])) continue;
-		                String val = vals[i];
-		                String[] colNames = table.getColumnNames();
-		                for (int j = 0; j < colNames.length; j++) {
-		                    if (colNames[j].equals(cols[i]) && !row[j].equals(val)) {
-		                        match = false;
-		                        break;
-		                    }
-		                }
-		                if (!match) break;
-		            }
-		            if (match) finalResults.add(row);
-		        }
+	// Predicate counterpart of selectIndex. Equalities can be answered by a
+	// hash index, ranges by one range scan of a B+tree, and both by a bitmap
+	// index, a range by or-ing the bitmaps of the values inside it.
+	public static ArrayList<String[]> selectIndex(String tableName, Predicate... predicates) {
+	    Lock lock = LockManager.readLock(tableName);
+	    lock.lock();
+	    try {
+	        long startTime = System.currentTimeMillis();
+	        Table table = FileManager.loadTable(tableName);
+	        if (table == null) return new ArrayList<>();
 
-		        // Log and return the result
-		        long stopTime = System.currentTimeMillis();
-		     // Sort non-indexed columns for consistent trace format
-		     // Sort non-indexed columns
-		        String[] sortedNonIndexed = nonIndexedCols.toArray(new String[0]);
-		        Arrays.sort(sortedNonIndexed);
+	        QueryPlan plan = QueryPlanner.plan(tableName, table, Predicate.bindAll(table, predicates));
+	        int[] indexedCount = new int[1];
+	        ArrayList<String[]> finalResults = execute(tableName, table, plan, indexedCount);
 
-		        // Sort indexed columns
-		        String[] sortedIndexed = indexedCols.toArray(new String[0]);
-		        Arrays.sort(sortedIndexed);
+	        TreeSet<String> indexedCols = new TreeSet<>(plan.getIndexedColumns());
+	        TreeSet<String> nonIndexedCols = new TreeSet<>(plan.getNonIndexedColumns());
+	        String tracer = "Select index predicates:" + Arrays.toString(predicates);
+	        if (!indexedCols.isEmpty()) {
+	            tracer += ", Indexed columns: " + indexedCols + ", Indexed selection count: " + indexedCount[0];
+	        }
+	        if (!nonIndexedCols.isEmpty()) {
+	            tracer += ", Non Indexed: " + nonIndexedCols;
+	        }
 
-		        // Add trace line with sorted arrays
-		        table.addTraceLine("Select index condition:" + Arrays.toString(cols) + "->" + Arrays.toString(vals) +
-		                ", Indexed columns: " + Arrays.toString(sortedIndexed) +
-		                ", Indexed selection count: " + temp.size() +
-		                ", Non Indexed: " + Arrays.toString(sortedNonIndexed) +
-		                ", Final count: " + finalResults.size() +
-		                ", execution time (mil):" + (stopTime - startTime));
+	        long stopTime = System.currentTimeMillis();
+	        table.addTraceLine(tracer + ", Final count: " + finalResults.size() +
+	                ", execution time (mil):" + (stopTime - startTime));
+	        FileManager.storeTableTrace(tableName, table);
+	        return finalResults;
+	    } finally {
+	        lock.unlock();
+	    }
+	}
 
+	// Plans and runs the index select without adding a trace line, returning
+	// the plan with its estimated and actual rows.
+	public static QueryPlan explain(String tableName, String[] cols, String[] vals) {
+	    Lock lock = LockManager.readLock(tableName);
+	    lock.lock();
+	    try {
+	        Table table = FileManager.loadTable(tableName);
+	        vals = table.conformValues(cols, vals);
+	        QueryPlan plan = QueryPlanner.plan(tableName, table, equalities(table, cols, vals));
+	        execute(tableName, table, plan, new int[1]);
+	        return plan;
+	    } finally {
+	        lock.unlock();
+	    }
+	}
 
-		        FileManager.storeTable(tableName, table);
-		        return finalResults;
-		    }
+	public static QueryPlan explain(String tableName, Predicate... predicates) {
+	    Lock lock = LockManager.readLock(tableName);
+	    lock.lock();
+	    try {
+	        Table table = FileManager.loadTable(tableName);
+	        QueryPlan plan = QueryPlanner.plan(tableName, table, Predicate.bindAll(table, predicates));
+	        execute(tableName, table, plan, new int[1]);
+	        return plan;
+	    } finally {
+	        lock.unlock();
+	    }
+	}
 
-		    // Case 4: No columns are indexed (fallback to full scan)
-		    else {
-		        ArrayList<String[]> finalResults = new ArrayList<>();
-		        String[] colNames = table.getColumnNames();
-
-		        // Linear scan of all records to filter based on values
-		        for (String[] row : allRecords) {
-		            boolean match = true;
-		            for (int i = 0; i < cols.length; i++) {
-		                String col = cols[i];
-		                String val = vals[i];
-		                for (int j = 0; j < colNames.length; j++) {
-		                    if (colNames[j].equals(col) && !row[j].equals(val)) {
-		                        match = false;
-		                        break;
-		                    }
-		                }
-		                if (!match) break;
-		            }
-		            if (match) finalResults.add(row);
-		        }
+	// Equality predicates of a condition, bound leniently so that a value
+	// outside the column type matches nothing.
+	private static Predicate[] equalities(Table table, String[] cols, String[] vals) {
+	    Predicate[] res = new Predicate[cols.length];
+	    for (int i = 0; i < cols.length; i++) {
+	        res[i] = Predicate.eq(cols[i], vals[i]).bind(table, false);
+	    }
+	    return res;
+	}
 
-		        // Log and return the result
-		        long stopTime = System.currentTimeMillis();
-		        String[] sortedCols = cols.clone();
-		        Arrays.sort(sortedCols);
+	// Runs the plan: intersects the positions of its lookups and fetches the
+	// records left, or scans the table. indexedCount[0] receives the number of
+	// records satisfying the predicates on indexed columns.
+	private static ArrayList<String[]> execute(String tableName, Table table, QueryPlan plan, int[] indexedCount) {
+	    ArrayList<String[]> temp;
+	    if (plan.getAccess() == QueryPlan.Access.SCAN) {
+	        Predicate[] indexed = plan.getIndexedPredicates().toArray(new Predicate[0]);
+	        temp = table.scan(indexed, new ArrayList<>(), new int[1]);
+	    } else {
+	        CompressedBitmap positions = null;
+	        for (QueryPlan.Step s : plan.getSteps()) {
+	            CompressedBitmap bits = QueryPlanner.positions(tableName, table, s);
+	            positions = (positions == null) ? bits : positions.and(bits);
+	            // nothing left for the less selective lookups to remove
+	            if (positions.isEmpty()) break;
+	        }
+	        Predicate[] skipped = new Predicate[plan.getSkipped().size()];
+	        for (int i = 0; i < skipped.length; i++) {
+	            skipped[i] = plan.getSkipped().get(i).getPredicate();
+	        }
+	        temp = new ArrayList<>();
+	        for (String[] row : new TableCursor(tableName, table.getPageCount(), table.getPageSize(), null, positions, table.getLastCommitTs()).toList()) {
+	            if (Predicate.testAll(skipped, row)) temp.add(row);
+	        }
+	    }
+	    indexedCount[0] = temp.size();
 
-		        table.addTraceLine("Select index condition:" + Arrays.toString(cols) + "->" + Arrays.toString(vals) +
-		                           ", Non Indexed: " + Arrays.toString(sortedCols) +
-		                           ", Final count: " + finalResults.size() +
-		                           ", execution time (mil):" + (stopTime - startTime));
+	    // Further filter using the predicates on columns without an index
+	    Predicate[] filters = plan.getFilters().toArray(new Predicate[0]);
+	    ArrayList<String[]> finalResults = new ArrayList<>();
+	    for (String[] row : temp) {
+	        if (Predicate.testAll(filters, row)) finalResults.add(row);
+	    }
+	    plan.setActualRows(finalResults.size());
+	    return finalResults;
+	}
 
-		        FileManager.storeTable(tableName, table);
-		        return finalResults;
-		    }
-		}
+	// Every record of the table in the order of the column, read through its
+	// B+tree index, which must exist. Records whose value is null come last,
+	// in table order.
+	public static ArrayList<String[]> selectOrdered(String tableName, String colName) {
+	    Table t = FileManager.loadTable(tableName);
+	    int colIndex = Arrays.asList(t.getColumnNames()).indexOf(colName);
+	    ArrayList<int[]> refs = FileManager.lookupBTreeIndex(tableName, colName, columnType(t, colIndex), null, false, null, false);
+	    if (refs == null) {
+	        throw new IllegalArgumentException("No B+tree index on column " + colName);
+	    }
+	    long snapshot = t.getLastCommitTs();
+	    ArrayList<String[]> res = new ArrayList<>(refs.size());
+	    int pageNumber = -1;
+	    ArrayList<String[]> slots = null;
+	    for (int[] ref : refs) {
+	        if (ref[0] != pageNumber) {
+	            pageNumber = ref[0];
+	            Page page = FileManager.loadTablePage(tableName, pageNumber);
+	            slots = page == null ? null : page.selectSlots(snapshot);
+	        }
+	        // slots of records committed after the snapshot are null
+	        if (slots == null || ref[1] >= slots.size() || slots.get(ref[1]) == null) continue;
+	        res.add(slots.get(ref[1]));
+	    }
+	    for (String[] row : new TableCursor(tableName, t.getPageCount(), null, null, snapshot).toList()) {
+	        if (row[colIndex] == null) res.add(row);
+	    }
+	    return res;
+	}
 	
 	public static void main(String []args) throws IOException 
 	 { 
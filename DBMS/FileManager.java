@@ -1,11 +1,37 @@
 package DBMS;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class FileManager
 {
@@ -14,6 +40,37 @@ public class FileManager
 	static File directory = new File(path.substring(6,path.length()-17) + File.separator
 			+ "Tables" + File.separator);
 
+	// new tables keep all their pages in one segment file instead of one file per page
+	static boolean segmentStorage = false;
+	// segment tables are read through a memory mapping of the segment file
+	static boolean mappedReads = false;
+	// initial slot size in bytes of a new table segment
+	static int segmentSlotSize = 4096;
+	private static final HashMap<String, TableSegment> segments = new HashMap<String, TableSegment>();
+
+	// number of logged index entries after which an index is merged into its base file
+	static int indexMergeThreshold = 512;
+	// table/column -> {next row id, entries logged since the last merge}; an
+	// entry is changed or replaced under the write lock of its index, see
+	// indexLock
+	private static final ConcurrentHashMap<String, int[]> indexDeltas = new ConcurrentHashMap<String, int[]>();
+	private static final ExecutorService indexMerger = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "index-merger");
+		t.setDaemon(true);
+		return t;
+	});
+	private static volatile int epoch;
+	// serializes appends to and reads of the trace logs
+	private static final Object traceLock = new Object();
+	// zone maps of the tables used since start-up, see tableZones
+	private static final HashMap<String, ZoneMap> zoneMaps = new HashMap<String, ZoneMap>();
+	// statistics of the tables used since start-up, see tableStats
+	private static final HashMap<String, TableStats> tableStats = new HashMap<String, TableStats>();
+	// kinds of the entries of a dictionary log
+	static final byte DICTIONARY_START = 0;
+	static final byte DICTIONARY_ADD = 1;
+	static final byte DICTIONARY_DROP = 2;
+
 	public static boolean storeTable(String tableName, Table t)
 	{
 		try {
@@ -28,11 +85,21 @@ public class FileManager
 
 		try
 		{
-			FileOutputStream fout = new FileOutputStream(fl);
-			ObjectOutputStream oos = new ObjectOutputStream(fout);
+			TableStats stats = cachedTableStats(tableName);
+			if(stats!=null && stats.due(t.getRecordsCount()))
+			{
+				writeTableStats(tableName, stats);
+			}
+			// write a temporary file and move it over the catalog, so a
+			// concurrent loadTable sees either the old or the new catalog
+			File tmp = new File(tableDirectory, tableName+"."+Thread.currentThread().getId()+".tmp");
+			FileOutputStream fout = new FileOutputStream(tmp);
+			ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(fout));
 			oos.writeObject(t);
 			oos.close();
-			return true;
+			moveOver(tmp, fl);
+			appendTableZones(tableName, t.zones(), t.drainZones());
+			return appendTableTrace(tableName, t.drainTrace());
 		}
 		catch (Exception e)
 		{
@@ -42,6 +109,424 @@ public class FileManager
 		return false;
 	}
 
+	private static void moveOver(File tmp, File fl) throws IOException
+	{
+		try
+		{
+			Files.move(tmp.toPath(), fl.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (AtomicMoveNotSupportedException e)
+		{
+			Files.move(tmp.toPath(), fl.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	// Zone map of the table, read from its zone log on first use and then kept
+	// in memory for every catalog of the table. Logged zones of pages from the
+	// catalog's tail page on are left out: if the catalog is that old, those
+	// pages may still change.
+	static synchronized ZoneMap tableZones(String tableName, int pageCount)
+	{
+		ZoneMap res = zoneMaps.get(tableName);
+		if(res == null)
+		{
+			res = readTableZones(tableName, pageCount - 1);
+			zoneMaps.put(tableName, res);
+		}
+		return res;
+	}
+
+	// Appends the zones of the given full pages to the zone log of the table
+	// as [page number, column count, minimums, maximums]; a later entry for a
+	// page replaces an earlier one.
+	static boolean appendTableZones(String tableName, ZoneMap zones, Collection<Integer> pageNumbers)
+	{
+		if(pageNumbers.isEmpty())
+		{
+			return true;
+		}
+		File fl = new File(new File(directory, tableName), tableName+".zones");
+		synchronized(zones)
+		{
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fl, true))))
+			{
+				for(int pageNumber : pageNumbers)
+				{
+					String[][] zone = zones.getZone(pageNumber);
+					if(zone == null)
+					{
+						continue;
+					}
+					out.writeInt(pageNumber);
+					out.writeInt(zone[0].length);
+					for(String[] bounds : zone)
+					{
+						for(String v : bounds)
+						{
+							writeValue(out, v);
+						}
+					}
+				}
+				return true;
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+		return false;
+	}
+
+	private static ZoneMap readTableZones(String tableName, int tailPage)
+	{
+		ZoneMap res = new ZoneMap();
+		File fl = new File(new File(directory, tableName), tableName+".zones");
+		if(!fl.exists())
+		{
+			return res;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fl))))
+		{
+			while(true)
+			{
+				int pageNumber = in.readInt();
+				String[] min = new String[in.readInt()];
+				String[] max = new String[min.length];
+				for(int j = 0; j < min.length; j++)
+				{
+					min[j] = readValue(in);
+				}
+				for(int j = 0; j < max.length; j++)
+				{
+					max[j] = readValue(in);
+				}
+				if(pageNumber < tailPage)
+				{
+					res.set(pageNumber, min, max);
+				}
+			}
+		}
+		catch (EOFException e)
+		{
+			// end of the log, or a torn last entry from an interrupted append
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		return res;
+	}
+
+	// Writes a value as [UTF-8 length, bytes], with length -1 for null.
+	private static void writeValue(DataOutputStream out, String value) throws IOException
+	{
+		if(value == null)
+		{
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readValue(DataInputStream in) throws IOException
+	{
+		int len = in.readInt();
+		if(len < 0)
+		{
+			return null;
+		}
+		byte[] bytes = new byte[len];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	// Forgets the zone maps and statistics read or counted so far, as after
+	// a restart without a last checkpoint.
+	static synchronized void dropCachedStats()
+	{
+		zoneMaps.clear();
+		tableStats.clear();
+	}
+
+	// Deletes the trace, zone and dictionary logs and the stats file of a
+	// table about to be created over an older one, and forgets what is
+	// cached for it, as the catalog that held all of them once is replaced.
+	static synchronized void dropTableHistory(String tableName)
+	{
+		zoneMaps.remove(tableName);
+		tableStats.remove(tableName);
+		File tableDirectory = new File(directory, tableName);
+		synchronized(traceLock)
+		{
+			new File(tableDirectory, tableName+".trace").delete();
+		}
+		new File(tableDirectory, tableName+".zones").delete();
+		new File(tableDirectory, tableName+".dict").delete();
+		new File(tableDirectory, tableName+".stats").delete();
+	}
+
+	// Statistics and dictionaries of the table, read from its stats file and
+	// dictionary log on first use and then kept in memory for every catalog
+	// of the table.
+	static synchronized TableStats tableStats(String tableName, int columnCount)
+	{
+		TableStats res = tableStats.get(tableName);
+		if(res == null)
+		{
+			res = readTableStats(tableName);
+			res.dictionaries = readTableDictionaries(tableName, columnCount);
+			tableStats.put(tableName, res);
+		}
+		return res;
+	}
+
+	private static synchronized TableStats cachedTableStats(String tableName)
+	{
+		return tableStats.get(tableName);
+	}
+
+	// Writes the statistics counted since the stats file of the table was
+	// last written, for a checkpoint of its write-ahead log.
+	static void storeTableStats(String tableName)
+	{
+		TableStats stats = cachedTableStats(tableName);
+		if(stats != null && stats.changed())
+		{
+			try
+			{
+				writeTableStats(tableName, stats);
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+	}
+
+	// Writes the index and column statistics to the stats file of the table,
+	// through a temporary file moved over it.
+	private static void writeTableStats(String tableName, TableStats stats) throws IOException
+	{
+		File tableDirectory = new File(directory, tableName);
+		File tmp = new File(tableDirectory, tableName+"."+Thread.currentThread().getId()+".stats.tmp");
+		synchronized(stats)
+		{
+			try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))
+			{
+				oos.writeObject(stats.indexStats);
+				oos.writeObject(stats.columnStats);
+			}
+			stats.stored();
+		}
+		moveOver(tmp, new File(tableDirectory, tableName+".stats"));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static TableStats readTableStats(String tableName)
+	{
+		File fl = new File(new File(directory, tableName), tableName+".stats");
+		if(fl.exists())
+		{
+			try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(fl))))
+			{
+				return new TableStats((HashMap<String, IndexStats>)ois.readObject(), (ColumnStats[])ois.readObject());
+			}
+			catch (Exception e)
+			{
+				// unreadable, start over as a table without statistics
+			}
+		}
+		return new TableStats(new HashMap<String, IndexStats>(), null);
+	}
+
+	// Appends an entry to the dictionary log of the table: the dictionary of
+	// the column was started empty, gained the value, or was dropped. Entries
+	// are [column, kind] with the value of an addition after them as
+	// [UTF-8 length, bytes]. Dictionaries only change with the first records
+	// of their values, so the log stays small.
+	static void appendTableDictionary(String tableName, int column, byte kind, String value)
+	{
+		File fl = new File(new File(directory, tableName), tableName+".dict");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fl, true))))
+		{
+			out.writeInt(column);
+			out.writeByte(kind);
+			if(kind == DICTIONARY_ADD)
+			{
+				writeValue(out, value);
+			}
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	// Replays the dictionary log of the table; null when no dictionary was
+	// ever started.
+	private static ColumnDictionary[] readTableDictionaries(String tableName, int columnCount)
+	{
+		File fl = new File(new File(directory, tableName), tableName+".dict");
+		if(!fl.exists())
+		{
+			return null;
+		}
+		ColumnDictionary[] res = null;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fl))))
+		{
+			while(true)
+			{
+				int column = in.readInt();
+				byte kind = in.readByte();
+				String value = kind == DICTIONARY_ADD ? readValue(in) : null;
+				if(res == null)
+				{
+					res = new ColumnDictionary[columnCount];
+				}
+				if(kind == DICTIONARY_START)
+				{
+					res[column] = new ColumnDictionary(ColumnDictionary.TABLE_LIMIT);
+				}
+				else if(kind == DICTIONARY_DROP)
+				{
+					res[column] = null;
+				}
+				else if(res[column] != null)
+				{
+					res[column].add(value);
+				}
+			}
+		}
+		catch (EOFException e)
+		{
+			// end of the log, or a torn last entry from an interrupted append
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		return res;
+	}
+
+	// Stores only the pending trace lines of the table, for operations that
+	// did not change the catalog, so they never overwrite a concurrent insert.
+	public static boolean storeTableTrace(String tableName, Table t)
+	{
+		return appendTableTrace(tableName, t.drainTrace());
+	}
+
+	// Appends trace lines to the table's trace log. Every entry is framed as
+	// [length, UTF-8 bytes, length] so the log can be read from either end.
+	static boolean appendTableTrace(String tableName, ArrayList<String> lines)
+	{
+		if(lines.isEmpty())
+		{
+			return true;
+		}
+		synchronized(traceLock)
+		{
+			return writeTableTrace(tableName, lines);
+		}
+	}
+
+	private static boolean writeTableTrace(String tableName, ArrayList<String> lines)
+	{
+		File fl = new File(new File(directory, tableName), tableName+".trace");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fl, true))))
+		{
+			for(String line : lines)
+			{
+				byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+				out.writeInt(bytes.length);
+			}
+			return true;
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		return false;
+	}
+
+	public static ArrayList<String> loadTableTrace(String tableName)
+	{
+		synchronized(traceLock)
+		{
+			return readTableTrace(tableName);
+		}
+	}
+
+	private static ArrayList<String> readTableTrace(String tableName)
+	{
+		ArrayList<String> res = new ArrayList<String>();
+		File fl = new File(new File(directory, tableName), tableName+".trace");
+		if(!fl.exists())
+		{
+			return res;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fl))))
+		{
+			while(true)
+			{
+				int len = in.readInt();
+				byte[] bytes = new byte[len];
+				in.readFully(bytes);
+				in.readInt();
+				res.add(new String(bytes, StandardCharsets.UTF_8));
+			}
+		}
+		catch (EOFException e)
+		{
+			// end of the log
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		return res;
+	}
+
+	// Reads only the last entry of the trace log, null when the log is empty.
+	public static String loadLastTraceLine(String tableName)
+	{
+		synchronized(traceLock)
+		{
+			return readLastTraceLine(tableName);
+		}
+	}
+
+	private static String readLastTraceLine(String tableName)
+	{
+		File fl = new File(new File(directory, tableName), tableName+".trace");
+		if(!fl.exists())
+		{
+			return null;
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(fl, "r"))
+		{
+			long end = raf.length();
+			if(end < 8)
+			{
+				return null;
+			}
+			raf.seek(end - 4);
+			int len = raf.readInt();
+			byte[] bytes = new byte[len];
+			raf.seek(end - 4 - len);
+			raf.readFully(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		return null;
+	}
+
 	public static Table loadTable(String tableName)
 	{
 		try {
@@ -50,6 +535,12 @@ public class FileManager
 			// TODO Auto-generated catch block
 			e1.printStackTrace();
 		}
+		WriteAheadLog.ensureRecovered(tableName);
+		return readTable(tableName);
+	}
+
+	private static Table readTable(String tableName)
+	{
 		File tableDirectory = new File(directory, tableName);
 		File fl = new File(tableDirectory, tableName+".db");
 
@@ -57,7 +548,7 @@ public class FileManager
 		try
 		{
 			FileInputStream fin = new FileInputStream(fl);
-			ObjectInputStream ois = new ObjectInputStream(fin);
+			ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(fin));
 			res = (Table)ois.readObject();
 			ois.close();
 		}
@@ -69,8 +560,234 @@ public class FileManager
 		return res;
 	}
 
+	// Stores the page, logging its image first when the write-ahead log is
+	// enabled. In no-force mode the page only becomes a dirty frame of the
+	// buffer pool and is written by a later checkpoint or eviction. With
+	// syncCommits it stays a dirty frame until its entry is forced, so the
+	// page never reaches disk before the log entry it reflects.
 	public static boolean storeTablePage(String tableName, int pageNumber, Page p)
 	{
+		long lsn = logTablePage(tableName, pageNumber, p);
+		if(lsn<0)
+		{
+			return false;
+		}
+		if(lsn>0)
+		{
+			WriteAheadLog.forTable(tableName).awaitDurable(lsn);
+			if(!WriteAheadLog.noForce)
+			{
+				BufferPool.flushPage(tableName, pageNumber, lsn);
+			}
+		}
+		return true;
+	}
+
+	// Stores the page like storeTablePage without waiting for its log entry:
+	// returns the lsn a syncCommits store still has to wait for, 0 when there
+	// is none and -1 when the store failed. Inserts wait through commitTable
+	// once they released their locks, so concurrent inserts share forces.
+	static long logTablePage(String tableName, int pageNumber, Page p)
+	{
+		WriteAheadLog log = WriteAheadLog.enabled ? WriteAheadLog.forTable(tableName) : null;
+		if(log==null)
+		{
+			return putTablePage(tableName, pageNumber, p, PageCodec.encode(p)) ? 0 : -1;
+		}
+		long lsn;
+		synchronized(log)
+		{
+			byte[] image = log.append(pageNumber, p);
+			if(image==null)
+			{
+				return -1;
+			}
+			lsn = p.getLsn();
+			if((WriteAheadLog.noForce || WriteAheadLog.syncCommits) && BufferPool.capacityPages > 0)
+			{
+				BufferPool.put(tableName, pageNumber, p, true);
+			}
+			else
+			{
+				if(WriteAheadLog.syncCommits)
+				{
+					log.forceUpTo(lsn);
+				}
+				if(!putTablePage(tableName, pageNumber, p, image))
+				{
+					return -1;
+				}
+			}
+			log.checkpointIfFull();
+		}
+		return WriteAheadLog.syncCommits ? lsn : 0;
+	}
+
+	// Waits until the log entries of the pages an insert stored are forced,
+	// then writes the pages still dirty in the buffer pool. Called without
+	// the table's locks; the pages are written under them, so no insert
+	// changes a page while it is written.
+	static void commitTable(String tableName, TreeMap<Integer, Long> pages)
+	{
+		long lsn = 0;
+		for(long l : pages.values())
+		{
+			lsn = Math.max(lsn, l);
+		}
+		if(lsn==0)
+		{
+			return;
+		}
+		WriteAheadLog.forTable(tableName).awaitDurable(lsn);
+		if(WriteAheadLog.noForce)
+		{
+			return;
+		}
+		Lock lock = LockManager.readLock(tableName);
+		Lock append = LockManager.appendLock(tableName);
+		lock.lock();
+		append.lock();
+		try
+		{
+			for(int pageNumber : pages.keySet())
+			{
+				BufferPool.flushPage(tableName, pageNumber, lsn);
+			}
+		}
+		finally
+		{
+			append.unlock();
+			lock.unlock();
+		}
+	}
+
+	private static boolean putTablePage(String tableName, int pageNumber, Page p, byte[] image)
+	{
+		Prefetcher.pageWritten();
+		if(!writePageBytes(tableName, pageNumber, image))
+		{
+			BufferPool.invalidate(tableName, pageNumber);
+			return false;
+		}
+		BufferPool.put(tableName, pageNumber, p, false);
+		return true;
+	}
+
+	// Forces the given pages of the table to disk, for a checkpoint about to
+	// drop their log entries.
+	static void forceTablePages(String tableName, Set<Integer> pageNumbers) throws IOException
+	{
+		TableSegment seg = segmentFor(tableName, false);
+		if(seg!=null)
+		{
+			seg.force();
+			return;
+		}
+		for(int pageNumber : pageNumbers)
+		{
+			File fl = pageFile(tableName, pageNumber);
+			if(fl.exists())
+			{
+				try (FileChannel channel = FileChannel.open(fl.toPath(), StandardOpenOption.WRITE))
+				{
+					channel.force(true);
+				}
+			}
+		}
+		// new page files also need their directory entry on disk
+		try (FileChannel dir = FileChannel.open(new File(directory, tableName).toPath(), StandardOpenOption.READ))
+		{
+			dir.force(true);
+		}
+		catch (IOException e)
+		{
+			// directories cannot be opened for forcing on every platform
+		}
+	}
+
+	// Writes a logged page image during log replay, dropping any cached copy.
+	static boolean writePageImage(String tableName, int pageNumber, byte[] image)
+	{
+		Prefetcher.pageWritten();
+		BufferPool.invalidate(tableName, pageNumber);
+		return writePageBytes(tableName, pageNumber, image);
+	}
+
+	// Log sequence number of the page on disk, null when the page is missing.
+	static Long readPageLsn(String tableName, int pageNumber)
+	{
+		return readPageBytes(tableName, pageNumber, data -> PageCodec.lsn(data));
+	}
+
+	// Brings the counts, the commit clock and the zone maps of the catalog up
+	// to date after pages were restored from the write-ahead log, since
+	// catalog writes are not logged.
+	static void repairTableCounts(String tableName, int pageCount)
+	{
+		Table t = readTable(tableName);
+		if(t==null)
+		{
+			return;
+		}
+		t.updatePageCount(pageCount);
+		int records = 0;
+		long lastCommitTs = t.getLastCommitTs();
+		for(int i=0;i<t.getPageCount();i++)
+		{
+			Page p = readTablePage(tableName, i);
+			ArrayList<String[]> pageRecords = p==null ? new ArrayList<String[]>() : p.select();
+			for(int j=0;j<pageRecords.size();j++)
+			{
+				lastCommitTs = Math.max(lastCommitTs, p.getCommitTs(j));
+				t.encode(pageRecords.get(j));
+			}
+			t.updateZoneMap(i, pageRecords);
+			records += pageRecords.size();
+		}
+		t.setRecordsCount(records);
+		t.setLastCommitTs(lastCommitTs);
+		storeTable(tableName, t);
+	}
+
+	// Latest logged image of every page still covered by the write-ahead log.
+	public static TreeMap<Integer, Page> loggedPages(String tableName)
+	{
+		WriteAheadLog log = WriteAheadLog.enabled ? WriteAheadLog.forTable(tableName) : null;
+		return log==null ? new TreeMap<Integer, Page>() : log.pageImages();
+	}
+
+	// Writes the page directly, bypassing the buffer pool.
+	static boolean writeTablePage(String tableName, int pageNumber, Page p)
+	{
+		// a page may only reach disk after the log entry it reflects
+		if(WriteAheadLog.syncCommits && p.getLsn() > 0)
+		{
+			WriteAheadLog log = WriteAheadLog.forTable(tableName);
+			if(log!=null)
+			{
+				log.forceUpTo(p.getLsn());
+			}
+		}
+		Prefetcher.pageWritten();
+		return writePageBytes(tableName, pageNumber, PageCodec.encode(p));
+	}
+
+	private static boolean writePageBytes(String tableName, int pageNumber, byte[] data)
+	{
+		TableSegment seg = segmentFor(tableName, true);
+		if(seg!=null)
+		{
+			try
+			{
+				seg.write(pageNumber, data);
+				return true;
+			}
+			catch (Exception e)
+			{
+				e.printStackTrace();
+			}
+			return false;
+		}
 		try {
 			TimeUnit.MILLISECONDS.sleep(1);
 		} catch (InterruptedException e1) {
@@ -84,9 +801,8 @@ public class FileManager
 		try
 		{
 			FileOutputStream fout = new FileOutputStream(fl);
-			ObjectOutputStream oos = new ObjectOutputStream(fout);
-			oos.writeObject(p);
-			oos.close();
+			fout.write(data);
+			fout.close();
 			return true;
 		}
 		catch (Exception e)
@@ -99,22 +815,65 @@ public class FileManager
 
 	public static Page loadTablePage(String tableName, int pageNumber)
 	{
+		WriteAheadLog.ensureRecovered(tableName);
+		Page res = BufferPool.lookup(tableName, pageNumber);
+		if(res==null)
+		{
+			res = readTablePage(tableName, pageNumber);
+			if(res!=null)
+			{
+				BufferPool.put(tableName, pageNumber, res, false);
+			}
+		}
+		Prefetcher.pageLoaded(tableName, pageNumber);
+		return res;
+	}
+
+	// Reads the page directly, bypassing the buffer pool. A page still in the
+	// old serialized format is rewritten in the binary format on first read.
+	static Page readTablePage(String tableName, int pageNumber)
+	{
+		Object[] res = readPageBytes(tableName, pageNumber,
+				data -> new Object[]{PageCodec.isLegacy(data), PageCodec.decode(data)});
+		if(res==null)
+		{
+			return null;
+		}
+		Page p = (Page)res[1];
+		if((Boolean)res[0])
+		{
+			writeTablePage(tableName, pageNumber, p);
+		}
+		return p;
+	}
+
+	// Hands the stored bytes of a page to the decoder, null when the page is missing.
+	private static <T> T readPageBytes(String tableName, int pageNumber, TableSegment.Decoder<T> decoder)
+	{
+		TableSegment seg = segmentFor(tableName, false);
+		if(seg!=null)
+		{
+			try
+			{
+				return seg.read(pageNumber, decoder);
+			}
+			catch (Exception e)
+			{
+				return null;
+			}
+		}
 		try {
 			TimeUnit.MILLISECONDS.sleep(1);
 		} catch (InterruptedException e1) {
 			// TODO Auto-generated catch block
 			e1.printStackTrace();
 		}
-		File tableDirectory = new File(directory, tableName);
-		File fl = new File(tableDirectory, ""+pageNumber+".db");
+		File fl = pageFile(tableName, pageNumber);
 
-		Page res = null;
+		T res = null;
 		try
 		{
-			FileInputStream fin = new FileInputStream(fl);
-			ObjectInputStream ois = new ObjectInputStream(fin);
-			res = (Page)ois.readObject();
-			ois.close();
+			res = decoder.decode(ByteBuffer.wrap(Files.readAllBytes(fl.toPath())));
 		}
 		catch (Exception e)
 		{
@@ -124,6 +883,155 @@ public class FileManager
 		return res;
 	}
 
+	// Rewrites every page of the table still stored in the old serialized
+	// format, returning how many pages were migrated.
+	public static int migrateTable(String tableName)
+	{
+		ArrayList<Integer> pages = new ArrayList<Integer>();
+		TableSegment seg = segmentFor(tableName, false);
+		if(seg!=null)
+		{
+			for(int i=0;i<seg.getPageCount();i++)
+			{
+				pages.add(i);
+			}
+		}
+		else
+		{
+			File[] files = new File(directory, tableName).listFiles((dir, name) -> name.matches("\\d+\\.db"));
+			if(files!=null)
+			{
+				for(File f : files)
+				{
+					pages.add(Integer.parseInt(f.getName().replace(".db", "")));
+				}
+			}
+		}
+		int migrated = 0;
+		for(int pageNumber : pages)
+		{
+			Object[] res = readPageBytes(tableName, pageNumber,
+					data -> PageCodec.isLegacy(data) ? new Object[]{PageCodec.decode(data)} : null);
+			if(res!=null && writeTablePage(tableName, pageNumber, (Page)res[0]))
+			{
+				BufferPool.invalidate(tableName, pageNumber);
+				migrated++;
+			}
+		}
+		return migrated;
+	}
+
+	static File pageFile(String tableName, int pageNumber)
+	{
+		return new File(new File(directory, tableName), ""+pageNumber+".db");
+	}
+
+	// Whether the given page has been written, either as its own file or as a
+	// slot in the table segment, or is waiting in the buffer pool to be written.
+	public static boolean pageExists(String tableName, int pageNumber)
+	{
+		if(BufferPool.isDirty(tableName, pageNumber))
+		{
+			return true;
+		}
+		TableSegment seg = segmentFor(tableName, false);
+		if(seg!=null)
+		{
+			try
+			{
+				return seg.exists(pageNumber);
+			}
+			catch (IOException e)
+			{
+				return false;
+			}
+		}
+		if(!pageFile(tableName, pageNumber).exists())
+		{
+			// a page file deleted behind our back must not be served from
+			// the pool, which only checks the file when it loads a page
+			BufferPool.invalidate(tableName, pageNumber);
+			return false;
+		}
+		return true;
+	}
+
+	// Returns the open segment of the table, or null when the table keeps one
+	// file per page. New tables get a segment while segmentStorage is set.
+	static synchronized TableSegment segmentFor(String tableName, boolean forWrite)
+	{
+		TableSegment seg = segments.get(tableName);
+		if(seg!=null)
+		{
+			return seg;
+		}
+		File tableDirectory = new File(directory, tableName);
+		File fl = new File(tableDirectory, tableName+".seg");
+		if(!fl.exists() && !(forWrite && segmentStorage && !pageFile(tableName, 0).exists()))
+		{
+			return null;
+		}
+		tableDirectory.mkdirs();
+		try
+		{
+			seg = new TableSegment(fl, segmentSlotSize);
+			segments.put(tableName, seg);
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		return seg;
+	}
+
+	static synchronized void closeSegments()
+	{
+		for(TableSegment seg : segments.values())
+		{
+			seg.close();
+		}
+		segments.clear();
+	}
+
+	// Evaluates the condition vector over one page. Mapped segment reads go
+	// straight to the mapping and skip the buffer pool, the mapping already
+	// being backed by the OS page cache, and the predicate is checked on the
+	// encoded bytes so only matching records are decoded.
+	public static ArrayList<String []> selectTablePage(String tableName, int pageNumber, String[] cond)
+	{
+		return selectTablePage(tableName, pageNumber, cond, Long.MAX_VALUE);
+	}
+
+	// Same as above, skipping the records committed after the snapshot.
+	public static ArrayList<String []> selectTablePage(String tableName, int pageNumber, String[] cond, long snapshot)
+	{
+		if(mappedReads && segmentFor(tableName, false)!=null && !BufferPool.isDirty(tableName, pageNumber))
+		{
+			return readPageBytes(tableName, pageNumber, data -> PageCodec.select(data, cond, snapshot));
+		}
+		Page p = loadTablePage(tableName, pageNumber);
+		return p==null ? null : p.select(cond, snapshot);
+	}
+
+	// Same as above, returning only the given columns of every record. A page
+	// outside the buffer pool is selected on its stored bytes without being
+	// cached, so a columnar page only decodes the condition columns and the
+	// columns returned.
+	public static ArrayList<String []> selectTablePage(String tableName, int pageNumber, String[] cond, long snapshot, int[] columns)
+	{
+		WriteAheadLog.ensureRecovered(tableName);
+		if(!BufferPool.contains(tableName, pageNumber))
+		{
+			ArrayList<String []> res = readPageBytes(tableName, pageNumber, data -> PageCodec.select(data, cond, snapshot, columns));
+			if(res!=null)
+			{
+				return res;
+			}
+		}
+		Page p = loadTablePage(tableName, pageNumber);
+		return p==null ? null : p.select(cond, snapshot, columns);
+	}
+
 	private static void deleteDir(File file)
 	{
 		File[] contents = file.listFiles();
@@ -138,6 +1046,14 @@ public class FileManager
 
 	public static void reset()
 	{
+		epoch++;
+		awaitIndexMerges();
+		indexDeltas.clear();
+		Prefetcher.reset();
+		BufferPool.clear();
+		WriteAheadLog.closeAll();
+		closeSegments();
+		dropCachedStats();
 		deleteDir(directory);
 		directory.mkdir();
 	}
@@ -145,7 +1061,7 @@ public class FileManager
 	private static String traceDir(File file)
 	{
 		String res = file.getName();
-		if(!file.getName().endsWith(".db"))
+		if(file.isDirectory())
 		{
 			res+="{ ";
 		}
@@ -156,7 +1072,7 @@ public class FileManager
 				res+=traceDir(f)+" ";
 			}
 		}
-		if(!file.getName().endsWith(".db"))
+		if(file.isDirectory())
 		{
 			res+="}";
 		}
@@ -177,19 +1093,40 @@ public class FileManager
 	    tableDirectory.mkdirs();  
 	    File fl = new File(tableDirectory, columnName + ".db"); 
 
+	    ReentrantReadWriteLock lock = indexLock(tableName, columnName);
+	    lock.writeLock().lock();
 	    try {
-	        FileOutputStream fout = new FileOutputStream(fl);
-	        ObjectOutputStream oos = new ObjectOutputStream(fout);
-	        oos.writeObject(b); 
-	        oos.close();
+	        writeIndexImage(b, fl);
+	        // the base image now covers every logged entry
+	        new File(tableDirectory, columnName + ".delta").delete();
+	        new File(tableDirectory, columnName + ".delta.merging").delete();
+	        indexDeltas.put(indexKey(tableName, columnName), new int[]{b.getRecordCount(), 0});
 	        return true;
 	    } catch (Exception e) {
 	        e.printStackTrace();
+	    } finally {
+	        lock.writeLock().unlock();
 	    }
 
 	    return false;
 	}
 
+	// Writes the image to a temporary file moved over the base file, so
+	// readers see either the old or the new image.
+	private static void writeIndexImage(BitmapIndex b, File fl) throws IOException {
+	    File tmp = new File(fl.getParentFile(), fl.getName() + "." + Thread.currentThread().getId() + ".tmp");
+	    ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+	    oos.writeObject(b);
+	    oos.close();
+	    moveOver(tmp, fl);
+	}
+
+	// Lock of the bitmap index of the column: loads share it, while appends,
+	// stores and the swap of a merged image take it alone.
+	private static ReentrantReadWriteLock indexLock(String tableName, String columnName) {
+	    return LockManager.indexFileLock(new File(new File(directory, tableName), columnName + ".db"));
+	}
+
 	public static BitmapIndex loadTableIndex(String tableName, String columnName) {
 	    try {
 	        TimeUnit.MILLISECONDS.sleep(1);
@@ -197,21 +1134,321 @@ public class FileManager
 	       
 	    }
 
+	    ReentrantReadWriteLock lock = indexLock(tableName, columnName);
+	    lock.readLock().lock();
+	    try {
+	        return readTableIndex(tableName, columnName, new int[1]);
+	    } finally {
+	        lock.readLock().unlock();
+	    }
+	}
+
+	// Loads the base image and replays the delta logs on top of it; pending[0]
+	// receives the number of replayed entries. Called with the index lock held.
+	private static BitmapIndex readTableIndex(String tableName, String columnName, int[] pending) {
 	    File tableDirectory = new File(directory, tableName);
-	    File fl = new File(tableDirectory, columnName + ".db");
+	    BitmapIndex res = readIndexImage(new File(tableDirectory, columnName + ".db"));
+	    if (res == null) {
+	        return null;
+	    }
+	    // entries of a merge in progress come before the ones logged since
+	    replayIndexDelta(res, new File(tableDirectory, columnName + ".delta.merging"), pending);
+	    replayIndexDelta(res, new File(tableDirectory, columnName + ".delta"), pending);
+	    return res;
+	}
 
-	    BitmapIndex res = null;
+	private static BitmapIndex readIndexImage(File fl) {
 	    try {
 	        FileInputStream fin = new FileInputStream(fl);
-	        ObjectInputStream ois = new ObjectInputStream(fin);
-	        res = (BitmapIndex) ois.readObject(); 
+	        ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(fin));
+	        BitmapIndex res = (BitmapIndex) ois.readObject(); 
 	        ois.close();
+	        return res;
 	    } catch (Exception e) {
 	        e.printStackTrace(); 
+	        return null;
 	    }
+	}
 
-	    return res;
+	// Appends the logged entries to the index. Entries the index already
+	// covers are skipped by appendBitAt, so replaying a log twice is harmless.
+	private static void replayIndexDelta(BitmapIndex res, File delta, int[] pending) {
+	    if (delta.exists()) {
+	        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(delta)))) {
+	            while (true) {
+	                int rowId = in.readInt();
+	                int len = in.readInt();
+	                String value = null;
+	                if (len >= 0) {
+	                    byte[] bytes = new byte[len];
+	                    in.readFully(bytes);
+	                    value = new String(bytes, StandardCharsets.UTF_8);
+	                }
+	                res.appendBitAt(value, rowId);
+	                pending[0]++;
+	            }
+	        } catch (EOFException e) {
+	            // end of the log, or a torn last entry from an interrupted append
+	        } catch (IOException e) {
+	            e.printStackTrace();
+	        }
+	    }
 	}
 
-}
+	public static boolean indexExists(String tableName, String columnName) {
+	    return new File(new File(directory, tableName), columnName + ".db").exists();
+	}
+
+	// B+tree indexes live next to the bitmap indexes as <column>.bt.
+	static File btreeFile(String tableName, String columnName) {
+	    return new File(new File(directory, tableName), columnName + ".bt");
+	}
+
+	public static boolean btreeIndexExists(String tableName, String columnName) {
+	    return btreeFile(tableName, columnName).exists();
+	}
 
+	// Replaces the B+tree index of the column with the {key, page, slot}
+	// entries, which need not be sorted.
+	public static boolean storeBTreeIndex(String tableName, String columnName, ColumnType type, List<Object[]> entries) {
+	    File file = btreeFile(tableName, columnName);
+	    file.getParentFile().mkdirs();
+	    ReentrantReadWriteLock lock = LockManager.indexFileLock(file);
+	    lock.writeLock().lock();
+	    try (BTreeIndex index = new BTreeIndex(file, type)) {
+	        index.sort(entries);
+	        index.build(entries);
+	        return true;
+	    } catch (IOException e) {
+	        e.printStackTrace();
+	        return false;
+	    } finally {
+	        lock.writeLock().unlock();
+	    }
+	}
+
+	// Adds the {key, page, slot} entries of new records to the B+tree index.
+	public static boolean insertBTreeEntries(String tableName, String columnName, ColumnType type, List<Object[]> entries) {
+	    File file = btreeFile(tableName, columnName);
+	    ReentrantReadWriteLock lock = LockManager.indexFileLock(file);
+	    lock.writeLock().lock();
+	    try (BTreeIndex index = new BTreeIndex(file, type)) {
+	        for (Object[] e : entries) {
+	            index.insert((String) e[0], (Integer) e[1], (Integer) e[2]);
+	        }
+	        return true;
+	    } catch (IOException e) {
+	        e.printStackTrace();
+	        return false;
+	    } finally {
+	        lock.writeLock().unlock();
+	    }
+	}
+
+	// {page, slot} of the records whose value lies in the range, in value
+	// order; a null bound leaves that side open. Null when there is no index.
+	public static ArrayList<int[]> lookupBTreeIndex(String tableName, String columnName, ColumnType type,
+	        String low, boolean lowInclusive, String high, boolean highInclusive) {
+	    File file = btreeFile(tableName, columnName);
+	    if (!file.exists()) {
+	        return null;
+	    }
+	    ReentrantReadWriteLock lock = LockManager.indexFileLock(file);
+	    lock.readLock().lock();
+	    try (BTreeIndex index = new BTreeIndex(file, type)) {
+	        return index.range(low, lowInclusive, high, highInclusive);
+	    } catch (IOException e) {
+	        e.printStackTrace();
+	        return null;
+	    } finally {
+	        lock.readLock().unlock();
+	    }
+	}
+
+	// Hash indexes live next to the bitmap indexes as <column>.hx.
+	static File hashFile(String tableName, String columnName) {
+	    return new File(new File(directory, tableName), columnName + ".hx");
+	}
+
+	public static boolean hashIndexExists(String tableName, String columnName) {
+	    return hashFile(tableName, columnName).exists();
+	}
+
+	// Replaces the hash index of the column with the {key, page, slot} entries.
+	public static boolean storeHashIndex(String tableName, String columnName, List<Object[]> entries) {
+	    File file = hashFile(tableName, columnName);
+	    file.getParentFile().mkdirs();
+	    ReentrantReadWriteLock lock = LockManager.indexFileLock(file);
+	    lock.writeLock().lock();
+	    try (HashIndex index = new HashIndex(file)) {
+	        index.build(entries);
+	        return true;
+	    } catch (IOException e) {
+	        e.printStackTrace();
+	        return false;
+	    } finally {
+	        lock.writeLock().unlock();
+	    }
+	}
+
+	// Adds the {key, page, slot} entries of new records to the hash index.
+	public static boolean insertHashEntries(String tableName, String columnName, List<Object[]> entries) {
+	    File file = hashFile(tableName, columnName);
+	    ReentrantReadWriteLock lock = LockManager.indexFileLock(file);
+	    lock.writeLock().lock();
+	    try (HashIndex index = new HashIndex(file)) {
+	        for (Object[] e : entries) {
+	            index.insert((String) e[0], (Integer) e[1], (Integer) e[2]);
+	        }
+	        return true;
+	    } catch (IOException e) {
+	        e.printStackTrace();
+	        return false;
+	    } finally {
+	        lock.writeLock().unlock();
+	    }
+	}
+
+	// {page, slot} of the records holding the value. Null when there is no index.
+	public static ArrayList<int[]> lookupHashIndex(String tableName, String columnName, String value) {
+	    File file = hashFile(tableName, columnName);
+	    if (!file.exists()) {
+	        return null;
+	    }
+	    ReentrantReadWriteLock lock = LockManager.indexFileLock(file);
+	    lock.readLock().lock();
+	    try (HashIndex index = new HashIndex(file)) {
+	        return index.search(value);
+	    } catch (IOException e) {
+	        e.printStackTrace();
+	        return null;
+	    } finally {
+	        lock.readLock().unlock();
+	    }
+	}
+
+	// Records that the next row of the table holds value in the indexed column by
+	// appending (row id, value) to the index delta log instead of rewriting the
+	// index. Once indexMergeThreshold entries pile up, the log is merged into the
+	// base image in the background.
+	public static boolean appendTableIndexDelta(String tableName, String columnName, String value) {
+	    return appendTableIndexDeltas(tableName, columnName, Collections.singletonList(value));
+	}
+
+	// Logs the values of consecutive new rows with a single append.
+	public static boolean appendTableIndexDeltas(String tableName, String columnName, List<String> values) {
+	    String key = indexKey(tableName, columnName);
+	    ReentrantReadWriteLock lock = indexLock(tableName, columnName);
+	    lock.writeLock().lock();
+	    try {
+	        int[] state = indexDeltas.get(key);
+	        if (state == null) {
+	            int[] pending = new int[1];
+	            BitmapIndex b = readTableIndex(tableName, columnName, pending);
+	            if (b == null) {
+	                return false;
+	            }
+	            state = new int[]{b.getRecordCount(), pending[0]};
+	            indexDeltas.put(key, state);
+	        }
+	        File delta = new File(new File(directory, tableName), columnName + ".delta");
+	        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(delta, true)))) {
+	            int rowId = state[0];
+	            for (String value : values) {
+	                out.writeInt(rowId++);
+	                if (value == null) {
+	                    out.writeInt(-1);
+	                } else {
+	                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+	                    out.writeInt(bytes.length);
+	                    out.write(bytes);
+	                }
+	            }
+	        } catch (IOException e) {
+	            e.printStackTrace();
+	            return false;
+	        }
+	        state[0] += values.size();
+	        state[1] += values.size();
+	        if (state[1] >= indexMergeThreshold) {
+	            state[1] = 0;
+	            final int scheduledEpoch = epoch;
+	            indexMerger.execute(() -> mergeTableIndex(tableName, columnName, scheduledEpoch));
+	        }
+	        return true;
+	    } finally {
+	        lock.writeLock().unlock();
+	    }
+	}
+
+	// Folds the delta log into the base image. The log is set aside under the
+	// index lock, so appends go on to a fresh log while the merged image is
+	// read and written without the lock; it is swapped in under the lock
+	// unless a new base image was stored in the meantime, which replaces the
+	// state of the index.
+	private static void mergeTableIndex(String tableName, String columnName, int scheduledEpoch) {
+	    if (scheduledEpoch != epoch) {
+	        return;
+	    }
+	    String key = indexKey(tableName, columnName);
+	    File tableDirectory = new File(directory, tableName);
+	    File fl = new File(tableDirectory, columnName + ".db");
+	    File delta = new File(tableDirectory, columnName + ".delta");
+	    File merging = new File(tableDirectory, columnName + ".delta.merging");
+	    ReentrantReadWriteLock lock = indexLock(tableName, columnName);
+	    int[] state;
+	    lock.writeLock().lock();
+	    try {
+	        state = indexDeltas.get(key);
+	        // a log left by a failed merge is merged first
+	        if (state == null || (!merging.exists() && !delta.renameTo(merging))) {
+	            return;
+	        }
+	    } finally {
+	        lock.writeLock().unlock();
+	    }
+	    File tmp = null;
+	    try {
+	        BitmapIndex b = readIndexImage(fl);
+	        if (b != null) {
+	            replayIndexDelta(b, merging, new int[1]);
+	            tmp = new File(tableDirectory, columnName + ".merged.tmp");
+	            ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+	            oos.writeObject(b);
+	            oos.close();
+	        }
+	    } catch (IOException e) {
+	        e.printStackTrace();
+	        tmp = null;
+	    }
+	    lock.writeLock().lock();
+	    try {
+	        if (tmp != null && scheduledEpoch == epoch && indexDeltas.get(key) == state) {
+	            moveOver(tmp, fl);
+	            merging.delete();
+	        }
+	    } catch (IOException e) {
+	        e.printStackTrace();
+	    } finally {
+	        lock.writeLock().unlock();
+	        if (tmp != null) {
+	            tmp.delete();
+	        }
+	    }
+	}
+
+	// Waits for queued background merges; merges scheduled before the last
+	// reset are dropped.
+	static void awaitIndexMerges() {
+	    try {
+	        indexMerger.submit(() -> { }).get();
+	    } catch (Exception e) {
+	        e.printStackTrace();
+	    }
+	}
+
+	private static String indexKey(String tableName, String columnName) {
+	    return tableName + File.separator + columnName;
+	}
+
+}
@@ -0,0 +1,96 @@
+package DBMS;
+import java.io.File;
+import java.nio.file.Files;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import java.util.*;
+import org.junit.Test;
+public class GroupCommitTests
+{
+
+	@Test(timeout = 1000000)
+	public void testConcurrentInsertsShareForces() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 2;
+		boolean oldSync = WriteAheadLog.syncCommits;
+		long oldInterval = WriteAheadLog.commitIntervalMillis;
+		int oldRecords = WriteAheadLog.commitRecords;
+		WriteAheadLog.syncCommits = true;
+		WriteAheadLog.commitIntervalMillis = 50;
+		WriteAheadLog.commitRecords = 8;
+		try
+		{
+			String[] cols = {"id","major"};
+			DBApp.createTable("gc1", cols);
+			WriteAheadLog.resetStats();
+			Thread[] threads = new Thread[8];
+			for(int t=0;t<8;t++)
+			{
+				final int thread = t;
+				threads[t] = new Thread(() -> {
+					for(int i=0;i<10;i++)
+					{
+						DBApp.insert("gc1", new String[]{thread+"-"+i, "m"+thread});
+					}
+				});
+				threads[t].start();
+			}
+			for(Thread t : threads)
+			{
+				t.join();
+			}
+			BufferPool.clear();
+			assertEquals("Every insert should be stored.", 80, DBApp.select("gc1").size());
+			assertEquals("Every insert should be committed.", 80, WriteAheadLog.getCommitted());
+			assertTrue("Concurrent inserts should share forces: " + WriteAheadLog.getForces(), WriteAheadLog.getForces() < 80);
+		}
+		finally
+		{
+			WriteAheadLog.syncCommits = oldSync;
+			WriteAheadLog.commitIntervalMillis = oldInterval;
+			WriteAheadLog.commitRecords = oldRecords;
+		}
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testCommittedInsertsSurviveLostCatalog() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 2;
+		boolean oldSync = WriteAheadLog.syncCommits;
+		boolean oldNoForce = WriteAheadLog.noForce;
+		WriteAheadLog.syncCommits = true;
+		WriteAheadLog.noForce = true;
+		try
+		{
+			String[] cols = {"id","major"};
+			DBApp.createTable("gc9", cols);
+			for(int i=0;i<3;i++)
+			{
+				DBApp.insert("gc9", new String[]{""+i, "m"+i});
+			}
+			File catalog = new File(FileManager.directory.getAbsolutePath()+ File.separator + "gc9"+ File.separator+"gc9.db");
+			byte[] oldCatalog = Files.readAllBytes(catalog.toPath());
+			for(int i=3;i<7;i++)
+			{
+				DBApp.insert("gc9", new String[]{""+i, "m"+i});
+			}
+			// crash: dirty pages and the last catalog writes are lost
+			BufferPool.clear();
+			WriteAheadLog.closeAll();
+			Files.write(catalog.toPath(), oldCatalog);
+			ArrayList<String[]> res = DBApp.select("gc9");
+			assertEquals("Committed inserts should survive the crash.", 7, res.size());
+			assertEquals("Committed inserts should keep their order.", "6", res.get(6)[0]);
+			assertTrue("The catalog counts should be repaired.", DBApp.getFullTrace("gc9").endsWith("Pages Count: 4, Records Count: 7, Indexed Columns: []"));
+		}
+		finally
+		{
+			WriteAheadLog.syncCommits = oldSync;
+			WriteAheadLog.noForce = oldNoForce;
+		}
+		FileManager.reset();
+	}
+}
@@ -0,0 +1,419 @@
+package DBMS;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Disk-based extendible hash index of one column, stored in
+ * Tables/<table>/<column>.hx as fixed-size blocks. Every entry maps a column
+ * value to the (page, slot) of the record holding it, for equality lookups on
+ * unique and other high cardinality columns.
+ *
+ * Layout:
+ *   block 0   header [magic int, version int, global depth int,
+ *             directory block int, block count int, size long]
+ *   directory 2^depth bucket block ids, in consecutive blocks
+ *   bucket    [local depth byte, count short, overflow bucket int, then per
+ *             entry: key length short, UTF-8 key, page int, slot int]
+ *
+ * A value hashes to the directory slot given by the low global depth bits of
+ * its hash, so a lookup reads one directory slot and one bucket whatever the
+ * size of the table. A full bucket splits on its next hash bit, doubling the
+ * directory when its local depth reaches the global depth; the doubled
+ * directory is written at the end of the file. Only a bucket whose entries
+ * all share one hash, such as many copies of one value, grows an overflow
+ * chain instead. Null values are not indexed.
+ */
+public class HashIndex implements AutoCloseable
+{
+	static final int MAGIC = 0x48415348; // "HASH"
+	static final int VERSION = 1;
+	static final int BUCKET_SIZE = 4096;
+	// longest key in bytes, so that a bucket always holds several entries
+	static final int MAX_KEY_BYTES = 512;
+	// the directory stops doubling at 2^MAX_DEPTH slots
+	static final int MAX_DEPTH = 20;
+	private static final int BUCKET_HEADER = 7;
+
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private int depth;
+	private int directory;
+	private int blockCount;
+	private long size;
+	private int reads;
+
+	private static class Bucket
+	{
+		final int id;
+		int depth;
+		int next = -1;
+		final ArrayList<String> keys = new ArrayList<String>();
+		final ArrayList<int[]> refs = new ArrayList<int[]>();
+
+		Bucket(int id, int depth)
+		{
+			this.id = id;
+			this.depth = depth;
+		}
+
+		int byteSize()
+		{
+			int res = BUCKET_HEADER;
+			for(String k : keys)
+			{
+				res += entrySize(k);
+			}
+			return res;
+		}
+	}
+
+	public HashIndex(File file) throws IOException
+	{
+		boolean exists = file.exists() && file.length() >= BUCKET_SIZE;
+		this.raf = new RandomAccessFile(file, "rw");
+		this.channel = raf.getChannel();
+		if(exists)
+		{
+			ByteBuffer header = ByteBuffer.allocate(28);
+			channel.read(header, 0);
+			header.flip();
+			if(header.getInt() != MAGIC)
+			{
+				close();
+				throw new IOException("Not a hash index: " + file);
+			}
+			header.getInt();
+			depth = header.getInt();
+			directory = header.getInt();
+			blockCount = header.getInt();
+			size = header.getLong();
+		}
+		else
+		{
+			clear();
+		}
+	}
+
+	// Empties the index: a directory of one slot pointing at one bucket.
+	private void clear() throws IOException
+	{
+		channel.truncate(BUCKET_SIZE);
+		depth = 0;
+		directory = 1;
+		blockCount = 3;
+		size = 0;
+		writeDirectory(new int[]{2}, directory);
+		writeBucket(new Bucket(2, 0));
+		writeHeader();
+	}
+
+	private void writeHeader() throws IOException
+	{
+		ByteBuffer header = ByteBuffer.allocate(28);
+		header.putInt(MAGIC).putInt(VERSION).putInt(depth).putInt(directory).putInt(blockCount).putLong(size);
+		header.flip();
+		channel.write(header, 0);
+	}
+
+	private static int entrySize(String key)
+	{
+		return 2 + key.getBytes(StandardCharsets.UTF_8).length + 8;
+	}
+
+	// Murmur3 finalizer over the string hash, so that the low bits used by the
+	// directory depend on every character of the value.
+	static int hash(String key)
+	{
+		int h = key.hashCode();
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	private int readSlot(int slot) throws IOException
+	{
+		reads++;
+		ByteBuffer buf = ByteBuffer.allocate(4);
+		channel.read(buf, (long)directory * BUCKET_SIZE + 4L * slot);
+		buf.flip();
+		return buf.getInt();
+	}
+
+	private int[] readDirectory() throws IOException
+	{
+		ByteBuffer buf = ByteBuffer.allocate(4 << depth);
+		channel.read(buf, (long)directory * BUCKET_SIZE);
+		buf.flip();
+		int[] res = new int[1 << depth];
+		buf.asIntBuffer().get(res);
+		return res;
+	}
+
+	private void writeDirectory(int[] slots, int block) throws IOException
+	{
+		ByteBuffer buf = ByteBuffer.allocate(4 * slots.length);
+		buf.asIntBuffer().put(slots);
+		channel.write(buf, (long)block * BUCKET_SIZE);
+	}
+
+	private static int directoryBlocks(int slots)
+	{
+		return (4 * slots + BUCKET_SIZE - 1) / BUCKET_SIZE;
+	}
+
+	private Bucket readBucket(int id) throws IOException
+	{
+		reads++;
+		ByteBuffer buf = ByteBuffer.allocate(BUCKET_SIZE);
+		channel.read(buf, (long)id * BUCKET_SIZE);
+		buf.flip();
+		Bucket b = new Bucket(id, buf.get());
+		int count = buf.getShort();
+		b.next = buf.getInt();
+		for(int i = 0; i < count; i++)
+		{
+			byte[] key = new byte[buf.getShort()];
+			buf.get(key);
+			b.keys.add(new String(key, StandardCharsets.UTF_8));
+			b.refs.add(new int[]{buf.getInt(), buf.getInt()});
+		}
+		return b;
+	}
+
+	private void writeBucket(Bucket b) throws IOException
+	{
+		ByteBuffer buf = ByteBuffer.allocate(BUCKET_SIZE);
+		buf.put((byte)b.depth).putShort((short)b.keys.size()).putInt(b.next);
+		for(int i = 0; i < b.keys.size(); i++)
+		{
+			byte[] key = b.keys.get(i).getBytes(StandardCharsets.UTF_8);
+			buf.putShort((short)key.length).put(key);
+			buf.putInt(b.refs.get(i)[0]).putInt(b.refs.get(i)[1]);
+		}
+		buf.rewind();
+		channel.write(buf, (long)b.id * BUCKET_SIZE);
+	}
+
+	// The bucket holding the value and its overflow buckets.
+	private ArrayList<Bucket> chain(int head) throws IOException
+	{
+		ArrayList<Bucket> res = new ArrayList<Bucket>();
+		for(int id = head; id >= 0; )
+		{
+			Bucket b = readBucket(id);
+			res.add(b);
+			id = b.next;
+		}
+		return res;
+	}
+
+	static void checkKey(String key)
+	{
+		if(key.getBytes(StandardCharsets.UTF_8).length > MAX_KEY_BYTES)
+		{
+			throw new IllegalArgumentException("Value too long for a hash index: " + key.length() + " characters");
+		}
+	}
+
+	public void insert(String key, int page, int slot) throws IOException
+	{
+		if(key == null)
+		{
+			return;
+		}
+		checkKey(key);
+		int h = hash(key);
+		while(true)
+		{
+			ArrayList<Bucket> chain = chain(readSlot(h & ((1 << depth) - 1)));
+			for(Bucket b : chain)
+			{
+				if(b.byteSize() + entrySize(key) <= BUCKET_SIZE)
+				{
+					b.keys.add(key);
+					b.refs.add(new int[]{page, slot});
+					writeBucket(b);
+					size++;
+					writeHeader();
+					return;
+				}
+			}
+			Bucket head = chain.get(0);
+			if(head.depth >= MAX_DEPTH || !splits(chain, h))
+			{
+				// splitting cannot separate the entries, chain a new bucket
+				Bucket last = chain.get(chain.size() - 1);
+				Bucket overflow = new Bucket(blockCount++, head.depth);
+				overflow.keys.add(key);
+				overflow.refs.add(new int[]{page, slot});
+				last.next = overflow.id;
+				writeBucket(overflow);
+				writeBucket(last);
+				size++;
+				writeHeader();
+				return;
+			}
+			split(chain, h);
+		}
+	}
+
+	// True when the entries of the chain and the new hash do not all share
+	// one hash, so that enough splits separate them.
+	private static boolean splits(ArrayList<Bucket> chain, int h)
+	{
+		for(Bucket b : chain)
+		{
+			for(String k : b.keys)
+			{
+				if(hash(k) != h)
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	// Splits the chain on its next hash bit. The entries with that bit clear
+	// stay in the head bucket, the others move to a new bucket, and the
+	// directory slots of the new bucket are pointed at it.
+	private void split(ArrayList<Bucket> chain, int h) throws IOException
+	{
+		Bucket head = chain.get(0);
+		int local = head.depth;
+		if(local == depth)
+		{
+			int[] slots = readDirectory();
+			int[] doubled = new int[slots.length * 2];
+			System.arraycopy(slots, 0, doubled, 0, slots.length);
+			System.arraycopy(slots, 0, doubled, slots.length, slots.length);
+			// the old directory blocks are left unused
+			directory = blockCount;
+			blockCount += directoryBlocks(doubled.length);
+			depth++;
+			writeDirectory(doubled, directory);
+		}
+		ArrayList<Integer> ids = new ArrayList<Integer>();
+		ArrayList<String> keys = new ArrayList<String>();
+		ArrayList<int[]> refs = new ArrayList<int[]>();
+		for(Bucket b : chain)
+		{
+			ids.add(b.id);
+			keys.addAll(b.keys);
+			refs.addAll(b.refs);
+		}
+		ArrayList<String> highKeys = new ArrayList<String>();
+		ArrayList<int[]> highRefs = new ArrayList<int[]>();
+		ArrayList<String> lowKeys = new ArrayList<String>();
+		ArrayList<int[]> lowRefs = new ArrayList<int[]>();
+		for(int i = 0; i < keys.size(); i++)
+		{
+			boolean high = (hash(keys.get(i)) >>> local & 1) == 1;
+			(high ? highKeys : lowKeys).add(keys.get(i));
+			(high ? highRefs : lowRefs).add(refs.get(i));
+		}
+		int lowHead = writeChain(lowKeys, lowRefs, local + 1, ids);
+		int highHead = writeChain(highKeys, highRefs, local + 1, ids);
+
+		int[] slots = readDirectory();
+		int bits = h & ((1 << local) - 1);
+		for(int i = 0; i < slots.length; i++)
+		{
+			if((i & ((1 << local) - 1)) == bits)
+			{
+				slots[i] = (i >>> local & 1) == 1 ? highHead : lowHead;
+			}
+		}
+		writeDirectory(slots, directory);
+		writeHeader();
+	}
+
+	// Writes the entries as a chain of buckets, reusing the given block ids
+	// before taking new ones, and returns the id of the first bucket.
+	private int writeChain(List<String> keys, List<int[]> refs, int local, ArrayList<Integer> ids) throws IOException
+	{
+		ArrayList<Bucket> chain = new ArrayList<Bucket>();
+		Bucket b = new Bucket(ids.isEmpty() ? blockCount++ : ids.remove(0), local);
+		chain.add(b);
+		for(int i = 0; i < keys.size(); i++)
+		{
+			if(b.byteSize() + entrySize(keys.get(i)) > BUCKET_SIZE)
+			{
+				b = new Bucket(ids.isEmpty() ? blockCount++ : ids.remove(0), local);
+				chain.get(chain.size() - 1).next = b.id;
+				chain.add(b);
+			}
+			b.keys.add(keys.get(i));
+			b.refs.add(refs.get(i));
+		}
+		for(Bucket c : chain)
+		{
+			writeBucket(c);
+		}
+		return chain.get(0).id;
+	}
+
+	// Replaces the whole index with the entries, given as {key, page, slot}.
+	public void build(List<Object[]> entries) throws IOException
+	{
+		clear();
+		for(Object[] e : entries)
+		{
+			insert((String)e[0], (Integer)e[1], (Integer)e[2]);
+		}
+	}
+
+	// {page, slot} of every entry holding the value, in insertion order.
+	public ArrayList<int[]> search(String key) throws IOException
+	{
+		ArrayList<int[]> res = new ArrayList<int[]>();
+		if(key == null)
+		{
+			return res;
+		}
+		for(Bucket b : chain(readSlot(hash(key) & ((1 << depth) - 1))))
+		{
+			for(int i = 0; i < b.keys.size(); i++)
+			{
+				if(b.keys.get(i).equals(key))
+				{
+					res.add(b.refs.get(i));
+				}
+			}
+		}
+		return res;
+	}
+
+	public long size()
+	{
+		return size;
+	}
+
+	public int getDepth()
+	{
+		return depth;
+	}
+
+	// Directory slots and buckets read since the index was opened.
+	public int getReads()
+	{
+		return reads;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		channel.close();
+		raf.close();
+	}
+}
@@ -0,0 +1,134 @@
+package DBMS;
+import java.io.File;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import java.util.*;
+import org.junit.Test;
+public class HashIndexTests
+{
+
+	@Test(timeout = 1000000)
+	public void testLookupsReadTwoBlocks() throws Exception
+	{
+		FileManager.reset();
+		File dir = new File(FileManager.directory, "hx0");
+		dir.mkdirs();
+		File file = new File(dir, "id.hx");
+		ArrayList<Integer> keys = new ArrayList<Integer>();
+		for(int i=0;i<30000;i++)
+		{
+			keys.add(i);
+		}
+		Collections.shuffle(keys, new Random(11));
+		try(HashIndex index = new HashIndex(file))
+		{
+			for(int i=0;i<keys.size();i++)
+			{
+				index.insert(""+keys.get(i), i/100, i%100);
+			}
+			assertEquals(30000, index.size());
+			assertTrue("Thirty thousand keys should split the buckets.", index.getDepth() > 3);
+		}
+		try(HashIndex index = new HashIndex(file))
+		{
+			for(int k=0;k<30000;k+=997)
+			{
+				int before = index.getReads();
+				ArrayList<int[]> hit = index.search(""+k);
+				assertEquals("A lookup should read one directory slot and one bucket.", 2, index.getReads() - before);
+				assertEquals(1, hit.size());
+				int at = keys.indexOf(k);
+				assertEquals(at/100, hit.get(0)[0]);
+				assertEquals(at%100, hit.get(0)[1]);
+			}
+			assertEquals(0, index.search("30000").size());
+			assertEquals(0, index.search("x").size());
+		}
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testDuplicatesOverflow() throws Exception
+	{
+		FileManager.reset();
+		File dir = new File(FileManager.directory, "hx1");
+		dir.mkdirs();
+		File file = new File(dir, "major.hx");
+		ArrayList<Object[]> entries = new ArrayList<Object[]>();
+		for(int i=0;i<3000;i++)
+		{
+			entries.add(new Object[]{i%3==0 ? "CS" : "m"+i, i/10, i%10});
+		}
+		entries.add(new Object[]{null, 300, 0});
+		try(HashIndex index = new HashIndex(file))
+		{
+			index.build(entries);
+			assertEquals("Null values should not be indexed.", 3000, index.size());
+			assertEquals("Copies of one value should chain past a full bucket.", 1000, index.search("CS").size());
+			assertEquals(1, index.search("m2999").size());
+			index.insert("CS", 300, 1);
+			assertEquals(1001, index.search("CS").size());
+			index.build(entries.subList(0, 10));
+			assertEquals(4, index.search("CS").size());
+			assertEquals(0, index.search("m2999").size());
+		}
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testSelectsUseHashIndex() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 6;
+		DBApp.createTable("hx2", new String[]{"id","name","major"}, new ColumnType[]{ColumnType.INT, ColumnType.varchar(10), ColumnType.varchar(5)});
+		for(int i=0;i<40;i++)
+		{
+			DBApp.insert("hx2", new String[]{""+i, "n"+i, "m"+(i%3)});
+		}
+		DBApp.createHashIndex("hx2", "id");
+		assertTrue(DBApp.getLastTrace("hx2").startsWith("Hash index created for column: id"));
+		List<String[]> batch = new ArrayList<String[]>();
+		for(int i=40;i<50;i++)
+		{
+			batch.add(new String[]{""+i, "n"+i, "m"+(i%3)});
+		}
+		DBApp.insertBatch("hx2", batch);
+
+		ArrayList<String[]> res = DBApp.select("hx2", new String[]{"id"}, new String[]{"045"});
+		assertEquals(1, res.size());
+		assertEquals("n45", res.get(0)[1]);
+		assertTrue("The trace should keep the select format: " + DBApp.getLastTrace("hx2"),
+				DBApp.getLastTrace("hx2").startsWith("Select condition:[id]->[045], Records per page:[[7, 1]], records:1"));
+		assertEquals(0, DBApp.select("hx2", new String[]{"id", "major"}, new String[]{"45", "m1"}).size());
+		assertEquals(1, DBApp.select("hx2", new String[]{"major", "id"}, new String[]{"m0", "45"}).size());
+		assertEquals(0, DBApp.select("hx2", new String[]{"id"}, new String[]{"99"}).size());
+
+		res = DBApp.selectIndex("hx2", new String[]{"id", "major"}, new String[]{"12", "m0"});
+		assertEquals(1, res.size());
+		assertTrue(DBApp.getLastTrace("hx2").contains("Indexed columns: [id], Indexed selection count: 1, Non Indexed: [major], Final count: 1"));
+		assertEquals(3, DBApp.selectIndex("hx2", Predicate.in("id", "1", "2", "49", "50")).size());
+		assertTrue(DBApp.getLastTrace("hx2").contains("Indexed columns: [id]"));
+		assertEquals(1, DBApp.selectIndexCursor("hx2", new String[]{"id"}, new String[]{"3"}).toList().size());
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testHashIndexRebuiltByBulkLoad() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 5;
+		DBApp.createTable("hx3", new String[]{"id","name"});
+		DBApp.insert("hx3", new String[]{"a", "first"});
+		DBApp.createHashIndex("hx3", "id");
+		ArrayList<String[]> rows = new ArrayList<String[]>();
+		for(int i=0;i<40;i++)
+		{
+			rows.add(new String[]{"k"+i, "n"+i});
+		}
+		DBApp.bulkLoad("hx3", rows.iterator());
+		assertEquals("n33", DBApp.select("hx3", new String[]{"id"}, new String[]{"k33"}).get(0)[1]);
+		assertEquals("first", DBApp.selectIndex("hx3", new String[]{"id"}, new String[]{"a"}).get(0)[1]);
+		assertEquals(0, DBApp.selectIndex("hx3", new String[]{"id"}, new String[]{"k40"}).size());
+		FileManager.reset();
+	}
+}
@@ -0,0 +1,66 @@
+package DBMS;
+import java.io.File;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import java.util.*;
+import org.junit.Test;
+public class IndexDeltaTests
+{
+
+	@Test(timeout = 1000000)
+	public void testInsertsAppendToDeltaLog() throws Exception
+	{
+		FileManager.reset();
+		String[] cols = {"id","major"};
+		DBApp.createTable("dl1", cols);
+		for(int i=0;i<6;i++)
+		{
+			DBApp.insert("dl1", new String[]{""+i, "m"+(i%2)});
+		}
+		DBApp.createBitMapIndex("dl1", "major");
+		File tableDir = new File(FileManager.directory.getAbsolutePath()+ File.separator + "dl1");
+		File base = new File(tableDir, "major.db");
+		long baseModified = base.lastModified();
+		long baseSize = base.length();
+		for(int i=6;i<12;i++)
+		{
+			DBApp.insert("dl1", new String[]{""+i, "m"+(i%3)});
+		}
+		assertTrue("Inserts should append to the delta log.", new File(tableDir, "major.delta").exists());
+		assertTrue("Inserts should not rewrite the base image.", base.lastModified() == baseModified && base.length() == baseSize);
+		assertEquals("Loading should replay the delta log.", "101010100100", DBApp.getValueBits("dl1", "major", "m0"));
+		assertEquals("Loading should replay the delta log.", "000000001001", DBApp.getValueBits("dl1", "major", "m2"));
+		assertEquals("Index selects should see logged entries.", 2, DBApp.selectIndex("dl1", new String[]{"major"}, new String[]{"m2"}).size());
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testDeltaLogIsMergedInBackground() throws Exception
+	{
+		FileManager.reset();
+		int oldThreshold = FileManager.indexMergeThreshold;
+		FileManager.indexMergeThreshold = 5;
+		try
+		{
+			String[] cols = {"id","major"};
+			DBApp.createTable("dl2", cols);
+			DBApp.createBitMapIndex("dl2", "major");
+			StringBuilder expected = new StringBuilder();
+			for(int i=0;i<23;i++)
+			{
+				DBApp.insert("dl2", new String[]{""+i, "m"+(i%4)});
+				expected.append(i%4==1 ? '1' : '0');
+			}
+			FileManager.awaitIndexMerges();
+			File delta = new File(FileManager.directory.getAbsolutePath()+ File.separator + "dl2" + File.separator + "major.delta");
+			assertTrue("Merging should keep the delta log short.", !delta.exists() || delta.length() < 5*12);
+			assertTrue("A finished merge should leave no log set aside.", !new File(delta.getParentFile(), "major.delta.merging").exists());
+			assertEquals("Merged and logged entries should both be visible.", expected.toString(), DBApp.getValueBits("dl2", "major", "m1"));
+		}
+		finally
+		{
+			FileManager.indexMergeThreshold = oldThreshold;
+		}
+		FileManager.reset();
+	}
+}
@@ -0,0 +1,72 @@
+package DBMS;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Number of records holding each value of a column with a bitmap index,
+ * kept in the TableStats of the table for the query planner.
+ * createBitMapIndex and analyze count the index exactly, and Table.insert
+ * counts new records in memory only, so planning never has to load an index
+ * it may not use. The counts are estimates: those of the records inserted
+ * after the stats file was last written are lost on a crash.
+ */
+public class IndexStats implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	private final HashMap<String, Integer> counts = new HashMap<String, Integer>();
+	private long total;
+
+	static IndexStats of(BitmapIndex index)
+	{
+		IndexStats res = new IndexStats();
+		for(String v : index.getValues())
+		{
+			int n = index.getBitmap(v).cardinality();
+			if(n > 0)
+			{
+				res.counts.put(v, n);
+				res.total += n;
+			}
+		}
+		return res;
+	}
+
+	synchronized void add(String value)
+	{
+		counts.merge(value, 1, Integer::sum);
+		total++;
+	}
+
+	// Records holding the value.
+	public synchronized int count(String value)
+	{
+		Integer n = counts.get(value);
+		return n == null ? 0 : n;
+	}
+
+	public synchronized int distinct()
+	{
+		return counts.size();
+	}
+
+	public synchronized long total()
+	{
+		return total;
+	}
+
+	public synchronized Set<String> values()
+	{
+		return new HashSet<String>(counts.keySet());
+	}
+
+	private synchronized void writeObject(ObjectOutputStream out) throws IOException
+	{
+		out.defaultWriteObject();
+	}
+}
@@ -0,0 +1,72 @@
+package DBMS;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Per-table locks taken by DBApp. Index selects and validation share the
+ * read lock, so they run concurrently with each other; plain selects take no
+ * lock and read the snapshot of their catalog. Inserts also take the read
+ * lock plus the table's append lock, so one insert at a time extends the
+ * tail page and the catalog while selects keep running. Operations that rewrite existing
+ * pages, indexes or the schema (createTable, the index creators, bulkLoad,
+ * recoverRecords) take the write lock.
+ *
+ * Pages themselves are latched by their synchronized methods, and catalog
+ * files are replaced atomically by FileManager, so a reader always sees a
+ * whole catalog and whole pages. B+tree and hash index files have a lock of
+ * their own, shared by lookups and taken alone to change the file.
+ */
+public class LockManager
+{
+	private static final HashMap<String, ReentrantReadWriteLock> tableLocks = new HashMap<String, ReentrantReadWriteLock>();
+	private static final HashMap<String, ReentrantLock> appendLocks = new HashMap<String, ReentrantLock>();
+	private static final HashMap<String, ReentrantReadWriteLock> indexFileLocks = new HashMap<String, ReentrantReadWriteLock>();
+
+	private static synchronized ReentrantReadWriteLock tableLock(String tableName)
+	{
+		ReentrantReadWriteLock lock = tableLocks.get(tableName);
+		if(lock == null)
+		{
+			lock = new ReentrantReadWriteLock();
+			tableLocks.put(tableName, lock);
+		}
+		return lock;
+	}
+
+	public static Lock readLock(String tableName)
+	{
+		return tableLock(tableName).readLock();
+	}
+
+	public static Lock writeLock(String tableName)
+	{
+		return tableLock(tableName).writeLock();
+	}
+
+	public static synchronized Lock appendLock(String tableName)
+	{
+		ReentrantLock lock = appendLocks.get(tableName);
+		if(lock == null)
+		{
+			lock = new ReentrantLock();
+			appendLocks.put(tableName, lock);
+		}
+		return lock;
+	}
+
+	public static synchronized ReentrantReadWriteLock indexFileLock(File file)
+	{
+		String key = file.getAbsolutePath();
+		ReentrantReadWriteLock lock = indexFileLocks.get(key);
+		if(lock == null)
+		{
+			lock = new ReentrantReadWriteLock();
+			indexFileLocks.put(key, lock);
+		}
+		return lock;
+	}
+}
@@ -0,0 +1,128 @@
+package DBMS;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+public class MvccTests
+{
+
+	@Test(timeout = 1000000)
+	public void testSnapshotHidesLaterInserts() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 5;
+		String[] cols = {"id","major"};
+		DBApp.createTable("mv1", cols);
+		for(int i=0;i<3;i++)
+		{
+			DBApp.insert("mv1", new String[]{""+i, "m"+(i%2)});
+		}
+		Table snapshot = FileManager.loadTable("mv1");
+		TableCursor cursor = DBApp.selectCursor("mv1");
+		for(int i=3;i<7;i++)
+		{
+			DBApp.insert("mv1", new String[]{""+i, "m"+(i%2)});
+		}
+		assertEquals("A snapshot should not see inserts committed after it.", 3, snapshot.select().size());
+		assertEquals("A condition select on a snapshot should not see later inserts.", 1,
+				snapshot.select(new String[]{"major"}, new String[]{"m1"}).size());
+		assertEquals("A pointer select should not return a later insert.", 0, snapshot.select(0, 3).size());
+		assertEquals("A cursor should keep the snapshot it was opened with.", 3, cursor.toList().size());
+		assertEquals("A new select should see every committed insert.", 7, DBApp.select("mv1").size());
+		assertEquals("Every insert should take its own commit timestamp.", 7,
+				FileManager.loadTable("mv1").getLastCommitTs());
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testSelectDuringBulkLoad() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 4;
+		int batchSize = DBApp.bulkLoadBatchSize;
+		DBApp.bulkLoadBatchSize = 10;
+		String[] cols = {"id","major"};
+		DBApp.createTable("mv2", cols);
+		final CountDownLatch firstBatch = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		// blocks before the 11th record, once the first batch is stored
+		Iterator<String[]> records = new Iterator<String[]>() {
+			int count = 0;
+
+			public boolean hasNext()
+			{
+				return count < 20;
+			}
+
+			public String[] next()
+			{
+				if(count == 10)
+				{
+					firstBatch.countDown();
+					try
+					{
+						release.await();
+					}
+					catch (InterruptedException e)
+					{
+						throw new RuntimeException(e);
+					}
+				}
+				count++;
+				return new String[]{""+count, "m"+(count%2)};
+			}
+		};
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try
+		{
+			Future<?> load = pool.submit(() -> DBApp.bulkLoad("mv2", records));
+			firstBatch.await();
+			Future<ArrayList<String[]>> select = pool.submit(() -> DBApp.select("mv2"));
+			assertEquals("A select should not wait for a bulk load and see its committed batches.",
+					10, select.get(30, TimeUnit.SECONDS).size());
+			assertEquals("A condition select should not wait for a bulk load either.", 5,
+					pool.submit(() -> DBApp.select("mv2", new String[]{"major"}, new String[]{"m1"}))
+					.get(30, TimeUnit.SECONDS).size());
+			release.countDown();
+			load.get();
+		}
+		finally
+		{
+			release.countDown();
+			pool.shutdown();
+			DBApp.bulkLoadBatchSize = batchSize;
+		}
+		assertEquals("Every loaded record should be visible after the load.", 20, DBApp.select("mv2").size());
+		assertEquals("Each batch should commit under one timestamp.", 2,
+				FileManager.loadTable("mv2").getLastCommitTs());
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testCommitTimestampsSurviveEncoding() throws Exception
+	{
+		DBApp.dataPageSize = 5;
+		Page p = new Page();
+		p.insert(new String[]{"1", "a"}, 5);
+		p.insert(new String[]{"2", "b"}, 7);
+		ByteBuffer buf = ByteBuffer.wrap(PageCodec.encode(p));
+		Page decoded = PageCodec.decode(buf);
+		assertEquals(5, decoded.getCommitTs(0));
+		assertEquals(7, decoded.getCommitTs(1));
+		assertEquals("Only records committed at or before the snapshot should be read.", 1, decoded.selectSnapshot(6).size());
+		assertEquals(1, PageCodec.select(buf, new String[]{null, null}, 6).size());
+		assertEquals("b", PageCodec.select(buf, new String[]{null, "b"}).get(0)[1]);
+
+		Page plain = new Page();
+		plain.insert(new String[]{"1", "a"});
+		Page plainDecoded = PageCodec.decode(ByteBuffer.wrap(PageCodec.encode(plain)));
+		assertEquals("Unstamped records should be visible to every snapshot.", 1, plainDecoded.selectSnapshot(0).size());
+		assertEquals(0, plainDecoded.getCommitTs(0));
+	}
+}
@@ -2,11 +2,21 @@ package DBMS;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class Page implements Serializable
 {
+	// pinned to the value of the original class, so pages it wrote still load
+	private static final long serialVersionUID = 5657986611886508260L;
 
 	private ArrayList<String []> records;
+	// write-ahead log entry of the last stored image, kept by PageCodec
+	private transient long lsn;
+	// commit timestamp of every record, 0 for records visible to every snapshot
+	private transient long[] stamps;
+	// column types of a typed table, which PageCodec uses to store the values
+	// in binary form; null for untyped pages
+	private transient ColumnType[] types;
 	
 	
 	public Page() 
@@ -15,51 +25,198 @@ public class Page implements Serializable
 		this.records = new ArrayList<String[]>();
 	}
 	
-	public boolean insert(String []record)
+	public Page(ColumnType[] types)
 	{
-		if(records.size()<DBApp.dataPageSize)
+		this();
+		this.types = types;
+	}
+	
+	Page(ArrayList<String []> records)
+	{
+		this(records, null);
+	}
+	
+	Page(ArrayList<String []> records, long[] stamps)
+	{
+		super();
+		this.records = records;
+		this.stamps = stamps;
+	}
+	
+	// Every method holding the records is synchronized, acting as the page
+	// latch: a reader scanning a cached page never sees an insert half done.
+	public synchronized boolean insert(String []record)
+	{
+		return insert(record, 0);
+	}
+	
+	// Appends a record version committed at commitTs, which snapshots taken
+	// before that commit do not see.
+	public synchronized boolean insert(String []record, long commitTs)
+	{
+		return insert(record, commitTs, DBApp.dataPageSize);
+	}
+
+	// Appends the record unless the page already holds capacity records.
+	public synchronized boolean insert(String []record, long commitTs, int capacity)
+	{
+		if(records.size()<capacity)
 		{
+			if(commitTs != 0 || stamps != null)
+			{
+				int n = records.size();
+				if(stamps == null)
+				{
+					stamps = new long[Math.max(n + 1, capacity)];
+				}
+				else if(stamps.length <= n)
+				{
+					stamps = Arrays.copyOf(stamps, Math.max(n + 1, 2 * stamps.length));
+				}
+				stamps[n] = commitTs;
+			}
 			this.records.add(record);
 			return true;
 		}
 		return false;
 	}
 	
-	public ArrayList<String[]> select()
+	public synchronized long getCommitTs(int i)
+	{
+		return stamps == null || i >= stamps.length ? 0 : stamps[i];
+	}
+	
+	// Commit timestamp of every record, null when all of them are 0.
+	synchronized long[] getCommitStamps()
 	{
-		return this.records;
+		return stamps == null ? null : Arrays.copyOf(stamps, records.size());
 	}
 	
-	public ArrayList<String []> select(String[] cond)
+	private boolean visible(int i, long snapshot)
+	{
+		return stamps == null || i >= stamps.length || stamps[i] <= snapshot;
+	}
+	
+	ColumnType[] getTypes()
+	{
+		return types;
+	}
+	
+	void setTypes(ColumnType[] types)
+	{
+		this.types = types;
+	}
+	
+	long getLsn()
+	{
+		return lsn;
+	}
+	
+	void setLsn(long lsn)
+	{
+		this.lsn = lsn;
+	}
+	
+	// Returns a copy, so the caller can iterate it while the page grows.
+	public synchronized ArrayList<String[]> select()
+	{
+		return new ArrayList<String[]>(this.records);
+	}
+	
+	// Records visible to a snapshot taken at the given commit timestamp.
+	public synchronized ArrayList<String[]> selectSnapshot(long snapshot)
+	{
+		ArrayList<String[]> res = new ArrayList<String[]>();
+		for(int i=0;i<this.records.size();i++)
+		{
+			if(visible(i, snapshot))
+				res.add(this.records.get(i));
+		}
+		return res;
+	}
+	
+	// Every slot of the page, null for the records the snapshot does not see,
+	// so positions within the page are kept.
+	public synchronized ArrayList<String[]> selectSlots(long snapshot)
+	{
+		ArrayList<String[]> res = new ArrayList<String[]>(this.records.size());
+		for(int i=0;i<this.records.size();i++)
+		{
+			res.add(visible(i, snapshot) ? this.records.get(i) : null);
+		}
+		return res;
+	}
+	
+	public synchronized ArrayList<String []> select(String[] cond)
+	{
+		return select(cond, Long.MAX_VALUE);
+	}
+	
+	public synchronized ArrayList<String []> select(String[] cond, long snapshot)
 	{
 		ArrayList<String []> res = new ArrayList<String []>();
+		// only the columns the condition constrains are compared
+		int[] checked = new int[cond.length];
+		int count = 0;
+		for(int j=0;j<cond.length;j++)
+		{
+			if(cond[j]!=null)
+				checked[count++] = j;
+		}
 		
 		for(int i=0;i<this.records.size();i++)
 		{
+			if(!visible(i, snapshot))
+				continue;
+			String[] record = this.records.get(i);
 			boolean flag = true;
-			for(int j=0;j<cond.length;j++)
+			for(int k=0;k<count;k++)
 			{
-				if(cond[j]!=null)
+				if(!cond[checked[k]].equals(record[checked[k]]))
 				{
-					if(!cond[j].equals(this.records.get(i)[j]))
-					{
-						flag = false;
-						break;
-					}
+					flag = false;
+					break;
 				}
 			}
 			if(flag)
-				res.add(this.records.get(i));
+				res.add(record);
 		}
 		
 		return res;
 	}
 	
-	public ArrayList<String []> select(int i)
+	// Same as above, keeping only the given columns of every record, all of
+	// them when columns is null.
+	public synchronized ArrayList<String []> select(String[] cond, long snapshot, int[] columns)
+	{
+		ArrayList<String []> res = select(cond, snapshot);
+		for(int i=0;columns!=null && i<res.size();i++)
+		{
+			res.set(i, project(res.get(i), columns));
+		}
+		return res;
+	}
+	
+	// Values of the given columns of the record, null for columns it lacks.
+	static String[] project(String[] record, int[] columns)
+	{
+		if(columns==null)
+			return record;
+		String[] res = new String[columns.length];
+		for(int k=0;k<columns.length;k++)
+		{
+			if(columns[k]<record.length)
+				res[k] = record[columns[k]];
+		}
+		return res;
+	}
+	
+	public synchronized ArrayList<String []> select(int i)
 	{
 		ArrayList<String []> res = new ArrayList<String []>();
 		res.add(this.records.get(i));
 		return res;
 	}
+	
 
 }
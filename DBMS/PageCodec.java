@@ -0,0 +1,796 @@
+package DBMS;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Binary on-disk layout of a Page, replacing Java serialization.
+ *
+ * Layout (version 2):
+ *   header   [magic int, version byte, flags byte, recordCount int, lsn long]
+ *   schema   only with the TYPED flag: [columnCount short, then per column:
+ *            kind byte, VARCHAR length short]
+ *   offsets  recordCount ints, offset of each record from the start of the page
+ *   records  [valueCount short, then per value: length int (-1 for null), UTF-8 bytes]
+ *            or, with the TYPED flag, [valueCount short, null bitmap, then the
+ *            binary form of every non null value as written by ColumnType]
+ *
+ * With the COLUMNAR flag the schema is followed by [columnCount short, then
+ * the offset int of every column vector], the commit timestamps (longs) when
+ * STAMPED, and the column vectors: [encoding byte, null bitmap of the
+ * records, values]. The values of a PLAIN vector are those of the non null
+ * records one after the other; a DICTIONARY vector holds [entryCount int,
+ * entries, code width byte, one code per record]. Values are stored as in the
+ * row layout (length and UTF-8 bytes, or the binary form of typed values).
+ * Selects on a columnar page narrow a selection vector one condition column
+ * at a time and decode only the columns they return.
+ *
+ * The lsn is the write-ahead log entry that produced the page image; version 1
+ * pages have no lsn field and read as lsn 0. When the STAMPED flag is set every
+ * record starts with its commit timestamp (long), otherwise all records read
+ * as committed at timestamp 0. Pages of a typed table are written TYPED as
+ * long as every record holds canonical values of the column types. Pages
+ * written by older versions with ObjectOutputStream are still decoded, so
+ * FileManager can migrate them the first time they are read.
+ */
+public class PageCodec
+{
+	static final int MAGIC = 0x50414745; // "PAGE"
+	static final byte VERSION = 2;
+	static final int HEADER_SIZE = 18;
+	static final int V1_HEADER_SIZE = 10;
+	static final byte STAMPED = 1;
+	static final byte TYPED = 2;
+	static final byte COLUMNAR = 4;
+	// encodings of a column vector
+	static final byte PLAIN = 0;
+	static final byte DICTIONARY = 1;
+
+	// pages are written in the columnar layout while set, when all their
+	// records have the same number of values; both layouts are always read
+	static boolean columnar = false;
+
+	public static byte[] encode(Page p)
+	{
+		ArrayList<String[]> records;
+		long[] stamps;
+		ColumnType[] types;
+		synchronized(p)
+		{
+			records = p.select();
+			stamps = p.getCommitStamps();
+			types = p.getTypes();
+		}
+		if(types != null && !conforms(types, records))
+		{
+			types = null;
+		}
+		int n = records.size();
+		if(columnar && uniform(records))
+		{
+			return encodeColumnar(p.getLsn(), records, stamps, types);
+		}
+		int stampSize = stamps == null ? 0 : 8;
+		int schemaSize = types == null ? 0 : 2 + 3 * types.length;
+		byte[][][] values = new byte[n][][];
+		int[] sizes = new int[n];
+		int size = HEADER_SIZE + schemaSize + 4 * n;
+		for(int i = 0; i < n; i++)
+		{
+			String[] record = records.get(i);
+			values[i] = new byte[record.length][];
+			sizes[i] = stampSize + 2 + (types == null ? 0 : (record.length + 7) / 8);
+			for(int j = 0; j < record.length; j++)
+			{
+				if(record[j] != null)
+				{
+					values[i][j] = types == null ? record[j].getBytes(StandardCharsets.UTF_8) : types[j].toBytes(record[j]);
+					sizes[i] += values[i][j].length;
+				}
+				if(types == null)
+				{
+					sizes[i] += 4;
+				}
+			}
+			size += sizes[i];
+		}
+		ByteBuffer buf = ByteBuffer.allocate(size);
+		byte flags = (byte)((stamps == null ? 0 : STAMPED) | (types == null ? 0 : TYPED));
+		putHeader(buf, flags, n, p.getLsn(), types);
+		int offset = HEADER_SIZE + schemaSize + 4 * n;
+		for(int i = 0; i < n; i++)
+		{
+			buf.putInt(offset);
+			offset += sizes[i];
+		}
+		for(int i = 0; i < n; i++)
+		{
+			if(stamps != null)
+			{
+				buf.putLong(stamps[i]);
+			}
+			buf.putShort((short)values[i].length);
+			if(types != null)
+			{
+				byte[] nulls = new byte[(values[i].length + 7) / 8];
+				for(int j = 0; j < values[i].length; j++)
+				{
+					if(values[i][j] == null)
+					{
+						nulls[j >> 3] |= 1 << (j & 7);
+					}
+				}
+				buf.put(nulls);
+			}
+			for(byte[] v : values[i])
+			{
+				if(types != null)
+				{
+					if(v != null)
+					{
+						buf.put(v);
+					}
+				}
+				else if(v == null)
+				{
+					buf.putInt(-1);
+				}
+				else
+				{
+					buf.putInt(v.length).put(v);
+				}
+			}
+		}
+		return buf.array();
+	}
+
+	private static void putHeader(ByteBuffer buf, byte flags, int n, long lsn, ColumnType[] types)
+	{
+		buf.putInt(MAGIC).put(VERSION).put(flags).putInt(n).putLong(lsn);
+		if(types != null)
+		{
+			buf.putShort((short)types.length);
+			for(ColumnType t : types)
+			{
+				buf.put((byte)t.getKind().ordinal()).putShort((short)t.getLength());
+			}
+		}
+	}
+
+	// True when the page has records and all of them have the same number of
+	// values, so they fit column vectors.
+	private static boolean uniform(ArrayList<String[]> records)
+	{
+		if(records.isEmpty())
+		{
+			return false;
+		}
+		for(String[] record : records)
+		{
+			if(record.length != records.get(0).length)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static byte[] encodeColumnar(long lsn, ArrayList<String[]> records, long[] stamps, ColumnType[] types)
+	{
+		int n = records.size();
+		int count = records.get(0).length;
+		byte[][] vectors = new byte[count][];
+		int schemaSize = types == null ? 0 : 2 + 3 * types.length;
+		int offset = HEADER_SIZE + schemaSize + 2 + 4 * count + (stamps == null ? 0 : 8 * n);
+		int size = offset;
+		for(int j = 0; j < count; j++)
+		{
+			vectors[j] = encodeColumn(records, j, types == null ? null : types[j]);
+			size += vectors[j].length;
+		}
+		ByteBuffer buf = ByteBuffer.allocate(size);
+		byte flags = (byte)(COLUMNAR | (stamps == null ? 0 : STAMPED) | (types == null ? 0 : TYPED));
+		putHeader(buf, flags, n, lsn, types);
+		buf.putShort((short)count);
+		for(byte[] v : vectors)
+		{
+			buf.putInt(offset);
+			offset += v.length;
+		}
+		for(int i = 0; stamps != null && i < n; i++)
+		{
+			buf.putLong(stamps[i]);
+		}
+		for(byte[] v : vectors)
+		{
+			buf.put(v);
+		}
+		return buf.array();
+	}
+
+	// Vector of column j, dictionary encoded when that takes fewer bytes.
+	private static byte[] encodeColumn(ArrayList<String[]> records, int j, ColumnType type)
+	{
+		int n = records.size();
+		byte[] nulls = new byte[(n + 7) / 8];
+		HashMap<String, Integer> codes = new HashMap<String, Integer>();
+		ArrayList<byte[]> entries = new ArrayList<byte[]>();
+		int[] recordCodes = new int[n];
+		int plainSize = 0;
+		int entriesSize = 0;
+		for(int i = 0; i < n; i++)
+		{
+			String v = records.get(i)[j];
+			if(v == null)
+			{
+				nulls[i >> 3] |= 1 << (i & 7);
+				continue;
+			}
+			Integer code = codes.get(v);
+			if(code == null)
+			{
+				code = entries.size();
+				codes.put(v, code);
+				byte[] bytes = valueBytes(v, type);
+				entries.add(bytes);
+				entriesSize += bytes.length;
+			}
+			recordCodes[i] = code;
+			plainSize += entries.get(code).length;
+		}
+		int width = entries.size() <= 1 << 8 ? 1 : 2;
+		boolean dictionary = entries.size() <= 1 << 16 && 4 + entriesSize + 1 + width * n < plainSize;
+		ByteBuffer buf = ByteBuffer.allocate(1 + nulls.length + (dictionary ? 5 + entriesSize + width * n : plainSize));
+		buf.put(dictionary ? DICTIONARY : PLAIN).put(nulls);
+		if(dictionary)
+		{
+			buf.putInt(entries.size());
+			for(byte[] e : entries)
+			{
+				buf.put(e);
+			}
+			buf.put((byte)width);
+			for(int i = 0; i < n; i++)
+			{
+				if(width == 1)
+				{
+					buf.put((byte)recordCodes[i]);
+				}
+				else
+				{
+					buf.putShort((short)recordCodes[i]);
+				}
+			}
+		}
+		else
+		{
+			for(int i = 0; i < n; i++)
+			{
+				if((nulls[i >> 3] & (1 << (i & 7))) == 0)
+				{
+					buf.put(entries.get(recordCodes[i]));
+				}
+			}
+		}
+		return buf.array();
+	}
+
+	// Stored form of a value: its binary form when typed, else length and UTF-8.
+	private static byte[] valueBytes(String value, ColumnType type)
+	{
+		if(type != null)
+		{
+			return type.toBytes(value);
+		}
+		byte[] utf = value.getBytes(StandardCharsets.UTF_8);
+		return ByteBuffer.allocate(4 + utf.length).putInt(utf.length).put(utf).array();
+	}
+
+	// True when every record holds canonical values of the column types, so
+	// the binary form decodes back to the same strings.
+	private static boolean conforms(ColumnType[] types, ArrayList<String[]> records)
+	{
+		for(String[] record : records)
+		{
+			if(record.length != types.length)
+			{
+				return false;
+			}
+			for(int j = 0; j < record.length; j++)
+			{
+				if(record[j] != null && !isCanonical(types[j], record[j]))
+				{
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static boolean isCanonical(ColumnType type, String value)
+	{
+		try
+		{
+			return value.equals(type.canonical(value));
+		}
+		catch (IllegalArgumentException e)
+		{
+			return false;
+		}
+	}
+
+	public static boolean isLegacy(ByteBuffer buf)
+	{
+		return buf.remaining() < V1_HEADER_SIZE || buf.getInt(buf.position()) != MAGIC;
+	}
+
+	private static int headerSize(ByteBuffer buf, int base)
+	{
+		return buf.get(base + 4) >= 2 ? HEADER_SIZE : V1_HEADER_SIZE;
+	}
+
+	private static boolean hasFlag(ByteBuffer buf, int base, byte flag)
+	{
+		return buf.get(base + 4) >= 2 && (buf.get(base + 5) & flag) != 0;
+	}
+
+	// Column types of a typed page, null for pages of strings.
+	private static ColumnType[] types(ByteBuffer buf, int base)
+	{
+		if(!hasFlag(buf, base, TYPED))
+		{
+			return null;
+		}
+		int pos = base + HEADER_SIZE;
+		ColumnType[] types = new ColumnType[buf.getShort(pos)];
+		for(int j = 0; j < types.length; j++)
+		{
+			int entry = pos + 2 + 3 * j;
+			types[j] = ColumnType.of(ColumnType.Kind.values()[buf.get(entry)], buf.getShort(entry + 1));
+		}
+		return types;
+	}
+
+	// Position of the record offsets, past the header and the schema.
+	private static int offsetsStart(ByteBuffer buf, int base)
+	{
+		int header = headerSize(buf, base);
+		return hasFlag(buf, base, TYPED) ? header + 2 + 3 * buf.getShort(base + header) : header;
+	}
+
+	// Position of record i, past its commit timestamp.
+	private static int recordStart(ByteBuffer buf, int base, int offsets, boolean stamped, int i)
+	{
+		return base + buf.getInt(base + offsets + 4 * i) + (stamped ? 8 : 0);
+	}
+
+	// Commit timestamp of record i, 0 when the page carries none.
+	private static long commitTs(ByteBuffer buf, int base, int offsets, boolean stamped, int i)
+	{
+		return stamped ? buf.getLong(base + buf.getInt(base + offsets + 4 * i)) : 0;
+	}
+
+	// Log sequence number of the encoded page, 0 when it has none.
+	public static long lsn(ByteBuffer buf)
+	{
+		int base = buf.position();
+		if(isLegacy(buf) || headerSize(buf, base) == V1_HEADER_SIZE)
+		{
+			return 0;
+		}
+		return buf.getLong(base + 10);
+	}
+
+	public static Page decode(ByteBuffer buf) throws IOException
+	{
+		if(isLegacy(buf))
+		{
+			return decodeLegacy(buf);
+		}
+		int base = buf.position();
+		int n = buf.getInt(base + 6);
+		int offsets = offsetsStart(buf, base);
+		boolean stamped = hasFlag(buf, base, STAMPED);
+		ColumnType[] types = types(buf, base);
+		ArrayList<String[]> records = new ArrayList<String[]>(Math.max(n, DBApp.dataPageSize));
+		long[] stamps = stamped ? new long[Math.max(n, DBApp.dataPageSize)] : null;
+		if(hasFlag(buf, base, COLUMNAR))
+		{
+			records.addAll(selectColumnar(buf, base, new byte[0][], Long.MAX_VALUE, null, types));
+			for(int i = 0; stamped && i < n; i++)
+			{
+				stamps[i] = buf.getLong(stampsStart(buf, base) + 8 * i);
+			}
+		}
+		else
+		{
+			for(int i = 0; i < n; i++)
+			{
+				records.add(decodeRecord(buf, base, offsets, stamped, types, i));
+				if(stamped)
+				{
+					stamps[i] = commitTs(buf, base, offsets, true, i);
+				}
+			}
+		}
+		Page p = new Page(records, stamps);
+		p.setLsn(lsn(buf));
+		p.setTypes(types);
+		return p;
+	}
+
+	public static ArrayList<String []> select(ByteBuffer buf, String[] cond) throws IOException
+	{
+		return select(buf, cond, Long.MAX_VALUE);
+	}
+
+	public static ArrayList<String []> select(ByteBuffer buf, String[] cond, long snapshot) throws IOException
+	{
+		return select(buf, cond, snapshot, null);
+	}
+
+	// Evaluates the condition vector on the encoded page, comparing the encoded
+	// bytes in place (UTF-8, or the binary form of typed values) and decoding
+	// only the records that match and that were committed at or before the
+	// snapshot. columns lists the values returned of every record, all of them
+	// when null.
+	public static ArrayList<String []> select(ByteBuffer buf, String[] cond, long snapshot, int[] columns) throws IOException
+	{
+		if(isLegacy(buf))
+		{
+			return decodeLegacy(buf).select(cond, snapshot, columns);
+		}
+		int base = buf.position();
+		int n = buf.getInt(base + 6);
+		int offsets = offsetsStart(buf, base);
+		boolean stamped = hasFlag(buf, base, STAMPED);
+		ColumnType[] types = types(buf, base);
+		ArrayList<String []> res = new ArrayList<String []>();
+		byte[][] encoded = new byte[cond.length][];
+		for(int j = 0; j < cond.length; j++)
+		{
+			if(cond[j] != null)
+			{
+				if(types == null)
+				{
+					encoded[j] = cond[j].getBytes(StandardCharsets.UTF_8);
+				}
+				else if(j < types.length && isCanonical(types[j], cond[j]))
+				{
+					encoded[j] = types[j].toBytes(cond[j]);
+				}
+				else
+				{
+					// stored values are canonical, no record can match it
+					return res;
+				}
+			}
+		}
+		if(hasFlag(buf, base, COLUMNAR))
+		{
+			return selectColumnar(buf, base, encoded, snapshot, columns, types);
+		}
+		for(int i = 0; i < n; i++)
+		{
+			if(commitTs(buf, base, offsets, stamped, i) > snapshot)
+			{
+				continue;
+			}
+			int pos = recordStart(buf, base, offsets, stamped, i);
+			int count = buf.getShort(pos);
+			pos += 2;
+			int nulls = pos;
+			if(types != null)
+			{
+				pos += (count + 7) / 8;
+			}
+			boolean flag = true;
+			for(int j = 0; j < count && j < encoded.length; j++)
+			{
+				int len;
+				if(types == null)
+				{
+					len = buf.getInt(pos);
+					pos += 4;
+				}
+				else if((buf.get(nulls + (j >> 3)) & (1 << (j & 7))) != 0)
+				{
+					len = -1;
+				}
+				else
+				{
+					len = types[j].sizeAt(buf, pos);
+				}
+				if(encoded[j] != null && !matches(buf, pos, len, encoded[j]))
+				{
+					flag = false;
+					break;
+				}
+				pos += Math.max(len, 0);
+			}
+			if(flag)
+			{
+				res.add(Page.project(decodeRecord(buf, base, offsets, stamped, types, i), columns));
+			}
+		}
+		return res;
+	}
+
+	// Position of the commit timestamps of a columnar page.
+	private static int stampsStart(ByteBuffer buf, int base)
+	{
+		int pos = base + offsetsStart(buf, base);
+		return pos + 2 + 4 * buf.getShort(pos);
+	}
+
+	// Narrows the selection vector of the records visible to the snapshot
+	// with one condition column at a time, then decodes the requested columns
+	// of the records left.
+	private static ArrayList<String []> selectColumnar(ByteBuffer buf, int base, byte[][] encoded, long snapshot, int[] columns, ColumnType[] types)
+	{
+		int n = buf.getInt(base + 6);
+		int vectors = base + offsetsStart(buf, base);
+		int count = buf.getShort(vectors);
+		boolean stamped = hasFlag(buf, base, STAMPED);
+		int stamps = stampsStart(buf, base);
+		int[] selection = new int[n];
+		int size = 0;
+		for(int i = 0; i < n; i++)
+		{
+			if(!stamped || buf.getLong(stamps + 8 * i) <= snapshot)
+			{
+				selection[size++] = i;
+			}
+		}
+		for(int j = 0; j < encoded.length && j < count && size > 0; j++)
+		{
+			if(encoded[j] != null)
+			{
+				size = column(buf, base, vectors, j, n, types).filter(selection, size, encoded[j]);
+			}
+		}
+		int width = columns == null ? count : columns.length;
+		String[][] records = new String[size][width];
+		for(int k = 0; k < width && size > 0; k++)
+		{
+			int j = columns == null ? k : columns[k];
+			if(j >= count)
+			{
+				continue;
+			}
+			Column c = column(buf, base, vectors, j, n, types);
+			for(int r = 0; r < size; r++)
+			{
+				records[r][k] = c.get(selection[r]);
+			}
+		}
+		ArrayList<String []> res = new ArrayList<String []>(size);
+		for(String[] record : records)
+		{
+			res.add(record);
+		}
+		return res;
+	}
+
+	private static Column column(ByteBuffer buf, int base, int vectors, int j, int n, ColumnType[] types)
+	{
+		return new Column(buf, base + buf.getInt(vectors + 2 + 4 * j), n, types == null ? null : types[j]);
+	}
+
+	/**
+	 * Reader of one column vector. Values of a plain vector are reached by
+	 * walking it, so records must be asked for in increasing order.
+	 */
+	private static class Column
+	{
+		private final ByteBuffer buf;
+		private final ColumnType type;
+		private final int nulls;
+		private final boolean dictionary;
+		// dictionary: start of every entry, entries decoded so far, codes
+		private int[] entries;
+		private String[] decoded;
+		private int width;
+		private int codes;
+		// plain: record the walk has reached and the position of its value
+		private int row;
+		private int pos;
+
+		Column(ByteBuffer buf, int start, int n, ColumnType type)
+		{
+			this.buf = buf;
+			this.type = type;
+			this.dictionary = buf.get(start) == DICTIONARY;
+			this.nulls = start + 1;
+			int pos = nulls + (n + 7) / 8;
+			if(dictionary)
+			{
+				entries = new int[buf.getInt(pos)];
+				decoded = new String[entries.length];
+				pos += 4;
+				for(int e = 0; e < entries.length; e++)
+				{
+					entries[e] = pos;
+					pos += size(pos);
+				}
+				width = buf.get(pos);
+				codes = pos + 1;
+			}
+			this.pos = pos;
+		}
+
+		private boolean isNull(int i)
+		{
+			return (buf.get(nulls + (i >> 3)) & (1 << (i & 7))) != 0;
+		}
+
+		// Bytes taken by the stored value at pos.
+		private int size(int pos)
+		{
+			return type == null ? 4 + buf.getInt(pos) : type.sizeAt(buf, pos);
+		}
+
+		private int code(int i)
+		{
+			return width == 1 ? buf.get(codes + i) & 0xff : buf.getShort(codes + 2 * i) & 0xffff;
+		}
+
+		// Position of the value of non null record i of a plain vector.
+		private int valueAt(int i)
+		{
+			for(; row < i; row++)
+			{
+				if(!isNull(row))
+				{
+					pos += size(pos);
+				}
+			}
+			return pos;
+		}
+
+		private boolean matches(int pos, byte[] value)
+		{
+			if(type == null)
+			{
+				return PageCodec.matches(buf, pos + 4, buf.getInt(pos), value);
+			}
+			return PageCodec.matches(buf, pos, type.sizeAt(buf, pos), value);
+		}
+
+		// Keeps the selected records whose value equals the encoded value,
+		// returning their number. A dictionary vector compares codes.
+		int filter(int[] selection, int size, byte[] value)
+		{
+			int code = -1;
+			for(int e = 0; dictionary && e < entries.length && code < 0; e++)
+			{
+				if(matches(entries[e], value))
+				{
+					code = e;
+				}
+			}
+			if(dictionary && code < 0)
+			{
+				return 0;
+			}
+			int kept = 0;
+			for(int r = 0; r < size; r++)
+			{
+				int i = selection[r];
+				if(!isNull(i) && (dictionary ? code(i) == code : matches(valueAt(i), value)))
+				{
+					selection[kept++] = i;
+				}
+			}
+			return kept;
+		}
+
+		String get(int i)
+		{
+			if(isNull(i))
+			{
+				return null;
+			}
+			if(!dictionary)
+			{
+				return read(valueAt(i));
+			}
+			int code = code(i);
+			if(decoded[code] == null)
+			{
+				decoded[code] = read(entries[code]);
+			}
+			return decoded[code];
+		}
+
+		private String read(int pos)
+		{
+			return type == null ? decodeString(buf, pos + 4, buf.getInt(pos)) : type.read(buf, pos);
+		}
+	}
+
+	private static boolean matches(ByteBuffer buf, int pos, int len, byte[] value)
+	{
+		if(len != value.length)
+		{
+			return false;
+		}
+		for(int k = 0; k < len; k++)
+		{
+			if(buf.get(pos + k) != value[k])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String[] decodeRecord(ByteBuffer buf, int base, int offsets, boolean stamped, ColumnType[] types, int i)
+	{
+		int pos = recordStart(buf, base, offsets, stamped, i);
+		int count = buf.getShort(pos);
+		pos += 2;
+		String[] record = new String[count];
+		if(types != null)
+		{
+			int nulls = pos;
+			pos += (count + 7) / 8;
+			for(int j = 0; j < count; j++)
+			{
+				if((buf.get(nulls + (j >> 3)) & (1 << (j & 7))) == 0)
+				{
+					record[j] = types[j].read(buf, pos);
+					pos += types[j].sizeAt(buf, pos);
+				}
+			}
+			return record;
+		}
+		for(int j = 0; j < count; j++)
+		{
+			int len = buf.getInt(pos);
+			pos += 4;
+			if(len >= 0)
+			{
+				record[j] = decodeString(buf, pos, len);
+				pos += len;
+			}
+		}
+		return record;
+	}
+
+	static String decodeString(ByteBuffer buf, int pos, int len)
+	{
+		if(buf.hasArray())
+		{
+			return new String(buf.array(), buf.arrayOffset() + pos, len, StandardCharsets.UTF_8);
+		}
+		byte[] b = new byte[len];
+		for(int k = 0; k < len; k++)
+		{
+			b[k] = buf.get(pos + k);
+		}
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+	private static Page decodeLegacy(ByteBuffer buf) throws IOException
+	{
+		byte[] data = new byte[buf.remaining()];
+		buf.duplicate().get(data);
+		try
+		{
+			ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data));
+			Page res = (Page)ois.readObject();
+			ois.close();
+			return res;
+		}
+		catch (ClassNotFoundException e)
+		{
+			throw new IOException(e);
+		}
+	}
+}
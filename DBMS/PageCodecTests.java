@@ -0,0 +1,65 @@
+package DBMS;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import java.util.*;
+import org.junit.Test;
+public class PageCodecTests
+{
+
+	@Test(timeout = 1000000)
+	public void testRoundTrip() throws Exception
+	{
+		ArrayList<String[]> records = new ArrayList<String[]>();
+		records.add(new String[]{"1", "café", null, ""});
+		records.add(new String[]{"2", "a,b]", "x", "y"});
+		Page p = new Page(records);
+		Page q = PageCodec.decode(ByteBuffer.wrap(PageCodec.encode(p)));
+		assertEquals("Decoding should keep every record.", 2, q.select().size());
+		assertTrue("Decoding should keep every value.", Arrays.equals(p.select().get(0), q.select().get(0)));
+		assertTrue("Decoding should keep every value.", Arrays.equals(p.select().get(1), q.select().get(1)));
+	}
+
+	@Test(timeout = 1000000)
+	public void testSelectOnEncodedPage() throws Exception
+	{
+		ArrayList<String[]> records = new ArrayList<String[]>();
+		for(int i=0;i<10;i++)
+		{
+			records.add(new String[]{""+i, "m"+(i%3)});
+		}
+		Page p = new Page(records);
+		ByteBuffer buf = ByteBuffer.wrap(PageCodec.encode(p));
+		ArrayList<String[]> res = PageCodec.select(buf, new String[]{null, "m1"});
+		assertEquals("Selecting on the encoded page should match the decoded select.", p.select(new String[]{null, "m1"}).size(), res.size());
+		assertEquals("Selecting on the encoded page should decode the matching records.", "4", res.get(1)[0]);
+	}
+
+	@Test(timeout = 1000000)
+	public void testLegacyPagesAreMigrated() throws Exception
+	{
+		FileManager.reset();
+		String[] cols = {"a","b"};
+		DBApp.createTable("pc1", cols);
+		Page legacy = new Page();
+		legacy.insert(new String[]{"a0", "b0"});
+		legacy.insert(new String[]{"a1", "b1"});
+		File tableDir = new File(FileManager.directory.getAbsolutePath()+ File.separator + "pc1");
+		File page0 = new File(tableDir, "0.db");
+		ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(page0));
+		oos.writeObject(legacy);
+		oos.close();
+		long legacySize = page0.length();
+		assertEquals("One legacy page should be migrated.", 1, FileManager.migrateTable("pc1"));
+		assertTrue("The migrated page should be in the binary format.", !PageCodec.isLegacy(ByteBuffer.wrap(Files.readAllBytes(page0.toPath()))));
+		assertTrue("The binary page should be smaller than the serialized one.", page0.length() < legacySize);
+		Page p = FileManager.loadTablePage("pc1", 0);
+		assertEquals("The migrated page should keep its records.", "b1", p.select().get(1)[1]);
+		assertEquals("Migrating twice should not rewrite anything.", 0, FileManager.migrateTable("pc1"));
+		FileManager.reset();
+	}
+}
@@ -0,0 +1,53 @@
+package DBMS;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+public class ParallelScanTests
+{
+
+	@Test(timeout = 1000000)
+	public void testParallelSelectMatchesSequential() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 2;
+		boolean oldParallel = Table.parallelScan;
+		ForkJoinPool oldPool = Table.scanPool;
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try
+		{
+			String[] cols = {"id","major","semester"};
+			DBApp.createTable("ps1", cols);
+			ArrayList<String[]> records = new ArrayList<String[]>();
+			for(int i=0;i<101;i++)
+			{
+				records.add(new String[]{""+i, "m"+(i%5), "s"+(i%3)});
+			}
+			DBApp.insertBatch("ps1", records);
+			String[] condCols = {"major","semester"};
+			String[] condVals = {"m2","s1"};
+			Table.parallelScan = false;
+			ArrayList<String[]> sequential = DBApp.select("ps1", condCols, condVals);
+			String sequentialTrace = DBApp.getLastTrace("ps1");
+			Table.parallelScan = true;
+			Table.scanPool = pool;
+			ArrayList<String[]> parallel = DBApp.select("ps1", condCols, condVals);
+			String parallelTrace = DBApp.getLastTrace("ps1");
+			assertEquals("A parallel scan should find every match.", sequential.size(), parallel.size());
+			for(int i=0;i<sequential.size();i++)
+			{
+				assertTrue("A parallel scan should keep the page order.", Arrays.equals(sequential.get(i), parallel.get(i)));
+			}
+			String prefix = sequentialTrace.substring(0, sequentialTrace.indexOf(", execution time"));
+			assertTrue("A parallel scan should report the same records per page.", parallelTrace.startsWith(prefix));
+		}
+		finally
+		{
+			Table.parallelScan = oldParallel;
+			Table.scanPool = oldPool;
+			pool.shutdown();
+		}
+		FileManager.reset();
+	}
+}
@@ -0,0 +1,232 @@
+package DBMS;
+
+import java.util.Arrays;
+
+/**
+ * Comparison of one column against constants, used by the predicate
+ * variants of select and selectIndex. Values are compared in the order of
+ * the column type; columns of untyped tables compare as strings. A null value
+ * never matches.
+ *
+ * Predicates are built by column name and bound to a table before use, which
+ * resolves the column position and brings the constants to canonical form.
+ */
+public class Predicate
+{
+	public enum Op { EQ, LT, LE, GT, GE, BETWEEN, IN }
+
+	private final String column;
+	private final Op op;
+	private final String[] values;
+	// set once bound to a table
+	private final int columnIndex;
+	private final ColumnType type;
+
+	private Predicate(String column, Op op, String[] values, int columnIndex, ColumnType type)
+	{
+		this.column = column;
+		this.op = op;
+		this.values = values;
+		this.columnIndex = columnIndex;
+		this.type = type;
+	}
+
+	private Predicate(String column, Op op, String... values)
+	{
+		this(column, op, values, -1, null);
+	}
+
+	public static Predicate eq(String column, String value)
+	{
+		return new Predicate(column, Op.EQ, value);
+	}
+
+	public static Predicate lt(String column, String value)
+	{
+		return new Predicate(column, Op.LT, value);
+	}
+
+	public static Predicate le(String column, String value)
+	{
+		return new Predicate(column, Op.LE, value);
+	}
+
+	public static Predicate gt(String column, String value)
+	{
+		return new Predicate(column, Op.GT, value);
+	}
+
+	public static Predicate ge(String column, String value)
+	{
+		return new Predicate(column, Op.GE, value);
+	}
+
+	// Both bounds are inclusive.
+	public static Predicate between(String column, String low, String high)
+	{
+		return new Predicate(column, Op.BETWEEN, low, high);
+	}
+
+	public static Predicate in(String column, String... values)
+	{
+		return new Predicate(column, Op.IN, values.clone());
+	}
+
+	public String getColumn()
+	{
+		return column;
+	}
+
+	public Op getOp()
+	{
+		return op;
+	}
+
+	public String[] getValues()
+	{
+		return values.clone();
+	}
+
+	int getColumnIndex()
+	{
+		return columnIndex;
+	}
+
+	ColumnType getType()
+	{
+		return type;
+	}
+
+	// Resolves the column against the table. Throws IllegalArgumentException
+	// for an unknown column or a constant that is not of the column type.
+	Predicate bind(Table t)
+	{
+		return bind(t, true);
+	}
+
+	// Lenient binding keeps null constants and constants that are not of the
+	// column type as they are, so that they match no value, the way condition
+	// selects treat them.
+	Predicate bind(Table t, boolean strict)
+	{
+		int index = Arrays.asList(t.getColumnNames()).indexOf(column);
+		if(index < 0)
+		{
+			throw new IllegalArgumentException("Unknown column " + column);
+		}
+		ColumnType columnType = t.getColumnTypes() == null ? null : t.getColumnTypes()[index];
+		String[] bound = values.clone();
+		for(int i = 0; i < bound.length; i++)
+		{
+			if(bound[i] == null)
+			{
+				if(!strict)
+				{
+					continue;
+				}
+				throw new IllegalArgumentException("Predicate " + this + " compares with null");
+			}
+			if(columnType != null)
+			{
+				bound[i] = strict ? columnType.canonical(bound[i]) : t.conformValue(column, bound[i]);
+			}
+		}
+		return new Predicate(column, op, bound, index, columnType);
+	}
+
+	static Predicate[] bindAll(Table t, Predicate[] predicates)
+	{
+		Predicate[] res = new Predicate[predicates.length];
+		for(int i = 0; i < res.length; i++)
+		{
+			res[i] = predicates[i].bind(t);
+		}
+		return res;
+	}
+
+	// True when the record satisfies every bound predicate.
+	static boolean testAll(Predicate[] bound, String[] record)
+	{
+		for(Predicate p : bound)
+		{
+			if(!p.test(record[p.columnIndex]))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	int compare(String a, String b)
+	{
+		return type == null ? a.compareTo(b) : type.compare(a, b);
+	}
+
+	public boolean test(String value)
+	{
+		if(value == null)
+		{
+			return false;
+		}
+		switch(op)
+		{
+			case EQ: return value.equals(values[0]);
+			case LT: return compare(value, values[0]) < 0;
+			case LE: return compare(value, values[0]) <= 0;
+			case GT: return compare(value, values[0]) > 0;
+			case GE: return compare(value, values[0]) >= 0;
+			case BETWEEN: return compare(value, values[0]) >= 0 && compare(value, values[1]) <= 0;
+			default:
+				for(String v : values)
+				{
+					if(value.equals(v))
+					{
+						return true;
+					}
+				}
+				return false;
+		}
+	}
+
+	// False when no value between min and max (inclusive) can satisfy the
+	// predicate, so a page with that range of values can be skipped.
+	boolean mayMatch(String min, String max)
+	{
+		if(min == null || max == null)
+		{
+			return false;
+		}
+		switch(op)
+		{
+			case LT: return compare(min, values[0]) < 0;
+			case LE: return compare(min, values[0]) <= 0;
+			case GT: return compare(max, values[0]) > 0;
+			case GE: return compare(max, values[0]) >= 0;
+			case BETWEEN: return compare(max, values[0]) >= 0 && compare(min, values[1]) <= 0;
+			default:
+				for(String v : values)
+				{
+					if(v != null && compare(min, v) <= 0 && compare(v, max) <= 0)
+					{
+						return true;
+					}
+				}
+				return false;
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		switch(op)
+		{
+			case EQ: return column + "=" + values[0];
+			case LT: return column + "<" + values[0];
+			case LE: return column + "<=" + values[0];
+			case GT: return column + ">" + values[0];
+			case GE: return column + ">=" + values[0];
+			case BETWEEN: return column + " BETWEEN " + values[0] + " AND " + values[1];
+			default: return column + " IN " + Arrays.toString(values);
+		}
+	}
+}
@@ -0,0 +1,189 @@
+package DBMS;
+
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-ahead for sequential page scans. FileManager reports every page load;
+ * once a table is read in increasing page order for minRun pages, the next
+ * window pages are read on background threads and placed in the buffer pool,
+ * so the scan finds them cached instead of blocking on the read.
+ *
+ * A prefetched image is only cached if no page was written while it was
+ * being read and the page is not cached already, so it never replaces a
+ * newer version of the page.
+ */
+public class Prefetcher
+{
+	// pages read ahead of a sequential scan, 0 disables prefetching
+	static int window = 4;
+	// consecutive page loads that make an access pattern sequential
+	static int minRun = 2;
+
+	private static final ExecutorService readers = Executors.newFixedThreadPool(2, r -> {
+		Thread t = new Thread(r, "page-prefetcher");
+		t.setDaemon(true);
+		return t;
+	});
+	// per table: last page loaded, length of the sequential run, last page requested
+	private static final HashMap<String, int[]> streams = new HashMap<String, int[]>();
+	// bumped by every page write and by reset
+	private static final AtomicLong generation = new AtomicLong();
+	// bumped by reset, reads scheduled before it are dropped; guarded by streams
+	private static int epoch;
+	private static int inFlight;
+	private static final AtomicLong issued = new AtomicLong();
+	private static final AtomicLong loaded = new AtomicLong();
+	private static final AtomicLong discarded = new AtomicLong();
+
+	// Called by FileManager for every page served to a caller.
+	static void pageLoaded(String tableName, int pageNumber)
+	{
+		if(window <= 0)
+		{
+			return;
+		}
+		int from;
+		int to;
+		int scheduledEpoch;
+		synchronized(streams)
+		{
+			int[] s = streams.get(tableName);
+			if(s == null)
+			{
+				s = new int[]{-2, 0, -1};
+				streams.put(tableName, s);
+			}
+			s[1] = pageNumber == s[0] + 1 ? s[1] + 1 : 1;
+			s[0] = pageNumber;
+			if(s[1] < minRun)
+			{
+				s[2] = pageNumber;
+				return;
+			}
+			from = Math.max(pageNumber + 1, s[2] + 1);
+			to = pageNumber + window;
+			if(from > to)
+			{
+				return;
+			}
+			s[2] = to;
+			inFlight += to - from + 1;
+			scheduledEpoch = epoch;
+		}
+		for(int i = from; i <= to; i++)
+		{
+			final int page = i;
+			issued.incrementAndGet();
+			readers.execute(() -> {
+				try
+				{
+					prefetch(tableName, page, scheduledEpoch);
+				}
+				finally
+				{
+					synchronized(streams)
+					{
+						inFlight--;
+						streams.notifyAll();
+					}
+				}
+			});
+		}
+	}
+
+	private static void prefetch(String tableName, int pageNumber, int scheduledEpoch)
+	{
+		long gen = generation.get();
+		synchronized(streams)
+		{
+			if(scheduledEpoch != epoch)
+			{
+				discarded.incrementAndGet();
+				return;
+			}
+		}
+		if(BufferPool.contains(tableName, pageNumber) || !FileManager.pageExists(tableName, pageNumber))
+		{
+			discarded.incrementAndGet();
+			return;
+		}
+		Page p = FileManager.readTablePage(tableName, pageNumber);
+		if(p == null || generation.get() != gen || !BufferPool.putPrefetched(tableName, pageNumber, p))
+		{
+			discarded.incrementAndGet();
+			return;
+		}
+		loaded.incrementAndGet();
+	}
+
+	// Called before a page is written, so reads in flight are not cached.
+	static void pageWritten()
+	{
+		generation.incrementAndGet();
+	}
+
+	// Drops every sequential stream and waits for the reads in flight, so no
+	// read touches the table files once reset returns.
+	static void reset()
+	{
+		generation.incrementAndGet();
+		synchronized(streams)
+		{
+			epoch++;
+			streams.clear();
+			awaitReads();
+		}
+	}
+
+	// Waits until every scheduled read has finished.
+	static void awaitReads()
+	{
+		synchronized(streams)
+		{
+			while(inFlight > 0)
+			{
+				try
+				{
+					streams.wait();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	public static long getIssued()
+	{
+		return issued.get();
+	}
+
+	public static long getLoaded()
+	{
+		return loaded.get();
+	}
+
+	public static long getDiscarded()
+	{
+		return discarded.get();
+	}
+
+	public static void resetStats()
+	{
+		issued.set(0);
+		loaded.set(0);
+		discarded.set(0);
+	}
+
+	public static String getStats()
+	{
+		return "Prefetcher window:" + window + ", issued:" + issued.get() + ", loaded:" + loaded.get()
+				+ ", discarded:" + discarded.get() + ", used:" + BufferPool.getPrefetchHits()
+				+ ", unused:" + BufferPool.getPrefetchUnused();
+	}
+}
@@ -0,0 +1,72 @@
+package DBMS;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import java.util.*;
+import org.junit.Test;
+public class PrefetcherTests
+{
+
+	@Test(timeout = 1000000)
+	public void testSequentialScanIsReadAhead() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 2;
+		int oldWindow = Prefetcher.window;
+		Prefetcher.window = 4;
+		try
+		{
+			String[] cols = {"id","major"};
+			DBApp.createTable("pf1", cols);
+			ArrayList<String[]> records = new ArrayList<String[]>();
+			for(int i=0;i<20;i++)
+			{
+				records.add(new String[]{""+i, "m"+(i%3)});
+			}
+			DBApp.insertBatch("pf1", records);
+			BufferPool.clear();
+			BufferPool.resetStats();
+			Prefetcher.resetStats();
+			FileManager.loadTablePage("pf1", 0);
+			FileManager.loadTablePage("pf1", 1);
+			Prefetcher.awaitReads();
+			for(int i=2;i<6;i++)
+			{
+				assertTrue("A sequential scan should read the next pages ahead.", BufferPool.contains("pf1", i));
+			}
+			assertTrue("Pages past the window should not be read.", !BufferPool.contains("pf1", 6));
+			assertEquals("Every page should still be returned.", 20, DBApp.select("pf1").size());
+			Prefetcher.awaitReads();
+			assertTrue("Prefetched pages should be used by the scan.", BufferPool.getPrefetchHits() >= 4);
+			assertTrue("Reads should be counted.", Prefetcher.getLoaded() >= 4 && Prefetcher.getIssued() >= Prefetcher.getLoaded());
+		}
+		finally
+		{
+			Prefetcher.window = oldWindow;
+		}
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testRandomAccessIsNotReadAhead() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 2;
+		String[] cols = {"id","major"};
+		DBApp.createTable("pf2", cols);
+		ArrayList<String[]> records = new ArrayList<String[]>();
+		for(int i=0;i<20;i++)
+		{
+			records.add(new String[]{""+i, "m"+(i%3)});
+		}
+		DBApp.insertBatch("pf2", records);
+		BufferPool.clear();
+		Prefetcher.resetStats();
+		FileManager.loadTablePage("pf2", 7);
+		FileManager.loadTablePage("pf2", 3);
+		FileManager.loadTablePage("pf2", 9);
+		Prefetcher.awaitReads();
+		assertEquals("Random page loads should not trigger reads.", 0, Prefetcher.getIssued());
+		assertEquals("Only the requested pages should be cached.", 3, BufferPool.size());
+		FileManager.reset();
+	}
+}
@@ -0,0 +1,197 @@
+package DBMS;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Access plan QueryPlanner chose for an index select, as returned by
+ * DBApp.explain. The index steps are intersected in order, most selective
+ * first, and the records they leave are fetched. Predicates whose index would
+ * cost more reads than it saves are skipped and, like the predicates on
+ * columns without an index, filter the fetched records. A scan plan reads the
+ * table instead, skipping the pages excluded by the zone map.
+ *
+ * Costs count page and index block reads; row estimates assume the
+ * predicates are independent.
+ */
+public class QueryPlan
+{
+	public enum Access { INDEX, SCAN }
+	public enum Kind { BITMAP, HASH, BTREE }
+
+	/**
+	 * Lookup of one predicate in the index of its column.
+	 */
+	public static class Step
+	{
+		private final Predicate predicate;
+		private final Kind kind;
+		private final long estimatedRows;
+		private final double cost;
+		// positions already read while planning, null until read
+		CompressedBitmap positions;
+
+		Step(Predicate predicate, Kind kind, long estimatedRows, double cost)
+		{
+			this.predicate = predicate;
+			this.kind = kind;
+			this.estimatedRows = estimatedRows;
+			this.cost = cost;
+		}
+
+		public Predicate getPredicate()
+		{
+			return predicate;
+		}
+
+		public Kind getKind()
+		{
+			return kind;
+		}
+
+		public long getEstimatedRows()
+		{
+			return estimatedRows;
+		}
+
+		public double getCost()
+		{
+			return cost;
+		}
+
+		@Override
+		public String toString()
+		{
+			return kind + " " + predicate + ", estimated rows: " + estimatedRows
+					+ ", cost: " + String.format("%.1f", cost);
+		}
+	}
+
+	private final Access access;
+	private final List<Step> steps;
+	private final List<Step> skipped;
+	private final List<Predicate> filters;
+	private final double cost;
+	private final double scanCost;
+	private final long estimatedRows;
+	private long actualRows = -1;
+
+	QueryPlan(Access access, List<Step> steps, List<Step> skipped, List<Predicate> filters,
+			double cost, double scanCost, long estimatedRows)
+	{
+		this.access = access;
+		this.steps = steps;
+		this.skipped = skipped;
+		this.filters = filters;
+		this.cost = cost;
+		this.scanCost = scanCost;
+		this.estimatedRows = estimatedRows;
+	}
+
+	public Access getAccess()
+	{
+		return access;
+	}
+
+	// Index lookups of an index plan, in intersection order; empty for a scan.
+	public List<Step> getSteps()
+	{
+		return steps;
+	}
+
+	// Predicates with an index the plan does not use.
+	public List<Step> getSkipped()
+	{
+		return skipped;
+	}
+
+	// Predicates on columns without a usable index.
+	public List<Predicate> getFilters()
+	{
+		return filters;
+	}
+
+	// Columns of the predicates with a usable index, used or not, in
+	// predicate order.
+	public List<String> getIndexedColumns()
+	{
+		ArrayList<String> res = new ArrayList<String>();
+		for(Predicate p : getIndexedPredicates())
+		{
+			res.add(p.getColumn());
+		}
+		return res;
+	}
+
+	public List<String> getNonIndexedColumns()
+	{
+		ArrayList<String> res = new ArrayList<String>();
+		for(Predicate p : filters)
+		{
+			res.add(p.getColumn());
+		}
+		return res;
+	}
+
+	List<Predicate> getIndexedPredicates()
+	{
+		ArrayList<Predicate> res = new ArrayList<Predicate>();
+		for(Step s : steps)
+		{
+			res.add(s.predicate);
+		}
+		for(Step s : skipped)
+		{
+			res.add(s.predicate);
+		}
+		return res;
+	}
+
+	public double getCost()
+	{
+		return cost;
+	}
+
+	public double getScanCost()
+	{
+		return scanCost;
+	}
+
+	public long getEstimatedRows()
+	{
+		return estimatedRows;
+	}
+
+	// Rows the select returned, -1 until the plan ran.
+	public long getActualRows()
+	{
+		return actualRows;
+	}
+
+	void setActualRows(long actualRows)
+	{
+		this.actualRows = actualRows;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder res = new StringBuilder();
+		res.append(access).append(" cost: ").append(String.format("%.1f", cost))
+				.append(", scan cost: ").append(String.format("%.1f", scanCost)).append("\n");
+		for(int i = 0; i < steps.size(); i++)
+		{
+			res.append("  ").append(i + 1).append(". ").append(steps.get(i)).append("\n");
+		}
+		for(Step s : skipped)
+		{
+			res.append("  skipped ").append(s).append("\n");
+		}
+		if(!filters.isEmpty())
+		{
+			res.append("  filter ").append(filters).append("\n");
+		}
+		res.append("Estimated rows: ").append(estimatedRows).append(", actual rows: ").append(actualRows);
+		return res.toString();
+	}
+}
@@ -0,0 +1,312 @@
+package DBMS;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Cost-based choice of the access path of an index select. Every predicate
+ * on a column with a usable index becomes a candidate lookup: equalities
+ * prefer a hash index, ranges a B+tree, and bitmap indexes answer both.
+ * Candidates are ordered by their estimated rows and taken while the pages
+ * they save outweigh their own reads; the plan falls back to a scan when
+ * reading every page is no dearer.
+ *
+ * Rows of a bitmap lookup come from the IndexStats of the column. Hash and
+ * B+tree lookups of single values are cheap enough to run while planning, so
+ * their counts are exact; B+tree ranges and the predicates without an index
+ * are estimated from the ColumnStats of their column, or from fixed
+ * selectivities when it has none. The pages a lookup fetches follow
+ * Cardenas' formula.
+ */
+public class QueryPlanner
+{
+	// selectivities assumed for predicates without statistics
+	static final double EQ_SELECTIVITY = 0.1;
+	static final double RANGE_SELECTIVITY = 1.0 / 3;
+	// block reads of one lookup: a bitmap index file, a directory slot and a
+	// bucket, a descent of a B+tree
+	static final double BITMAP_COST = 1;
+	static final double HASH_COST = 2;
+	static final double BTREE_COST = 3;
+	// B+tree entries per leaf read by a range scan
+	static final int BTREE_LEAF_ENTRIES = 200;
+
+	static QueryPlan plan(String tableName, Table t, Predicate[] bound)
+	{
+		long rows = t.getRecordsCount();
+		int pages = t.getPageCount();
+		ArrayList<QueryPlan.Step> candidates = new ArrayList<QueryPlan.Step>();
+		ArrayList<Predicate> filters = new ArrayList<Predicate>();
+		for(Predicate p : bound)
+		{
+			QueryPlan.Kind kind = kind(tableName, p);
+			if(kind == null)
+			{
+				filters.add(p);
+			}
+			else
+			{
+				candidates.add(estimate(tableName, t, p, kind));
+			}
+		}
+		candidates.sort(Comparator.comparingLong(QueryPlan.Step::getEstimatedRows));
+
+		ArrayList<QueryPlan.Step> steps = new ArrayList<QueryPlan.Step>();
+		ArrayList<QueryPlan.Step> skipped = new ArrayList<QueryPlan.Step>();
+		// rows fetched through the lookups taken, and rows of the result
+		double fetched = rows;
+		double estimate = rows;
+		double cost = 0;
+		for(QueryPlan.Step s : candidates)
+		{
+			double selectivity = selectivity(s.getEstimatedRows(), rows);
+			double next = fetched * selectivity;
+			if(steps.isEmpty() || fetchCost(fetched, pages) - fetchCost(next, pages) > s.getCost())
+			{
+				steps.add(s);
+				cost += s.getCost();
+				fetched = next;
+			}
+			else
+			{
+				skipped.add(s);
+			}
+			estimate *= selectivity;
+		}
+		for(Predicate p : filters)
+		{
+			estimate *= selectivity(t, p);
+		}
+		double indexCost = cost + fetchCost(fetched, pages);
+		if(steps.isEmpty() || indexCost >= pages)
+		{
+			skipped.addAll(0, steps);
+			skipped.sort(Comparator.comparingLong(QueryPlan.Step::getEstimatedRows));
+			return new QueryPlan(QueryPlan.Access.SCAN, new ArrayList<QueryPlan.Step>(), skipped, filters,
+					pages, pages, Math.round(estimate));
+		}
+		return new QueryPlan(QueryPlan.Access.INDEX, steps, skipped, filters,
+				indexCost, pages, Math.round(estimate));
+	}
+
+	private static double selectivity(long matching, long rows)
+	{
+		return rows == 0 ? 0 : Math.min(1, (double)matching / rows);
+	}
+
+	// Fraction of the rows satisfying the predicate, from the statistics of
+	// its column when the table has them.
+	static double selectivity(Table t, Predicate p)
+	{
+		ColumnStats stats = t.getColumnStats(p.getColumn());
+		return stats == null ? defaultSelectivity(p) : stats.selectivity(p);
+	}
+
+	static double defaultSelectivity(Predicate p)
+	{
+		switch(p.getOp())
+		{
+			case EQ: return EQ_SELECTIVITY;
+			case IN: return Math.min(1, EQ_SELECTIVITY * p.getValues().length);
+			default: return RANGE_SELECTIVITY;
+		}
+	}
+
+	// Expected pages holding the given number of rows spread over the table.
+	static double fetchCost(double rows, int pages)
+	{
+		if(pages == 0)
+		{
+			return 0;
+		}
+		return pages * (1 - Math.pow(1 - 1.0 / pages, rows));
+	}
+
+	// Index answering the predicate, null when its column has none usable.
+	static QueryPlan.Kind kind(String tableName, Predicate p)
+	{
+		String col = p.getColumn();
+		boolean equality = p.getOp() == Predicate.Op.EQ || p.getOp() == Predicate.Op.IN;
+		if(equality && FileManager.hashIndexExists(tableName, col))
+		{
+			return QueryPlan.Kind.HASH;
+		}
+		if(!equality && FileManager.btreeIndexExists(tableName, col))
+		{
+			return QueryPlan.Kind.BTREE;
+		}
+		if(FileManager.indexExists(tableName, col))
+		{
+			return QueryPlan.Kind.BITMAP;
+		}
+		if(FileManager.btreeIndexExists(tableName, col))
+		{
+			return QueryPlan.Kind.BTREE;
+		}
+		return null;
+	}
+
+	private static QueryPlan.Step estimate(String tableName, Table t, Predicate p, QueryPlan.Kind kind)
+	{
+		long rows = t.getRecordsCount();
+		boolean equality = p.getOp() == Predicate.Op.EQ || p.getOp() == Predicate.Op.IN;
+		int lookups = p.getOp() == Predicate.Op.IN ? p.getValues().length : 1;
+		if(kind == QueryPlan.Kind.BITMAP)
+		{
+			IndexStats stats = t.getIndexStats(p.getColumn());
+			long matching;
+			if(stats == null)
+			{
+				matching = Math.round(rows * selectivity(t, p));
+			}
+			else if(equality)
+			{
+				matching = 0;
+				for(String v : p.getValues())
+				{
+					matching += stats.count(v);
+				}
+			}
+			else
+			{
+				matching = 0;
+				for(String v : stats.values())
+				{
+					if(p.test(v))
+					{
+						matching += stats.count(v);
+					}
+				}
+			}
+			return new QueryPlan.Step(p, kind, matching, BITMAP_COST);
+		}
+		if(kind == QueryPlan.Kind.BTREE && !equality)
+		{
+			long matching = Math.round(rows * selectivity(t, p));
+			return new QueryPlan.Step(p, kind, matching, BTREE_COST + (double)matching / BTREE_LEAF_ENTRIES);
+		}
+		double cost = lookups * (kind == QueryPlan.Kind.HASH ? HASH_COST : BTREE_COST);
+		CompressedBitmap found = positions(tableName, t, new QueryPlan.Step(p, kind, 0, cost));
+		QueryPlan.Step s = new QueryPlan.Step(p, kind, found.cardinality(), cost);
+		s.positions = found;
+		return s;
+	}
+
+	// Positions of the records whose value satisfies the predicate of the
+	// lookup, read from its index.
+	static CompressedBitmap positions(String tableName, Table t, QueryPlan.Step s)
+	{
+		if(s.positions != null)
+		{
+			return s.positions;
+		}
+		Predicate p = s.getPredicate();
+		String col = p.getColumn();
+		switch(s.getKind())
+		{
+			case HASH:
+				CompressedBitmap res = new CompressedBitmap();
+				for(String v : p.getValues())
+				{
+					res = res.or(positionBitmap(FileManager.lookupHashIndex(tableName, col, v), t.getPageSize()));
+				}
+				return res;
+			case BTREE:
+				return btreeBitmap(tableName, t, p);
+			default:
+				return bitmap(FileManager.loadTableIndex(tableName, col), p);
+		}
+	}
+
+	// Positions from a bitmap index, a range by or-ing the bitmaps of the
+	// indexed values inside it.
+	static CompressedBitmap bitmap(BitmapIndex index, Predicate p)
+	{
+		if(p.getOp() == Predicate.Op.EQ)
+		{
+			return index.getBitmap(p.getValues()[0]);
+		}
+		CompressedBitmap res = new CompressedBitmap();
+		if(p.getOp() == Predicate.Op.IN)
+		{
+			for(String v : p.getValues())
+			{
+				res = res.or(index.getBitmap(v));
+			}
+			return res;
+		}
+		for(int code = 0; code < index.getSize(); code++)
+		{
+			if(p.test(index.getValue(code)))
+			{
+				res = res.or(index.getBitmap(code));
+			}
+		}
+		return res;
+	}
+
+	private static CompressedBitmap btreeBitmap(String tableName, Table t, Predicate p)
+	{
+		String col = p.getColumn();
+		ColumnType type = p.getType();
+		String[] v = p.getValues();
+		ArrayList<int[]> refs = new ArrayList<int[]>();
+		switch(p.getOp())
+		{
+			case LT: refs = FileManager.lookupBTreeIndex(tableName, col, type, null, false, v[0], false); break;
+			case LE: refs = FileManager.lookupBTreeIndex(tableName, col, type, null, false, v[0], true); break;
+			case GT: refs = FileManager.lookupBTreeIndex(tableName, col, type, v[0], false, null, false); break;
+			case GE: refs = FileManager.lookupBTreeIndex(tableName, col, type, v[0], true, null, false); break;
+			case BETWEEN: refs = FileManager.lookupBTreeIndex(tableName, col, type, v[0], true, v[1], true); break;
+			default:
+				for(String value : v)
+				{
+					ArrayList<int[]> found = value == null || !canonical(type, value) ? null
+							: FileManager.lookupBTreeIndex(tableName, col, type, value, true, value, true);
+					if(found != null)
+					{
+						refs.addAll(found);
+					}
+				}
+		}
+		return positionBitmap(refs, t.getPageSize());
+	}
+
+	// A value outside the column type matches no record and cannot be looked
+	// up in a typed B+tree.
+	private static boolean canonical(ColumnType type, String value)
+	{
+		if(type == null)
+		{
+			return true;
+		}
+		try
+		{
+			return type.canonical(value).equals(value);
+		}
+		catch(IllegalArgumentException e)
+		{
+			return false;
+		}
+	}
+
+	// Bitmap of the record positions of {page, slot} index entries of a table
+	// with pageSize records per page.
+	static CompressedBitmap positionBitmap(List<int[]> refs, int pageSize)
+	{
+		int[] positions = new int[refs == null ? 0 : refs.size()];
+		for(int i = 0; i < positions.length; i++)
+		{
+			positions[i] = refs.get(i)[0] * pageSize + refs.get(i)[1];
+		}
+		Arrays.sort(positions);
+		CompressedBitmap res = new CompressedBitmap();
+		for(int pos : positions)
+		{
+			res.append(pos);
+		}
+		return res;
+	}
+}
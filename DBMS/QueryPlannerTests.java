@@ -0,0 +1,122 @@
+package DBMS;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import java.util.*;
+import org.junit.Test;
+public class QueryPlannerTests
+{
+
+	// 2000 records over 100 pages: flag is "n" for 1% of them, grp has 10
+	// values and rare 200.
+	private static void createTable(String name)
+	{
+		DBApp.dataPageSize = 20;
+		DBApp.createTable(name, new String[]{"id","flag","grp","rare"});
+		List<String[]> records = new ArrayList<String[]>();
+		for(int i=0;i<2000;i++)
+		{
+			records.add(new String[]{""+i, i%100==0 ? "n" : "y", "g"+(i%10), "r"+(i%200)});
+		}
+		DBApp.insertBatch(name, records);
+		DBApp.createBitMapIndex(name, "flag");
+		DBApp.createBitMapIndex(name, "grp");
+		DBApp.createBitMapIndex(name, "rare");
+	}
+
+	@Test(timeout = 1000000)
+	public void testMostSelectiveIndexFirst() throws Exception
+	{
+		FileManager.reset();
+		createTable("qp1");
+		String[] cols = {"flag","grp","rare"};
+		String[] vals = {"y","g5","r5"};
+		QueryPlan plan = DBApp.explain("qp1", cols, vals);
+		assertEquals(QueryPlan.Access.INDEX, plan.getAccess());
+		assertEquals("rare", plan.getSteps().get(0).getPredicate().getColumn());
+		assertEquals(10, plan.getSteps().get(0).getEstimatedRows());
+		assertEquals("An index matching 99% of the rows should not be read.", 1, plan.getSkipped().size());
+		assertEquals("flag", plan.getSkipped().get(0).getPredicate().getColumn());
+		assertEquals(10, plan.getActualRows());
+		assertTrue(plan.toString().contains("1. BITMAP rare=r5, estimated rows: 10"));
+
+		ArrayList<String[]> res = DBApp.selectIndex("qp1", cols, vals);
+		assertEquals(10, res.size());
+		for(String[] row : res)
+		{
+			assertEquals("r5", row[3]);
+		}
+		assertTrue("The trace should keep its format: " + DBApp.getLastTrace("qp1"),
+				DBApp.getLastTrace("qp1").startsWith("Select index condition:[flag, grp, rare]->[y, g5, r5], Indexed columns: [flag, grp, rare], Indexed selection count: 10, Final count: 10"));
+		assertEquals(10, DBApp.selectIndexCursor("qp1", cols, vals).toList().size());
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testScanWhenIndexReadsEveryPage() throws Exception
+	{
+		FileManager.reset();
+		createTable("qp2");
+		QueryPlan plan = DBApp.explain("qp2", new String[]{"flag","id"}, new String[]{"y","7"});
+		assertEquals(QueryPlan.Access.SCAN, plan.getAccess());
+		assertEquals(0, plan.getSteps().size());
+		assertEquals(1, plan.getSkipped().size());
+		assertEquals(Arrays.asList("id"), plan.getNonIndexedColumns());
+		assertEquals(1, plan.getActualRows());
+
+		assertEquals(1, DBApp.selectIndex("qp2", new String[]{"flag","id"}, new String[]{"y","7"}).size());
+		assertTrue(DBApp.getLastTrace("qp2").startsWith("Select index condition:[flag, id]->[y, 7], Indexed columns: [flag], Indexed selection count: 1980, Non Indexed: [id], Final count: 1"));
+
+		plan = DBApp.explain("qp2", new String[]{"flag"}, new String[]{"n"});
+		assertEquals(QueryPlan.Access.INDEX, plan.getAccess());
+		assertEquals(20, plan.getEstimatedRows());
+		assertEquals(20, plan.getActualRows());
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testStatisticsFollowInserts() throws Exception
+	{
+		FileManager.reset();
+		createTable("qp3");
+		IndexStats stats = FileManager.loadTable("qp3").getIndexStats("flag");
+		assertEquals(2, stats.distinct());
+		assertEquals(20, stats.count("n"));
+		DBApp.insert("qp3", new String[]{"2000", "n", "g0", "r0"});
+		DBApp.insert("qp3", new String[]{"2001", "maybe", "g1", "r1"});
+		stats = FileManager.loadTable("qp3").getIndexStats("flag");
+		assertEquals(3, stats.distinct());
+		assertEquals(21, stats.count("n"));
+		assertEquals(2002, stats.total());
+
+		QueryPlan plan = DBApp.explain("qp3", Predicate.eq("flag", "absent"), Predicate.eq("grp", "g1"));
+		assertEquals(QueryPlan.Access.INDEX, plan.getAccess());
+		assertEquals(0, plan.getEstimatedRows());
+		assertEquals(0, plan.getActualRows());
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testPlansOverHashAndRangeIndexes() throws Exception
+	{
+		FileManager.reset();
+		createTable("qp4");
+		DBApp.createHashIndex("qp4", "id");
+		QueryPlan plan = DBApp.explain("qp4", Predicate.eq("id", "42"), Predicate.eq("grp", "g2"));
+		assertEquals(QueryPlan.Access.INDEX, plan.getAccess());
+		assertEquals(QueryPlan.Kind.HASH, plan.getSteps().get(0).getKind());
+		assertEquals(1, plan.getSteps().get(0).getEstimatedRows());
+		assertEquals(1, plan.getActualRows());
+
+		plan = DBApp.explain("qp4", Predicate.in("rare", "r1", "r2"), Predicate.gt("grp", "g7"));
+		assertEquals("rare", plan.getSteps().get(0).getPredicate().getColumn());
+		assertEquals(20, plan.getSteps().get(0).getEstimatedRows());
+		int expected = 0;
+		for(String[] row : DBApp.select("qp4"))
+		{
+			if((row[3].equals("r1") || row[3].equals("r2")) && row[2].compareTo("g7") > 0) expected++;
+		}
+		assertEquals(expected, plan.getActualRows());
+		assertEquals(expected, DBApp.selectIndex("qp4", Predicate.in("rare", "r1", "r2"), Predicate.gt("grp", "g7")).size());
+		FileManager.reset();
+	}
+}
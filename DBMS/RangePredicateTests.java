@@ -0,0 +1,132 @@
+package DBMS;
+import java.io.File;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import java.util.*;
+import org.junit.Test;
+public class RangePredicateTests
+{
+
+	@Test(timeout = 1000000)
+	public void testRangeSelectSkipsPages() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 10;
+		DBApp.createTable("rp1", new String[]{"id","major"}, new ColumnType[]{ColumnType.INT, ColumnType.varchar(10)});
+		for(int i=0;i<100;i++)
+		{
+			DBApp.insert("rp1", new String[]{""+i, "m"+(i%4)});
+		}
+		assertEquals(10, DBApp.select("rp1", Predicate.between("id", "20", "29")).size());
+		assertTrue("Pages outside the range should be skipped: " + DBApp.getLastTrace("rp1"),
+				DBApp.getLastTrace("rp1").startsWith("Select predicates:[id BETWEEN 20 AND 29], Records per page:[[2, 10]], records:10, skipped pages:9"));
+		assertEquals("Typed values should compare as numbers.", 100, DBApp.select("rp1", Predicate.lt("id", "100")).size());
+		assertEquals(5, DBApp.select("rp1", Predicate.gt("id", "94")).size());
+		assertEquals(6, DBApp.select("rp1", Predicate.ge("id", "94")).size());
+		assertEquals(3, DBApp.select("rp1", Predicate.le("id", "2")).size());
+		assertEquals(3, DBApp.select("rp1", Predicate.in("id", "3", "50", "007", "500")).size());
+		assertEquals(5, DBApp.select("rp1", Predicate.ge("id", "80"), Predicate.eq("major", "m1")).size());
+		assertTrue(DBApp.getLastTrace("rp1").contains("skipped pages:8"));
+		assertEquals("A predicate no page can satisfy should read no page.", 0, DBApp.select("rp1", Predicate.gt("id", "1000")).size());
+		assertTrue(DBApp.getLastTrace("rp1").contains("skipped pages:10"));
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testUntypedColumnsCompareAsStrings() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 3;
+		DBApp.createTable("rp2", new String[]{"id","name"});
+		String[] ids = {"5", "10", "9", "42", "100"};
+		for(String id : ids)
+		{
+			DBApp.insert("rp2", new String[]{id, "n"+id});
+		}
+		ArrayList<String[]> res = DBApp.select("rp2", Predicate.lt("id", "5"));
+		assertEquals("Untyped values should compare as strings.", 3, res.size());
+		assertEquals("10", res.get(0)[0]);
+		assertEquals("42", res.get(1)[0]);
+		assertEquals("100", res.get(2)[0]);
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testSelectIndexWithPredicates() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 5;
+		DBApp.createTable("rp3", new String[]{"id","major","gpa"}, new ColumnType[]{ColumnType.INT, ColumnType.varchar(5), ColumnType.DOUBLE});
+		for(int i=0;i<60;i++)
+		{
+			DBApp.insert("rp3", new String[]{""+i, "m"+(i%5), ""+(i%7)});
+		}
+		DBApp.createBitMapIndex("rp3", "major");
+		DBApp.createBitMapIndex("rp3", "gpa");
+		Predicate[] preds = {Predicate.in("major", "m1", "m2"), Predicate.ge("id", "30"), Predicate.between("gpa", "1", "3.5")};
+		int expected = 0;
+		for(String[] r : DBApp.select("rp3"))
+		{
+			int id = Integer.parseInt(r[0]);
+			double gpa = Double.parseDouble(r[2]);
+			if((r[1].equals("m1") || r[1].equals("m2")) && id >= 30 && gpa >= 1 && gpa <= 3.5)
+			{
+				expected++;
+			}
+		}
+		ArrayList<String[]> res = DBApp.selectIndex("rp3", preds);
+		assertEquals("Index predicates should match the scan.", expected, res.size());
+		String trace = DBApp.getLastTrace("rp3");
+		ArrayList<String[]> scanned = DBApp.select("rp3", preds);
+		assertEquals(res.size(), scanned.size());
+		assertTrue(trace, trace.startsWith("Select index predicates:[major IN [m1, m2], id>=30, gpa BETWEEN 1 AND 3.5], Indexed columns: [gpa, major], Indexed selection count: "));
+		assertTrue(trace, trace.contains(", Non Indexed: [id], Final count: " + expected + ", execution time (mil):"));
+		assertEquals(12, DBApp.selectIndex("rp3", Predicate.lt("id", "12")).size());
+		assertTrue(DBApp.getLastTrace("rp3").startsWith("Select index predicates:[id<12], Non Indexed: [id], Final count: 12"));
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testZoneMapsCoverRecoveredRecords() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 4;
+		DBApp.createTable("rp4", new String[]{"id"}, new ColumnType[]{ColumnType.LONG});
+		for(int i=0;i<12;i++)
+		{
+			DBApp.insert("rp4", new String[]{""+i});
+		}
+		new File(FileManager.directory, "rp4" + File.separator + "1.db").delete();
+		ArrayList<String[]> missing = DBApp.validateRecords("rp4");
+		assertEquals(4, missing.size());
+		DBApp.recoverRecords("rp4", missing);
+		assertEquals("Recovered records should be found through the zone map.", 4,
+				DBApp.select("rp4", Predicate.between("id", "4", "7")).size());
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testZoneMapOfFullPagesSurvivesARestart() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 10;
+		DBApp.createTable("rp5", new String[]{"id"}, new ColumnType[]{ColumnType.INT});
+		for(int i=0;i<91;i++)
+		{
+			DBApp.insert("rp5", new String[]{""+i});
+		}
+		File log = new File(FileManager.directory, "rp5" + File.separator + "rp5.zones");
+		long logged = log.length();
+		assertTrue("The zones of the full pages should be logged.", logged > 0);
+		for(int i=91;i<100;i++)
+		{
+			DBApp.insert("rp5", new String[]{""+i});
+		}
+		assertEquals("Inserts into the tail page should not touch the zone log.", logged, log.length());
+		FileManager.dropCachedStats();
+		assertEquals(10, DBApp.select("rp5", Predicate.between("id", "20", "29")).size());
+		assertTrue("Full pages should be skipped after a restart: " + DBApp.getLastTrace("rp5"),
+				DBApp.getLastTrace("rp5").contains("skipped pages:8"));
+		FileManager.reset();
+	}
+}
@@ -0,0 +1,136 @@
+package DBMS;
+import java.io.File;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import java.util.*;
+import org.junit.Test;
+public class SegmentStorageTests
+{
+
+	@Test(timeout = 1000000)
+	public void testPagesLiveInOneSegmentFile() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 2;
+		FileManager.segmentStorage = true;
+		try
+		{
+			String[] cols = {"id","name","major"};
+			DBApp.createTable("sg1", cols);
+			for(int i=0;i<50;i++)
+			{
+				DBApp.insert("sg1", new String[]{""+i, "n"+i, "m"+(i%5)});
+			}
+			File tableDir = new File(FileManager.directory.getAbsolutePath()+ File.separator + "sg1");
+			assertTrue("The table segment file should exist.", new File(tableDir, "sg1.seg").exists());
+			assertTrue("No per page file should be written.", !new File(tableDir, "0.db").exists());
+			BufferPool.clear();
+			assertEquals("Every record should be read back from the segment.", 50, DBApp.select("sg1").size());
+			assertEquals("A condition select should read the segment.", 10, DBApp.select("sg1", new String[]{"major"}, new String[]{"m3"}).size());
+			String[] rec = DBApp.select("sg1", 7, 1).get(0);
+			assertEquals("A pointer select should read the right slot.", ""+(7*DBApp.dataPageSize+1), rec[0]);
+			assertEquals("Validating a sound segment should report nothing missing.", 0, DBApp.validateRecords("sg1").size());
+		}
+		finally
+		{
+			FileManager.segmentStorage = false;
+		}
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testLargePagesMoveOutOfTheirSlots() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 2;
+		FileManager.segmentStorage = true;
+		try
+		{
+			String[] cols = {"id","text"};
+			DBApp.createTable("sg2", cols);
+			char[] big = new char[6000];
+			Arrays.fill(big, 'x');
+			for(int i=0;i<9;i++)
+			{
+				DBApp.insert("sg2", new String[]{""+i, i==4 ? new String(big) : "t"+i});
+			}
+			BufferPool.clear();
+			ArrayList<String[]> all = DBApp.select("sg2");
+			assertEquals("Every record should survive the slot resize.", 9, all.size());
+			assertEquals("The large value should be read back intact.", 6000, all.get(4)[1].length());
+			assertEquals("Records after the large one should be intact.", "t8", all.get(8)[1]);
+			File tableDir = new File(FileManager.directory.getAbsolutePath()+ File.separator + "sg2");
+			assertEquals("One large page should not grow the slots of the others.", FileManager.segmentSlotSize, FileManager.segmentFor("sg2", false).getSlotSize());
+			assertTrue("The large page should live in the overflow file.", new File(tableDir, "sg2.seg.ovf").length() >= 6000);
+			DBApp.insert("sg2", new String[]{"9", "t9"});
+			assertEquals("Pages written after the large one should be intact.", "t9", DBApp.select("sg2", 4, 1).get(0)[1]);
+		}
+		finally
+		{
+			FileManager.segmentStorage = false;
+		}
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testMappedReadsFollowTableGrowth() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 2;
+		FileManager.segmentStorage = true;
+		FileManager.mappedReads = true;
+		try
+		{
+			String[] cols = {"id","major"};
+			DBApp.createTable("sg3", cols);
+			for(int i=0;i<40;i++)
+			{
+				DBApp.insert("sg3", new String[]{""+i, "m"+(i%4)});
+			}
+			assertEquals("A mapped scan should see every matching record.", 10, DBApp.select("sg3", new String[]{"major"}, new String[]{"m2"}).size());
+			for(int i=40;i<400;i++)
+			{
+				DBApp.insert("sg3", new String[]{""+i, "m"+(i%4)});
+			}
+			assertEquals("A mapped scan should see pages added after the first mapping.", 100, DBApp.select("sg3", new String[]{"major"}, new String[]{"m2"}).size());
+			BufferPool.clear();
+			assertEquals("Mapped page reads should return every record.", 400, DBApp.select("sg3").size());
+		}
+		finally
+		{
+			FileManager.segmentStorage = false;
+			FileManager.mappedReads = false;
+		}
+		FileManager.reset();
+		File tableDir = new File(FileManager.directory.getAbsolutePath()+ File.separator + "sg3");
+		assertTrue("Resetting should unmap and remove the segment.", !tableDir.exists());
+	}
+
+	@Test(timeout = 1000000)
+	public void testGrowingRelocatedPageKeepsToItsExtent() throws Exception
+	{
+		FileManager.reset();
+		File dir = new File(FileManager.directory, "sg4");
+		dir.mkdirs();
+		TableSegment seg = new TableSegment(new File(dir, "sg4.seg"), 64);
+		try
+		{
+			byte[] first = new byte[100];
+			byte[] second = new byte[100];
+			byte[] grown = new byte[150];
+			Arrays.fill(first, (byte)1);
+			Arrays.fill(second, (byte)2);
+			Arrays.fill(grown, (byte)3);
+			seg.write(0, first);
+			seg.write(1, second);
+			seg.write(0, grown);
+			assertTrue("The grown page should be read back.", Arrays.equals(grown, seg.read(0)));
+			assertTrue("Growing a page within its extent should leave the next extent alone.", Arrays.equals(second, seg.read(1)));
+		}
+		finally
+		{
+			seg.close();
+		}
+		FileManager.reset();
+	}
+}
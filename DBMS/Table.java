@@ -4,15 +4,51 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class Table implements Serializable
 {
+	// pinned to the value of the original class, so catalogs it wrote still load
+	private static final long serialVersionUID = -3093039783974334845L;
+
 	private String name;
 	private String[] columnsNames;
+	// column types of a typed table, null when every column holds plain strings
+	private ColumnType[] columnTypes;
 	private int pageCount;
 	private int recordsCount;
-	private ArrayList<String> trace;
+	// records per page, fixed when the table is created so that positions in
+	// the indexes keep mapping to the same page and slot; 0 in catalogs written
+	// before it was kept, which use DBApp.dataPageSize
+	private int pageSize;
+	// commit timestamp of the last insert; a loaded catalog is the snapshot its
+	// selects read, records committed after it stay invisible to them
+	private long lastCommitTs;
+	// per-page column ranges, shared with the other catalogs of the table
+	// through FileManager.tableZones
+	private transient ZoneMap zoneMap;
+	// full pages whose zones are not in the zone log yet
+	private transient TreeSet<Integer> completedZones;
+	// trace lines not yet appended to the trace log, which FileManager.storeTable
+	// writes separately from this catalog record
+	private transient ArrayList<String> trace;
+	// pages stored by inserts with the lsn their commit waits for, see
+	// FileManager.commitTable
+	private transient TreeMap<Integer, Long> commits;
 	private ArrayList<String> indexedColumns = new ArrayList<>();
+	// statistics and dictionaries, which grow with the distinct values of the
+	// table and so are kept apart from this catalog record; shared with the
+	// other catalogs of the table through FileManager.tableStats
+	private transient TableStats stats;
+	// condition selects split the page range over scanPool when the table has
+	// at least parallelScanMinPages pages
+	static boolean parallelScan = false;
+	static int parallelScanMinPages = 8;
+	static ForkJoinPool scanPool = ForkJoinPool.commonPool();
 
 	
 	public Table(String name, String[] columnsNames) 
@@ -20,10 +56,23 @@ public class Table implements Serializable
 		super();
 		this.name = name;
 		this.columnsNames = columnsNames;
+		this.pageSize = DBApp.dataPageSize;
 		this.trace = new ArrayList<String>();
 		this.trace.add("Table created name:" + name + ", columnsNames:"
 				+ Arrays.toString(columnsNames));
 	}
+	
+	public Table(String name, String[] columnsNames, ColumnType[] columnTypes) 
+	{
+		this(name, columnsNames);
+		if(columnTypes.length != columnsNames.length)
+		{
+			throw new IllegalArgumentException("Table " + name + " has " + columnsNames.length
+					+ " columns but " + columnTypes.length + " column types");
+		}
+		this.columnTypes = columnTypes;
+		this.trace.set(0, this.trace.get(0) + ", columnTypes:" + Arrays.toString(columnTypes));
+	}
 
 
 	@Override
@@ -37,20 +86,167 @@ public class Table implements Serializable
 	public void insert(String []record)
 	{
 		long startTime = System.currentTimeMillis();
-		Page current = FileManager.loadTablePage(this.name, pageCount-1);
-		if(current==null||!current.insert(record))
+		long commitTs = lastCommitTs + 1;
+		Page current = loadTailPage();
+		boolean newPage = false;
+		if(current==null||!current.insert(record, commitTs, getPageSize()))
 		{
-			current = new Page();
-			current.insert(record);
+			completePage(current);
+			current = new Page(columnTypes);
+			current.insert(record, commitTs, getPageSize());
 			pageCount++;
+			newPage = true;
 		}
-		FileManager.storeTablePage(this.name, pageCount-1, current);
+		updateStats(record);
+		logPage(pageCount-1, current);
+		zones().add(pageCount-1, record, columnTypes, newPage);
 		recordsCount++;
+		lastCommitTs = commitTs;
 		long stopTime = System.currentTimeMillis();
-		this.trace.add("Inserted:"+ Arrays.toString(record)+", at page number:"+(pageCount-1)
+		this.addTraceLine("Inserted:"+ Arrays.toString(record)+", at page number:"+(pageCount-1)
 				+", execution time (mil):"+(stopTime - startTime));
 	}
 	
+	// Inserts the records filling pages in memory, so that every touched page
+	// is written once for the whole batch. The batch commits under a single
+	// timestamp, so a snapshot sees either all of it or none of it.
+	public void insertBatch(List<String []> records)
+	{
+		long commitTs = lastCommitTs + 1;
+		Page current = loadTailPage();
+		boolean dirty = false;
+		boolean newPage = false;
+		for(String[] record : records)
+		{
+			long startTime = System.currentTimeMillis();
+			if(current==null||!current.insert(record, commitTs, getPageSize()))
+			{
+				if(dirty)
+				{
+					logPage(pageCount-1, current);
+				}
+				completePage(current);
+				current = new Page(columnTypes);
+				current.insert(record, commitTs, getPageSize());
+				pageCount++;
+				newPage = true;
+			}
+			zones().add(pageCount-1, record, columnTypes, newPage);
+			updateStats(record);
+			newPage = false;
+			dirty = true;
+			recordsCount++;
+			long stopTime = System.currentTimeMillis();
+			this.addTraceLine("Inserted:"+ Arrays.toString(record)+", at page number:"+(pageCount-1)
+					+", execution time (mil):"+(stopTime - startTime));
+		}
+		if(dirty)
+		{
+			logPage(pageCount-1, current);
+			lastCommitTs = commitTs;
+		}
+	}
+
+	private void logPage(int pageNumber, Page p)
+	{
+		long lsn = FileManager.logTablePage(this.name, pageNumber, p);
+		if(lsn > 0)
+		{
+			pendingCommits().merge(pageNumber, lsn, Math::max);
+		}
+	}
+
+	private TreeMap<Integer, Long> pendingCommits()
+	{
+		if(this.commits == null)
+		{
+			this.commits = new TreeMap<Integer, Long>();
+		}
+		return this.commits;
+	}
+
+	// Hands over the pages stored by inserts since the last call, for the
+	// caller to commit once it released the table's locks.
+	TreeMap<Integer, Long> drainCommits()
+	{
+		TreeMap<Integer, Long> res = pendingCommits();
+		this.commits = null;
+		return res;
+	}
+	
+	// Last page of the table, which a typed table keeps storing in binary form
+	// even when it was written untyped.
+	private Page loadTailPage()
+	{
+		Page p = FileManager.loadTablePage(this.name, pageCount-1);
+		if(p!=null && columnTypes!=null && p.getTypes()==null)
+		{
+			p.setTypes(columnTypes);
+		}
+		return p;
+	}
+	
+	// Checks a record against the column types and returns it with every value
+	// in canonical form; records of an untyped table are returned as they are.
+	public String[] conform(String[] record)
+	{
+		if(columnTypes==null)
+		{
+			return record;
+		}
+		if(record.length!=columnTypes.length)
+		{
+			throw new IllegalArgumentException("Table " + name + " has " + columnTypes.length
+					+ " columns but the record has " + record.length + " values");
+		}
+		String[] res = new String[record.length];
+		for(int i=0;i<res.length;i++)
+		{
+			try
+			{
+				res[i] = columnTypes[i].canonical(record[i]);
+			}
+			catch (IllegalArgumentException e)
+			{
+				throw new IllegalArgumentException("Column " + columnsNames[i] + ": " + e.getMessage());
+			}
+		}
+		return res;
+	}
+	
+	// Canonical form of a condition value on a column. A value that is not of
+	// the column type is returned as it is, matching no stored value.
+	public String conformValue(String col, String val)
+	{
+		int i = columnTypes==null ? -1 : Arrays.asList(columnsNames).indexOf(col);
+		if(i<0)
+		{
+			return val;
+		}
+		try
+		{
+			return columnTypes[i].canonical(val);
+		}
+		catch (IllegalArgumentException e)
+		{
+			return val;
+		}
+	}
+	
+	public String[] conformValues(String[] cols, String[] vals)
+	{
+		if(columnTypes==null)
+		{
+			return vals;
+		}
+		String[] res = new String[vals.length];
+		for(int j=0;j<vals.length;j++)
+		{
+			res[j] = conformValue(cols[j], vals[j]);
+		}
+		return res;
+	}
+	
 	public String[] fixCond(String[] cols, String[] vals)
 	{
 		String[] res = new String[columnsNames.length];
@@ -60,7 +256,7 @@ public class Table implements Serializable
 			{
 				if(columnsNames[i].equals(cols[j]))
 				{
-					res[i]=vals[j];
+					res[i]=conformValue(cols[j], vals[j]);
 				}
 			}
 		}
@@ -74,10 +270,19 @@ public class Table implements Serializable
 		ArrayList<ArrayList<Integer>> pagesResCount = new ArrayList<ArrayList<Integer>>();
 		ArrayList<String []> res = new ArrayList<String []>();
 		long startTime = System.currentTimeMillis();
+		TreeSet<Integer> hashed = encodeCond(cond) ? hashedPages(cond) : new TreeSet<Integer>();
+		ArrayList<String []>[] pagesRes = null;
+		if(hashed==null && parallelScan && pageCount >= parallelScanMinPages)
+		{
+			pagesRes = scanPages(cond);
+		}
 		for(int i=0;i<pageCount;i++)
 		{
-			Page p = FileManager.loadTablePage(this.name, i);
-			ArrayList<String []> pRes = p.select(cond);
+			if(hashed!=null && !hashed.contains(i))
+			{
+				continue;
+			}
+			ArrayList<String []> pRes = pagesRes!=null ? pagesRes[i] : FileManager.selectTablePage(this.name, i, cond, lastCommitTs);
 			if(pRes.size()>0)
 			{
 				ArrayList<Integer> pr = new ArrayList<Integer>();
@@ -90,10 +295,229 @@ public class Table implements Serializable
 		long stopTime = System.currentTimeMillis();
 		tracer +=", Records per page:" + pagesResCount+", records:"+res.size()
 				+", execution time (mil):"+(stopTime - startTime);
-		this.trace.add(tracer);
+		this.addTraceLine(tracer);
+		return res;
+	}
+	
+	// Selects the given columns of the records satisfying the condition. Only
+	// those columns are returned, and pages stored in the columnar layout
+	// decode no other column than the ones of the condition.
+	public ArrayList<String []> selectColumns(String[] columns, String[] cols, String[] vals)
+	{
+		int[] projection = new int[columns.length];
+		for(int k=0;k<columns.length;k++)
+		{
+			projection[k] = Arrays.asList(columnsNames).indexOf(columns[k]);
+			if(projection[k]<0)
+			{
+				throw new IllegalArgumentException("Unknown column: " + columns[k]);
+			}
+		}
+		String[] cond = fixCond(cols, vals);
+		String tracer ="Select columns:"+Arrays.toString(columns)+", condition:"+Arrays.toString(cols)+"->"+Arrays.toString(vals);
+		ArrayList<String []> res = new ArrayList<String []>();
+		long startTime = System.currentTimeMillis();
+		TreeSet<Integer> hashed = encodeCond(cond) ? hashedPages(cond) : new TreeSet<Integer>();
+		for(int i=0;i<pageCount;i++)
+		{
+			if(hashed!=null && !hashed.contains(i))
+			{
+				continue;
+			}
+			ArrayList<String []> pRes = FileManager.selectTablePage(this.name, i, cond, lastCommitTs, projection);
+			if(pRes!=null)
+			{
+				res.addAll(pRes);
+			}
+		}
+		long stopTime = System.currentTimeMillis();
+		tracer +=", records:"+res.size()+", execution time (mil):"+(stopTime - startTime);
+		this.addTraceLine(tracer);
+		return res;
+	}
+	
+	// False when a condition value on a dictionary encoded column was never
+	// inserted, so no record can match. The other values become the
+	// dictionary instances the records hold, which compare equal at once.
+	private boolean encodeCond(String[] cond)
+	{
+		ColumnDictionary[] dictionaries = stats().dictionaries;
+		for(int j=0;dictionaries!=null && j<cond.length && j<dictionaries.length;j++)
+		{
+			if(cond[j]==null || dictionaries[j]==null)
+			{
+				continue;
+			}
+			int code = dictionaries[j].code(cond[j]);
+			if(code<0)
+			{
+				return false;
+			}
+			cond[j] = dictionaries[j].value(code);
+		}
+		return true;
+	}
+	
+	// False when an equality predicate is on a dictionary encoded column and
+	// none of its values was ever inserted.
+	private boolean mayMatch(Predicate[] bound)
+	{
+		ColumnDictionary[] dictionaries = stats().dictionaries;
+		for(Predicate p : bound)
+		{
+			int j = p.getColumnIndex();
+			if(dictionaries==null || j>=dictionaries.length || dictionaries[j]==null
+					|| (p.getOp()!=Predicate.Op.EQ && p.getOp()!=Predicate.Op.IN))
+			{
+				continue;
+			}
+			boolean found = false;
+			for(String v : p.getValues())
+			{
+				found |= dictionaries[j].code(v)>=0;
+			}
+			if(!found)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	// Pages holding the records whose value equals the condition on a column
+	// with a hash index, null when no column of the condition has one. Only
+	// these pages can satisfy the whole condition.
+	private TreeSet<Integer> hashedPages(String[] cond)
+	{
+		for(int i=0;i<cond.length;i++)
+		{
+			if(cond[i]==null || !FileManager.hashIndexExists(this.name, columnsNames[i]))
+			{
+				continue;
+			}
+			ArrayList<int[]> refs = FileManager.lookupHashIndex(this.name, columnsNames[i], cond[i]);
+			if(refs==null)
+			{
+				continue;
+			}
+			TreeSet<Integer> res = new TreeSet<Integer>();
+			for(int[] ref : refs)
+			{
+				res.add(ref[0]);
+			}
+			return res;
+		}
+		return null;
+	}
+	
+	// Selects the records satisfying every predicate. Pages whose zone map
+	// excludes one of the predicates are skipped without being read.
+	public ArrayList<String []> select(Predicate[] predicates)
+	{
+		Predicate[] bound = Predicate.bindAll(this, predicates);
+		String tracer ="Select predicates:"+Arrays.toString(predicates);
+		ArrayList<ArrayList<Integer>> pagesResCount = new ArrayList<ArrayList<Integer>>();
+		long startTime = System.currentTimeMillis();
+		int[] skipped = new int[1];
+		ArrayList<String []> res = scan(bound, pagesResCount, skipped);
+		long stopTime = System.currentTimeMillis();
+		tracer +=", Records per page:" + pagesResCount+", records:"+res.size()
+				+", skipped pages:"+skipped[0]+", execution time (mil):"+(stopTime - startTime);
+		this.addTraceLine(tracer);
 		return res;
 	}
 	
+	// Scans the pages the zone map does not exclude, counting the matches of
+	// every page in pagesResCount and the pages left out in skipped[0].
+	ArrayList<String []> scan(Predicate[] bound, ArrayList<ArrayList<Integer>> pagesResCount, int[] skipped)
+	{
+		ArrayList<String []> res = new ArrayList<String []>();
+		if(!mayMatch(bound))
+		{
+			skipped[0] += pageCount;
+			return res;
+		}
+		for(int i=0;i<pageCount;i++)
+		{
+			if(!zones().mayMatch(i, bound))
+			{
+				skipped[0]++;
+				continue;
+			}
+			Page p = FileManager.loadTablePage(this.name, i);
+			if(p==null)
+			{
+				continue;
+			}
+			int count = 0;
+			for(String[] record : p.selectSnapshot(lastCommitTs))
+			{
+				if(Predicate.testAll(bound, record))
+				{
+					res.add(record);
+					count++;
+				}
+			}
+			if(count>0)
+			{
+				ArrayList<Integer> pr = new ArrayList<Integer>();
+				pr.add(i);
+				pr.add(count);
+				pagesResCount.add(pr);
+			}
+		}
+		return res;
+	}
+	
+	// Evaluates the condition on every page in parallel. Each page keeps its
+	// own result slot so the caller can merge them back in page order.
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private ArrayList<String []>[] scanPages(String[] cond)
+	{
+		ArrayList<String []>[] pagesRes = new ArrayList[pageCount];
+		scanPool.invoke(new ScanTask(this.name, cond, lastCommitTs, pagesRes, 0, pageCount));
+		return pagesRes;
+	}
+
+	// Splits a range of pages in halves until it is at most
+	// parallelScanMinPages / 2 pages long, then scans it.
+	private static class ScanTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		private final String tableName;
+		private final String[] cond;
+		private final long snapshot;
+		private final ArrayList<String []>[] pagesRes;
+		private final int from;
+		private final int to;
+
+		ScanTask(String tableName, String[] cond, long snapshot, ArrayList<String []>[] pagesRes, int from, int to)
+		{
+			this.tableName = tableName;
+			this.cond = cond;
+			this.snapshot = snapshot;
+			this.pagesRes = pagesRes;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(to - from <= Math.max(1, parallelScanMinPages / 2))
+			{
+				for(int i=from;i<to;i++)
+				{
+					pagesRes[i] = FileManager.selectTablePage(tableName, i, cond, snapshot);
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new ScanTask(tableName, cond, snapshot, pagesRes, from, mid),
+					new ScanTask(tableName, cond, snapshot, pagesRes, mid, to));
+		}
+	}
+	
 	public ArrayList<String []> select(int pageNumber, int recordNumber)
 	{
 		String tracer ="Select pointer page:"+pageNumber+", record:"+recordNumber;
@@ -101,14 +525,14 @@ public class Table implements Serializable
 		long startTime = System.currentTimeMillis();
 		Page p = FileManager.loadTablePage(this.name, pageNumber);
 		ArrayList<String []> pRes = p.select(recordNumber);
-		if(pRes.size()>0)
+		if(pRes.size()>0 && p.getCommitTs(recordNumber)<=lastCommitTs)
 		{
 			res.addAll(pRes);
 		}
 		long stopTime = System.currentTimeMillis();
 		tracer+=", total output count:"+res.size()
 				+", execution time (mil):"+(stopTime - startTime);
-		this.trace.add(tracer);
+		this.addTraceLine(tracer);
 		return res;
 	}
 	
@@ -120,7 +544,7 @@ public class Table implements Serializable
 		for(int i=0;i<pageCount;i++)
 		{
 			Page p = FileManager.loadTablePage(this.name, i);
-			res.addAll(p.select());
+			res.addAll(p.selectSnapshot(lastCommitTs));
 		}
 		//long stopTime = System.currentTimeMillis();
 	
@@ -128,10 +552,188 @@ public class Table implements Serializable
 	}
 	
 	
+	public int getPageCount() {
+	    return this.pageCount;
+	}
+
+	// Records per page of the table: record i of the table is slot
+	// i % getPageSize() of page i / getPageSize().
+	public int getPageSize() {
+	    return pageSize > 0 ? pageSize : DBApp.dataPageSize;
+	}
+
+	public int getRecordsCount() {
+	    return this.recordsCount;
+	}
+
 	public String[] getColumnNames() {
 	    return this.columnsNames;
 	}
 
+	public ColumnType[] getColumnTypes() {
+	    return this.columnTypes;
+	}
+
+	ZoneMap zones() {
+	    if (zoneMap == null) {
+	        zoneMap = FileManager.tableZones(name, pageCount);
+	    }
+	    return zoneMap;
+	}
+
+	// Sets the zone of the tail page, which the next insert leaves full, to
+	// the records it holds, so it goes to the zone log with this catalog.
+	private void completePage(Page tail) {
+	    if (tail != null) {
+	        zones().set(pageCount - 1, tail.select(), columnTypes);
+	        pendingZones().add(pageCount - 1);
+	    }
+	}
+
+	// Sets the zone of a page to the records it holds, after recovery put
+	// records back into it. Zones of full pages are logged when the catalog
+	// is stored; the zone of the tail page only lives in memory.
+	public void updateZoneMap(int pageNumber, List<String[]> records) {
+	    zones().set(pageNumber, records, columnTypes);
+	    if (pageNumber < pageCount - 1) {
+	        pendingZones().add(pageNumber);
+	    }
+	}
+
+	private TreeSet<Integer> pendingZones() {
+	    if (completedZones == null) {
+	        completedZones = new TreeSet<>();
+	    }
+	    return completedZones;
+	}
+
+	// Hands over the full pages whose zones changed since the table was
+	// loaded or last stored.
+	TreeSet<Integer> drainZones() {
+	    TreeSet<Integer> res = pendingZones();
+	    completedZones = null;
+	    return res;
+	}
+
+	// Counts a new record in the column dictionaries and statistics. Called
+	// before the page holding the record is stored and before recordsCount
+	// counts it.
+	private void updateStats(String[] record) {
+	    TableStats stats = stats();
+	    if (stats.dictionaries == null && recordsCount == 0) {
+	        stats.dictionaries = newDictionaries();
+	        for (int j = 0; j < stats.dictionaries.length; j++) {
+	            if (stats.dictionaries[j] != null) {
+	                FileManager.appendTableDictionary(name, j, FileManager.DICTIONARY_START, null);
+	            }
+	        }
+	    }
+	    encode(record);
+	    if (stats.columnStats == null && recordsCount == 0) {
+	        stats.columnStats = newColumnStats();
+	    }
+	    if (stats.columnStats != null) {
+	        for (int j = 0; j < stats.columnStats.length; j++) {
+	            stats.columnStats[j].add(j < record.length ? record[j] : null);
+	        }
+	    }
+	    for (Map.Entry<String, IndexStats> e : stats.indexStats.entrySet()) {
+	        int j = Arrays.asList(columnsNames).indexOf(e.getKey());
+	        if (j >= 0) e.getValue().add(record[j]);
+	    }
+	    stats.counted();
+	}
+
+	private ColumnDictionary[] newDictionaries() {
+	    ColumnDictionary[] res = new ColumnDictionary[columnsNames.length];
+	    for (int j = 0; j < res.length; j++) {
+	        if (columnTypes == null || columnTypes[j].getKind() == ColumnType.Kind.VARCHAR) {
+	            res[j] = new ColumnDictionary(ColumnDictionary.TABLE_LIMIT);
+	        }
+	    }
+	    return res;
+	}
+
+	// Adds the values of a record to the column dictionaries and has the
+	// record hold the dictionary instances, so the records of the table share
+	// one String per value. A column outgrowing its dictionary loses it. Every
+	// change is appended to the dictionary log of the table.
+	void encode(String[] record) {
+	    ColumnDictionary[] dictionaries = stats().dictionaries;
+	    for (int j = 0; dictionaries != null && j < dictionaries.length && j < record.length; j++) {
+	        if (dictionaries[j] == null || record[j] == null) continue;
+	        int size = dictionaries[j].size();
+	        int code = dictionaries[j].add(record[j]);
+	        if (code < 0) {
+	            FileManager.appendTableDictionary(name, j, FileManager.DICTIONARY_DROP, null);
+	            dictionaries[j] = null;
+	        } else {
+	            if (code == size) {
+	                FileManager.appendTableDictionary(name, j, FileManager.DICTIONARY_ADD, record[j]);
+	            }
+	            record[j] = dictionaries[j].value(code);
+	        }
+	    }
+	}
+
+	// Dictionary of a column, null when its values are not encoded.
+	public ColumnDictionary getDictionary(String colName) {
+	    ColumnDictionary[] dictionaries = stats().dictionaries;
+	    int j = Arrays.asList(columnsNames).indexOf(colName);
+	    return dictionaries == null || j < 0 ? null : dictionaries[j];
+	}
+
+	ColumnStats[] newColumnStats() {
+	    ColumnStats[] res = new ColumnStats[columnsNames.length];
+	    for (int j = 0; j < res.length; j++) {
+	        res[j] = new ColumnStats(columnTypes == null ? null : columnTypes[j]);
+	    }
+	    return res;
+	}
+
+	// Statistics of a column, null when unknown.
+	public ColumnStats getColumnStats(String colName) {
+	    ColumnStats[] columnStats = stats().columnStats;
+	    int j = Arrays.asList(columnsNames).indexOf(colName);
+	    return columnStats == null || j < 0 ? null : columnStats[j];
+	}
+
+	void setColumnStats(ColumnStats[] columnStats) {
+	    stats().columnStats = columnStats;
+	    stats.replaced();
+	}
+
+	// Value counts of a column with a bitmap index, null when unknown.
+	public IndexStats getIndexStats(String colName) {
+	    TableStats stats = stats();
+	    synchronized (stats) {
+	        return stats.indexStats.get(colName);
+	    }
+	}
+
+	void setIndexStats(String colName, IndexStats indexStats) {
+	    TableStats stats = stats();
+	    synchronized (stats) {
+	        stats.indexStats.put(colName, indexStats);
+	    }
+	    stats.replaced();
+	}
+
+	TableStats stats() {
+	    if (stats == null) {
+	        stats = FileManager.tableStats(name, columnsNames.length);
+	    }
+	    return stats;
+	}
+
+	public long getLastCommitTs() {
+	    return this.lastCommitTs;
+	}
+
+	void setLastCommitTs(long lastCommitTs) {
+	    this.lastCommitTs = lastCommitTs;
+	}
+
 	
 	
 	public void addIndexedColumn(String colName) {
@@ -142,21 +744,44 @@ public class Table implements Serializable
 
 	public String getFullTrace() 
 	{
-		String res = "";
-		for(int i=0;i<this.trace.size();i++)
+		ArrayList<String> lines = FileManager.loadTableTrace(this.name);
+		lines.addAll(pendingTrace());
+		StringBuilder res = new StringBuilder();
+		for(int i=0;i<lines.size();i++)
 		{
-			res+=this.trace.get(i)+"\n";
+			res.append(lines.get(i)).append("\n");
 		}
 		return res+ "Pages Count: " + pageCount + ", Records Count: " + recordsCount+ ", Indexed Columns: " + indexedColumns;
 	}
 	
 	public String getLastTrace() 
 	{
-		return this.trace.get(this.trace.size()-1);
+		if(!pendingTrace().isEmpty())
+		{
+			return this.trace.get(this.trace.size()-1);
+		}
+		return FileManager.loadLastTraceLine(this.name);
 	}
 	
 	public void addTraceLine(String msg) {
-	    this.trace.add(msg);
+	    pendingTrace().add(msg);
+	}
+
+	private ArrayList<String> pendingTrace()
+	{
+		if(this.trace==null)
+		{
+			this.trace = new ArrayList<String>();
+		}
+		return this.trace;
+	}
+
+	// Hands over the trace lines added since the table was loaded or last stored.
+	ArrayList<String> drainTrace()
+	{
+		ArrayList<String> res = pendingTrace();
+		this.trace = new ArrayList<String>();
+		return res;
 	}
 	
 	public void updatePageCount(int newPageCount) {
@@ -168,6 +793,10 @@ public class Table implements Serializable
     public void incrementRecordsCount() {
         recordsCount++;
     }
+
+    public void setRecordsCount(int recordsCount) {
+        this.recordsCount = recordsCount;
+    }
  // near the bottom of the class:
     public List<String> getIndexedColumns() {
         return new ArrayList<>(this.indexedColumns);
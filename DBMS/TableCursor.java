@@ -0,0 +1,178 @@
+package DBMS;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy scan over the pages of a table. Pages are pulled through FileManager
+ * one at a time as the consumer advances and dropped once their records are
+ * consumed, so memory stays bounded by a page no matter how large the table
+ * is, and closing the cursor early skips the remaining pages.
+ *
+ * A record is returned when it matches the condition vector (null entries
+ * match anything) and, if a position filter is given, its position in the
+ * table is set in the filter. With a position filter the cursor jumps from
+ * one set position to the next and only reads the pages holding them:
+ * position i is slot i % pageSize of page i / pageSize, pageSize being the
+ * page size of the table, as every page but the last is full.
+ *
+ * The cursor reads the snapshot it is given: records committed after that
+ * timestamp are skipped, though they still take up their positions.
+ */
+public class TableCursor implements Iterator<String[]>, AutoCloseable
+{
+	private final String tableName;
+	private final int pageCount;
+	private final int pageSize;
+	private final String[] cond;
+	private final CompressedBitmap positions;
+	private final long snapshot;
+
+	private int pageNumber = -1;
+	private ArrayList<String[]> page;
+	private int slot;
+	private int position = -1;
+	private String[] next;
+	private boolean closed;
+
+	public TableCursor(String tableName, int pageCount, String[] cond, CompressedBitmap positions)
+	{
+		this(tableName, pageCount, cond, positions, Long.MAX_VALUE);
+	}
+
+	public TableCursor(String tableName, int pageCount, String[] cond, CompressedBitmap positions, long snapshot)
+	{
+		this(tableName, pageCount, DBApp.dataPageSize, cond, positions, snapshot);
+	}
+
+	public TableCursor(String tableName, int pageCount, int pageSize, String[] cond, CompressedBitmap positions, long snapshot)
+	{
+		this.tableName = tableName;
+		this.pageCount = pageCount;
+		this.pageSize = pageSize;
+		this.cond = cond;
+		this.positions = positions;
+		this.snapshot = snapshot;
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		if(positions != null)
+		{
+			return hasNextPosition();
+		}
+		while(next == null && !closed)
+		{
+			if(page == null || slot >= page.size())
+			{
+				if(++pageNumber >= pageCount)
+				{
+					close();
+					break;
+				}
+				Page p = FileManager.loadTablePage(tableName, pageNumber);
+				page = p == null ? new ArrayList<String[]>() : p.selectSlots(snapshot);
+				slot = 0;
+				continue;
+			}
+			String[] record = page.get(slot++);
+			position++;
+			if(record != null && (positions == null || positions.contains(position)) && matches(record))
+			{
+				next = record;
+			}
+		}
+		return next != null;
+	}
+
+	private boolean hasNextPosition()
+	{
+		while(next == null && !closed)
+		{
+			position = positions.nextSetBit(position + 1);
+			int p = position < 0 ? pageCount : position / pageSize;
+			if(p >= pageCount)
+			{
+				close();
+				break;
+			}
+			if(p != pageNumber)
+			{
+				Page loaded = FileManager.loadTablePage(tableName, p);
+				page = loaded == null ? new ArrayList<String[]>() : loaded.selectSlots(snapshot);
+				pageNumber = p;
+			}
+			slot = position % pageSize;
+			if(slot < page.size() && page.get(slot) != null && matches(page.get(slot)))
+			{
+				next = page.get(slot);
+			}
+		}
+		return next != null;
+	}
+
+	private boolean matches(String[] record)
+	{
+		if(cond == null)
+		{
+			return true;
+		}
+		for(int j = 0; j < cond.length; j++)
+		{
+			if(cond[j] != null && !cond[j].equals(record[j]))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String[] next()
+	{
+		if(!hasNext())
+		{
+			throw new NoSuchElementException();
+		}
+		String[] res = next;
+		next = null;
+		return res;
+	}
+
+	// Number of the page the last returned record came from.
+	public int getPageNumber()
+	{
+		return pageNumber;
+	}
+
+	// Drains the cursor into a list.
+	public ArrayList<String[]> toList()
+	{
+		ArrayList<String[]> res = new ArrayList<String[]>();
+		while(hasNext())
+		{
+			res.add(next());
+		}
+		return res;
+	}
+
+	public Stream<String[]> stream()
+	{
+		Spliterator<String[]> split = Spliterators.spliteratorUnknownSize(this,
+				Spliterator.ORDERED | Spliterator.NONNULL);
+		return StreamSupport.stream(split, false).onClose(this::close);
+	}
+
+	@Override
+	public void close()
+	{
+		closed = true;
+		page = null;
+	}
+}
@@ -0,0 +1,423 @@
+package DBMS;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Single segment file holding every page of a table. Pages live in fixed
+ * size slots at computed offsets after a small header, so reading page n is
+ * one positional read on an already open channel.
+ *
+ * Layout: header [magic, version, slotSize, pageCount], then pageCount slots
+ * of slotSize bytes each, every slot being [payload length, payload]. A zero
+ * length marks a slot that was never written. A page that outgrows its slot
+ * is moved on its own to an extent of the overflow file beside the segment,
+ * and its slot becomes [RELOCATED, extent offset, extent capacity, payload
+ * length]. The extent is reused while the page fits it, and replaced by one
+ * of twice the size when it does not.
+ *
+ * With FileManager.mappedReads set, reads come from a read-only mapping of
+ * the file that is extended when the table grows and released on close.
+ */
+public class TableSegment
+{
+	static final int MAGIC = 0x44425347; // "DBSG"
+	static final int VERSION = 2;
+	static final int HEADER_SIZE = 64;
+	// length of the slot of a page that lives in the overflow file
+	static final int RELOCATED = -1;
+	private static final int POINTER_SIZE = 20;
+
+	private final File file;
+	private RandomAccessFile raf;
+	private FileChannel channel;
+	private int slotSize;
+	private int pageCount;
+	// overflow file of the pages that outgrew their slot, opened when the
+	// first one is relocated
+	private final File overflowFile;
+	private FileChannel overflow;
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Object mapLock = new Object();
+	private MappedByteBuffer mapped;
+
+	public TableSegment(File file, int slotSize) throws IOException
+	{
+		this.file = file;
+		this.overflowFile = new File(file.getParentFile(), file.getName() + ".ovf");
+		boolean exists = file.exists() && file.length() >= HEADER_SIZE;
+		open();
+		if(exists)
+		{
+			ByteBuffer header = ByteBuffer.allocate(16);
+			channel.read(header, 0);
+			header.flip();
+			if(header.getInt() != MAGIC)
+			{
+				close();
+				throw new IOException("Not a table segment: " + file);
+			}
+			header.getInt();
+			this.slotSize = header.getInt();
+			this.pageCount = header.getInt();
+		}
+		else
+		{
+			this.slotSize = Math.max(slotSize, POINTER_SIZE);
+			this.pageCount = 0;
+			writeHeader();
+		}
+	}
+
+	private void open() throws IOException
+	{
+		this.raf = new RandomAccessFile(file, "rw");
+		this.channel = raf.getChannel();
+		if(overflowFile.exists())
+		{
+			this.overflow = new RandomAccessFile(overflowFile, "rw").getChannel();
+		}
+	}
+
+	private void writeHeader() throws IOException
+	{
+		ByteBuffer header = ByteBuffer.allocate(16);
+		header.putInt(MAGIC).putInt(VERSION).putInt(slotSize).putInt(pageCount);
+		header.flip();
+		channel.write(header, 0);
+	}
+
+	private long offset(int pageNumber)
+	{
+		return HEADER_SIZE + (long)pageNumber * slotSize;
+	}
+
+	public byte[] read(int pageNumber) throws IOException
+	{
+		return read(pageNumber, new Decoder<byte[]>()
+		{
+			public byte[] decode(ByteBuffer data)
+			{
+				byte[] res = new byte[data.remaining()];
+				data.get(res);
+				return res;
+			}
+		});
+	}
+
+	// Hands the payload of the page to the decoder, or returns null for a page
+	// that was never written. With FileManager.mappedReads the payload is a
+	// slice of the mapped segment, only valid until decode returns.
+	public <T> T read(int pageNumber, Decoder<T> decoder) throws IOException
+	{
+		lock.readLock().lock();
+		try
+		{
+			if(pageNumber < 0 || pageNumber >= pageCount)
+			{
+				return null;
+			}
+			long pos = offset(pageNumber);
+			ByteBuffer m = FileManager.mappedReads ? mapped(pos + slotSize) : null;
+			if(m != null)
+			{
+				int length = m.getInt((int)pos);
+				if(length == RELOCATED)
+				{
+					ByteBuffer data = readExtent(m.getLong((int)pos + 4), m.getInt((int)pos + 16));
+					return data == null ? null : decoder.decode(data);
+				}
+				if(length <= 0)
+				{
+					return null;
+				}
+				ByteBuffer data = m.duplicate();
+				data.position((int)pos + 4);
+				data.limit((int)pos + 4 + length);
+				return decoder.decode(data.slice());
+			}
+			ByteBuffer data = readSlot(pageNumber);
+			return data == null ? null : decoder.decode(data);
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	// Returns the mapping of the segment, remapping it when the table grew past
+	// the mapped region. Called with the read lock held.
+	private ByteBuffer mapped(long end) throws IOException
+	{
+		synchronized(mapLock)
+		{
+			if(mapped == null || mapped.capacity() < end)
+			{
+				long size = channel.size();
+				if(size < end || size > Integer.MAX_VALUE)
+				{
+					return null;
+				}
+				// the old mapping stays valid for readers still holding it and
+				// is released by the garbage collector
+				mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			}
+			return mapped;
+		}
+	}
+
+	public void write(int pageNumber, byte[] data) throws IOException
+	{
+		lock.writeLock().lock();
+		try
+		{
+			ByteBuffer buf;
+			if(data.length + 4 > slotSize)
+			{
+				buf = relocate(pageNumber, data);
+			}
+			else
+			{
+				buf = ByteBuffer.allocate(4 + data.length);
+				buf.putInt(data.length).put(data);
+				buf.flip();
+			}
+			long pos = offset(pageNumber);
+			while(buf.hasRemaining())
+			{
+				channel.write(buf, pos + buf.position());
+			}
+			if(pageNumber >= pageCount)
+			{
+				pageCount = pageNumber + 1;
+				writeHeader();
+			}
+			// keep whole slots on disk so every slot lies inside the mapping
+			if(raf.length() < offset(pageCount))
+			{
+				raf.setLength(offset(pageCount));
+			}
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	// Forces the written pages to disk.
+	public void force() throws IOException
+	{
+		lock.readLock().lock();
+		try
+		{
+			channel.force(false);
+			if(overflow != null)
+			{
+				overflow.force(false);
+			}
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	public boolean exists(int pageNumber) throws IOException
+	{
+		lock.readLock().lock();
+		try
+		{
+			if(pageNumber < 0 || pageNumber >= pageCount)
+			{
+				return false;
+			}
+			ByteBuffer len = ByteBuffer.allocate(4);
+			channel.read(len, offset(pageNumber));
+			len.flip();
+			if(len.remaining() < 4)
+			{
+				return false;
+			}
+			int length = len.getInt();
+			return length > 0 || length == RELOCATED;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	// Writes the page to its extent of the overflow file, first giving it an
+	// extent of twice its size when the one it has is too small, and returns
+	// the pointer to store in its slot. Called with the write lock held.
+	private ByteBuffer relocate(int pageNumber, byte[] data) throws IOException
+	{
+		long extent = -1;
+		int capacity = 0;
+		if(pageNumber < pageCount)
+		{
+			ByteBuffer slot = ByteBuffer.allocate(POINTER_SIZE);
+			channel.read(slot, offset(pageNumber));
+			slot.flip();
+			if(slot.remaining() == POINTER_SIZE && slot.getInt() == RELOCATED)
+			{
+				extent = slot.getLong();
+				capacity = slot.getInt();
+			}
+		}
+		if(overflow == null)
+		{
+			overflow = new RandomAccessFile(overflowFile, "rw").getChannel();
+		}
+		if(data.length > capacity)
+		{
+			extent = overflow.size();
+			capacity = 2 * data.length;
+			// reserve the whole extent, so the next one starts past it
+			overflow.write(ByteBuffer.allocate(1), extent + capacity - 1);
+		}
+		ByteBuffer buf = ByteBuffer.wrap(data);
+		while(buf.hasRemaining())
+		{
+			overflow.write(buf, extent + buf.position());
+		}
+		ByteBuffer pointer = ByteBuffer.allocate(POINTER_SIZE);
+		pointer.putInt(RELOCATED).putLong(extent).putInt(capacity).putInt(data.length);
+		pointer.flip();
+		return pointer;
+	}
+
+	// Reads the payload of the page through the channels, null for a page
+	// that was never written. Called with a lock held.
+	private ByteBuffer readSlot(int pageNumber) throws IOException
+	{
+		long pos = offset(pageNumber);
+		ByteBuffer slot = ByteBuffer.allocate(POINTER_SIZE);
+		channel.read(slot, pos);
+		slot.flip();
+		int length = slot.remaining() >= 4 ? slot.getInt() : 0;
+		if(length == RELOCATED)
+		{
+			long extent = slot.getLong();
+			slot.getInt();
+			return readExtent(extent, slot.getInt());
+		}
+		if(length <= 0)
+		{
+			return null;
+		}
+		ByteBuffer data = ByteBuffer.allocate(length);
+		while(data.hasRemaining())
+		{
+			if(channel.read(data, pos + 4 + data.position()) < 0)
+			{
+				return null;
+			}
+		}
+		data.flip();
+		return data;
+	}
+
+	private ByteBuffer readExtent(long extent, int length) throws IOException
+	{
+		ByteBuffer data = ByteBuffer.allocate(length);
+		while(data.hasRemaining())
+		{
+			if(overflow.read(data, extent + data.position()) < 0)
+			{
+				return null;
+			}
+		}
+		data.flip();
+		return data;
+	}
+
+	public int getPageCount()
+	{
+		lock.readLock().lock();
+		try
+		{
+			return pageCount;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	public int getSlotSize()
+	{
+		lock.readLock().lock();
+		try
+		{
+			return slotSize;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	// Releases the mapping right away instead of waiting for the garbage
+	// collector. Only called with the write lock held, so no reader can still
+	// be decoding from it.
+	private void unmap()
+	{
+		synchronized(mapLock)
+		{
+			if(mapped == null)
+			{
+				return;
+			}
+			try
+			{
+				Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+				Field f = unsafeClass.getDeclaredField("theUnsafe");
+				f.setAccessible(true);
+				Object unsafe = f.get(null);
+				unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(unsafe, mapped);
+			}
+			catch (Exception e)
+			{
+				// not available on this runtime, the collector unmaps it eventually
+			}
+			mapped = null;
+		}
+	}
+
+	public void close()
+	{
+		lock.writeLock().lock();
+		try
+		{
+			unmap();
+			if(raf != null)
+			{
+				raf.close();
+			}
+			if(overflow != null)
+			{
+				overflow.close();
+			}
+		}
+		catch(IOException e)
+		{
+			e.printStackTrace();
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	public interface Decoder<T>
+	{
+		T decode(ByteBuffer data) throws IOException;
+	}
+}
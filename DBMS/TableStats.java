@@ -0,0 +1,77 @@
+package DBMS;
+
+import java.util.HashMap;
+
+/**
+ * Statistics and dictionaries of a table. FileManager keeps one instance per
+ * table in memory, shared by every loaded catalog of the table, and writes
+ * the statistics to the stats file beside the catalog.
+ *
+ * The dictionaries must hold every value of their column, as a select skips
+ * the table for a value they lack, so they are never left behind: every
+ * change is appended to the table's dictionary log before a page holding the
+ * new value is stored.
+ *
+ * Inserts count their records in memory only. The stats file is rewritten
+ * when analyze or an index build replaces statistics, at a checkpoint of the
+ * table's write-ahead log, and once the records counted since it was last
+ * written reach storeInterval or an eighth of the table, so an insert pays
+ * O(1) for it on average. Counts of the records inserted after the last
+ * write are lost on a crash: the planner only takes them as estimates, and
+ * the next analyze makes them exact again.
+ */
+public class TableStats
+{
+	// records counted in memory before the stats file is rewritten
+	static int storeInterval = 1024;
+
+	// value counts of the columns with a bitmap index
+	final HashMap<String, IndexStats> indexStats;
+	// statistics of every column, started with the first record; null for
+	// a table that had records before statistics existed, until analyze
+	ColumnStats[] columnStats;
+	// dictionaries of the string columns, started with the first record; null
+	// for the other columns, the columns that outgrew
+	// ColumnDictionary.TABLE_LIMIT values and the tables that had records
+	// before dictionaries existed
+	ColumnDictionary[] dictionaries;
+
+	// records counted since the stats file was written, and whether
+	// statistics were replaced since
+	private long counted;
+	private boolean replaced;
+
+	TableStats(HashMap<String, IndexStats> indexStats, ColumnStats[] columnStats)
+	{
+		this.indexStats = indexStats;
+		this.columnStats = columnStats;
+	}
+
+	synchronized void counted()
+	{
+		counted++;
+	}
+
+	synchronized void replaced()
+	{
+		replaced = true;
+	}
+
+	// Whether the stats file is due to be rewritten for a table of the given
+	// size.
+	synchronized boolean due(long recordsCount)
+	{
+		return replaced || counted >= Math.max(storeInterval, recordsCount / 8);
+	}
+
+	synchronized boolean changed()
+	{
+		return replaced || counted > 0;
+	}
+
+	synchronized void stored()
+	{
+		counted = 0;
+		replaced = false;
+	}
+}
@@ -0,0 +1,74 @@
+package DBMS;
+import java.io.File;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import java.util.*;
+import org.junit.Test;
+public class TraceLogTests
+{
+
+	@Test(timeout = 1000000)
+	public void testCatalogSizeIndependentOfHistory() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 2;
+		String[] cols = {"id","name"};
+		DBApp.createTable("tl1", cols);
+		File catalog = new File(FileManager.directory.getAbsolutePath()+ File.separator + "tl1" + File.separator + "tl1.db");
+		DBApp.insert("tl1", new String[]{"0", "n0"});
+		long sizeAfterOne = catalog.length();
+		for(int i=1;i<200;i++)
+		{
+			DBApp.insert("tl1", new String[]{""+i, "n"+i});
+		}
+		assertEquals("The catalog record should not grow with the trace.", sizeAfterOne, catalog.length());
+		assertTrue("The trace log should hold the trace.", new File(catalog.getParentFile(), "tl1.trace").length() > 0);
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testTraceReadFromLog() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 2;
+		String[] cols = {"id","name"};
+		DBApp.createTable("tl2", cols);
+		for(int i=0;i<5;i++)
+		{
+			DBApp.insert("tl2", new String[]{""+i, "n"+i});
+		}
+		assertTrue("The last trace should come from the log.", DBApp.getLastTrace("tl2").startsWith("Inserted:[4, n4]"));
+		DBApp.select("tl2", new String[]{"id"}, new String[]{"3"});
+		assertTrue("The last trace should follow new operations.", DBApp.getLastTrace("tl2").startsWith("Select condition:[id]->[3]"));
+		String[] lines = DBApp.getFullTrace("tl2").split("\n");
+		assertEquals("Every operation should be in the full trace.", 8, lines.length);
+		assertTrue("The trace should start with the table creation.", lines[0].startsWith("Table created name:tl2"));
+		assertTrue("The full trace should end with the table summary.", lines[7].startsWith("Pages Count: 3, Records Count: 5"));
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testRecreatedTableStartsANewHistory() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 2;
+		String[] cols = {"id","major"};
+		DBApp.createTable("tl3", cols);
+		for(int i=0;i<3;i++)
+		{
+			DBApp.insert("tl3", new String[]{"old"+i, "o"});
+		}
+		DBApp.createTable("tl3", cols);
+		assertTrue("The zone log of the dropped table should be gone.", !new File(FileManager.directory, "tl3" + File.separator + "tl3.zones").exists());
+		DBApp.insert("tl3", new String[]{"new0", "n"});
+		String trace = DBApp.getFullTrace("tl3");
+		assertTrue("The trace of the dropped table should be gone: " + trace, !trace.contains("old0"));
+		assertTrue(trace.contains("Inserted:[new0, n]"));
+		FileManager.dropCachedStats();
+		Table t = FileManager.loadTable("tl3");
+		assertEquals("Dictionaries of the dropped table should be gone.", 1, t.getDictionary("major").size());
+		assertEquals(-1, t.getDictionary("major").code("o"));
+		assertEquals(1, DBApp.select("tl3", new String[]{"major"}, new String[]{"n"}).size());
+		FileManager.reset();
+	}
+}
@@ -0,0 +1,111 @@
+package DBMS;
+import java.nio.ByteBuffer;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import java.util.*;
+import org.junit.Test;
+public class TypedSchemaTests
+{
+
+	private static final String[] COLS = {"id","name","gpa","born","active","big"};
+	private static final ColumnType[] TYPES = {ColumnType.INT, ColumnType.varchar(5), ColumnType.DOUBLE,
+			ColumnType.DATE, ColumnType.BOOLEAN, ColumnType.LONG};
+
+	@Test(timeout = 1000000)
+	public void testValuesAreCheckedAndCanonical() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 4;
+		DBApp.createTable("ty1", COLS, TYPES);
+		DBApp.insert("ty1", new String[]{"007", "ab", "3", "2001-02-03", "TRUE", "123"});
+		DBApp.insert("ty1", new String[]{"8", null, "-1.5", "1999-12-31", "false", "9000000000"});
+		ArrayList<String[]> all = DBApp.select("ty1");
+		assertEquals(2, all.size());
+		assertEquals("Values should be kept in canonical form.", "[7, ab, 3.0, 2001-02-03, true, 123]", Arrays.toString(all.get(0)));
+		assertEquals("Null values should be kept.", "[8, null, -1.5, 1999-12-31, false, 9000000000]", Arrays.toString(all.get(1)));
+		assertEquals("Conditions should compare typed values.", 1,
+				DBApp.select("ty1", new String[]{"id"}, new String[]{"07"}).size());
+		assertEquals(1, DBApp.select("ty1", new String[]{"gpa", "active"}, new String[]{"3", "True"}).size());
+		assertEquals("A value of another type should match nothing.", 0,
+				DBApp.select("ty1", new String[]{"id"}, new String[]{"x"}).size());
+		assertEquals(1, DBApp.selectCursor("ty1", new String[]{"born"}, new String[]{"1999-12-31"}).toList().size());
+		assertTrue("The trace should record the column types.",
+				DBApp.getFullTrace("ty1").contains("columnTypes:[INT, VARCHAR(5), DOUBLE, DATE, BOOLEAN, LONG]"));
+		String[][] invalid = {
+				{"x", "ab", "3", "2001-02-03", "true", "1"},
+				{"1", "abcdef", "3", "2001-02-03", "true", "1"},
+				{"1", "ab", "3", "2001-02-30", "true", "1"},
+				{"1", "ab", "3", "2001-02-03", "yes", "1"},
+				{"1", "ab", "3"}};
+		for(String[] record : invalid)
+		{
+			try
+			{
+				DBApp.insert("ty1", record);
+				assertTrue("Inserting " + Arrays.toString(record) + " should fail.", false);
+			}
+			catch (IllegalArgumentException e)
+			{
+				// expected
+			}
+		}
+		assertEquals("Rejected records should not be stored.", 2, DBApp.select("ty1").size());
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testTypedPagesAreBinary() throws Exception
+	{
+		DBApp.dataPageSize = 100;
+		Page typed = new Page(TYPES);
+		Page plain = new Page();
+		for(int i=0;i<100;i++)
+		{
+			String[] record = {""+(1000000+i), "n"+(i%10), (i/4.0)+"", "2020-01-0"+(1+i%9), (i%2==0)+"", ""+(5000000000L+i)};
+			typed.insert(record, i+1);
+			plain.insert(record, i+1);
+		}
+		byte[] typedBytes = PageCodec.encode(typed);
+		byte[] plainBytes = PageCodec.encode(plain);
+		assertTrue("Typed pages should be smaller: " + typedBytes.length + " vs " + plainBytes.length,
+				typedBytes.length * 10 < plainBytes.length * 7);
+		ByteBuffer buf = ByteBuffer.wrap(typedBytes);
+		Page decoded = PageCodec.decode(buf);
+		assertEquals(100, decoded.select().size());
+		for(int i=0;i<100;i++)
+		{
+			assertTrue("Decoding should give back every value.", Arrays.equals(plain.select().get(i), decoded.select().get(i)));
+		}
+		assertEquals("The decoded page should keep its commit timestamps.", 42, decoded.getCommitTs(41));
+		ArrayList<String[]> res = PageCodec.select(buf, new String[]{null, "n3", null, null, "false", null});
+		assertEquals("Selecting on the typed page should match the decoded select.", 10, res.size());
+		assertEquals("1000003", res.get(0)[0]);
+		assertEquals(1, PageCodec.select(buf, new String[]{"1000050", null, "12.5", null, null, null}).size());
+		assertEquals("A condition not in canonical form should match nothing.", 0,
+				PageCodec.select(buf, new String[]{"01000050", null, null, null, null, null}).size());
+
+		Page mixed = new Page(TYPES);
+		mixed.insert(new String[]{"1", "ab"});
+		Page mixedDecoded = PageCodec.decode(ByteBuffer.wrap(PageCodec.encode(mixed)));
+		assertTrue("Records not matching the types should be stored as strings.",
+				Arrays.equals(new String[]{"1", "ab"}, mixedDecoded.select().get(0)));
+	}
+
+	@Test(timeout = 1000000)
+	public void testIndexOnTypedColumn() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 2;
+		DBApp.createTable("ty2", new String[]{"id","gpa"}, new ColumnType[]{ColumnType.parse("int"), ColumnType.parse("DOUBLE")});
+		for(int i=0;i<5;i++)
+		{
+			DBApp.insert("ty2", new String[]{""+i, ""+(i%2)});
+		}
+		DBApp.createBitMapIndex("ty2", "gpa");
+		assertEquals("Index lookups should use canonical values.", "10101", DBApp.getValueBits("ty2", "gpa", "0"));
+		assertEquals(2, DBApp.selectIndex("ty2", new String[]{"gpa"}, new String[]{"1"}).size());
+		assertEquals(1, DBApp.selectIndex("ty2", new String[]{"gpa", "id"}, new String[]{"1.0", "03"}).size());
+		assertEquals("VARCHAR(12)", ColumnType.parse("varchar( 12 )").toString());
+		FileManager.reset();
+	}
+}
@@ -0,0 +1,185 @@
+package DBMS;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import java.util.*;
+import org.junit.Test;
+public class WalTests
+{
+
+	// Forgets every open file and cached page, as after a restart.
+	private static void restart()
+	{
+		BufferPool.clear();
+		WriteAheadLog.closeAll();
+		FileManager.closeSegments();
+	}
+
+	@Test(timeout = 1000000)
+	public void testRedoRestoresLostPages() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 2;
+		String[] cols = {"id","major"};
+		DBApp.createTable("wl1", cols);
+		for(int i=0;i<9;i++)
+		{
+			DBApp.insert("wl1", new String[]{""+i, "m"+(i%3)});
+		}
+		assertTrue("Page writes should be logged.", WriteAheadLog.logFile("wl1").exists());
+		long lsn1 = FileManager.readPageLsn("wl1", 1);
+		long lsn3 = FileManager.readPageLsn("wl1", 3);
+		assertTrue("Pages should carry the lsn of their last image.", lsn1 > 0 && lsn3 > lsn1);
+		ArrayList<String[]> before = DBApp.select("wl1");
+		new File(FileManager.directory.getAbsolutePath()+ File.separator + "wl1"+ File.separator+"1.db").delete();
+		restart();
+		ArrayList<String[]> after = DBApp.select("wl1");
+		assertEquals("Replaying the log should restore the lost page.", before.size(), after.size());
+		for(int i=0;i<before.size();i++)
+		{
+			assertTrue("Replaying the log should restore the records in place.", Arrays.equals(before.get(i), after.get(i)));
+		}
+		assertEquals("The restored page should keep its lsn.", lsn1, (long)FileManager.readPageLsn("wl1", 1));
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testRedoRepairsStaleCatalogCounts() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 2;
+		String[] cols = {"id","major"};
+		DBApp.createTable("wl5", cols);
+		for(int i=0;i<3;i++)
+		{
+			DBApp.insert("wl5", new String[]{""+i, "m"+(i%3)});
+		}
+		File catalog = new File(FileManager.directory.getAbsolutePath()+ File.separator + "wl5"+ File.separator+"wl5.db");
+		byte[] stale = Files.readAllBytes(catalog.toPath());
+		for(int i=3;i<5;i++)
+		{
+			DBApp.insert("wl5", new String[]{""+i, "m"+(i%3)});
+		}
+		// crash: the pages reached disk, the last two catalog writes did not
+		FileOutputStream out = new FileOutputStream(catalog);
+		out.write(stale);
+		out.close();
+		restart();
+		assertEquals("Redo should count the records of pages already on disk.", 5, DBApp.select("wl5").size());
+		DBApp.insert("wl5", new String[]{"5", "m2"});
+		ArrayList<String[]> all = DBApp.select("wl5");
+		assertEquals("An insert after redo should not overwrite records.", 6, all.size());
+		for(int i=0;i<6;i++)
+		{
+			assertEquals(""+i, all.get(i)[0]);
+		}
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testRecreatedTableDropsItsLog() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 2;
+		String[] cols = {"id","major"};
+		DBApp.createTable("wl6", cols);
+		for(int i=0;i<3;i++)
+		{
+			DBApp.insert("wl6", new String[]{"old"+i, "o"});
+		}
+		DBApp.createTable("wl6", cols);
+		DBApp.insert("wl6", new String[]{"new0", "n"});
+		restart();
+		ArrayList<String[]> all = DBApp.select("wl6");
+		assertEquals("Redo should not bring back pages of the dropped table.", 1, all.size());
+		assertEquals("new0", all.get(0)[0]);
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testNoForceDefersPageWrites() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 2;
+		boolean oldNoForce = WriteAheadLog.noForce;
+		WriteAheadLog.noForce = true;
+		try
+		{
+			String[] cols = {"id","major"};
+			DBApp.createTable("wl2", cols);
+			for(int i=0;i<7;i++)
+			{
+				DBApp.insert("wl2", new String[]{""+i, "m"+(i%3)});
+			}
+			File page0 = new File(FileManager.directory.getAbsolutePath()+ File.separator + "wl2"+ File.separator+"0.db");
+			assertTrue("No-force inserts should not write the pages.", !page0.exists());
+			assertEquals("Unwritten pages should be read from the pool.", 7, DBApp.select("wl2").size());
+			assertEquals("Unwritten pages should not be reported missing.", 0, DBApp.validateRecords("wl2").size());
+			// crash: the dirty pages are lost, the log is not
+			restart();
+			assertEquals("Replaying the log should rebuild the unwritten pages.", 7, DBApp.select("wl2").size());
+			assertTrue("Replayed pages should be written.", page0.exists());
+			DBApp.insert("wl2", new String[]{"7", "m1"});
+			assertTrue("A checkpoint should succeed.", WriteAheadLog.checkpoint("wl2"));
+			assertEquals("A checkpoint should empty the log.", WriteAheadLog.HEADER_SIZE, WriteAheadLog.logFile("wl2").length());
+			restart();
+			assertEquals("Checkpointed pages should be on disk.", 8, DBApp.select("wl2").size());
+		}
+		finally
+		{
+			WriteAheadLog.noForce = oldNoForce;
+		}
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testTornTailIsIgnored() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 2;
+		String[] cols = {"id","major"};
+		DBApp.createTable("wl3", cols);
+		for(int i=0;i<4;i++)
+		{
+			DBApp.insert("wl3", new String[]{""+i, "m"+i});
+		}
+		restart();
+		File log = WriteAheadLog.logFile("wl3");
+		long size = log.length();
+		FileOutputStream out = new FileOutputStream(log, true);
+		out.write(new byte[]{0, 0, 0, 40, 1, 2, 3, 4, 5, 6, 7});
+		out.close();
+		new File(FileManager.directory.getAbsolutePath()+ File.separator + "wl3"+ File.separator+"0.db").delete();
+		assertEquals("Replay should stop at the torn entry.", 4, DBApp.select("wl3").size());
+		assertEquals("The torn entry should be cut off.", size, log.length());
+		FileManager.reset();
+	}
+
+	@Test(timeout = 1000000)
+	public void testRecoveryUsesLoggedRecords() throws Exception
+	{
+		FileManager.reset();
+		DBApp.dataPageSize = 2;
+		String[] cols = {"id","name"};
+		DBApp.createTable("wl4", cols);
+		for(int i=0;i<6;i++)
+		{
+			DBApp.insert("wl4", new String[]{""+i, "a, ["+i+"]"});
+		}
+		ArrayList<String[]> before = DBApp.select("wl4");
+		new File(FileManager.directory.getAbsolutePath()+ File.separator + "wl4"+ File.separator+"1.db").delete();
+		ArrayList<String[]> missing = DBApp.validateRecords("wl4");
+		assertEquals("The records of the lost page should be missing.", 2, missing.size());
+		assertTrue("Missing records should keep values with commas and brackets.", Arrays.equals(before.get(2), missing.get(0)));
+		DBApp.recoverRecords("wl4", missing);
+		assertTrue("Recovery should report the recovered page.", DBApp.getLastTrace("wl4").contains("in pages: [1]"));
+		ArrayList<String[]> after = DBApp.select("wl4");
+		for(int i=0;i<before.size();i++)
+		{
+			assertTrue("Recovery should put the records back in place.", Arrays.equals(before.get(i), after.get(i)));
+		}
+		FileManager.reset();
+	}
+}
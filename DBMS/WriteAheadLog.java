@@ -0,0 +1,559 @@
+package DBMS;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of page images, one log file per table (<table>.wal).
+ * Every stored page is first appended to the log under the next log
+ * sequence number (lsn), which is also written into the page header, so a
+ * page on disk always tells which log entry it reflects.
+ *
+ * Layout: header [magic int, version int, startLsn long], then entries
+ * [payload length int, lsn long, pageNumber int, payload, crc32 int] where
+ * the checksum covers lsn, page number and payload. A torn or corrupt tail
+ * ends the log.
+ *
+ * The first time a table is used after start-up its log is replayed: every
+ * page missing on disk or older than its last logged image is rewritten.
+ * A checkpoint writes back the table's dirty pages, forces the pages the log
+ * covers to disk, writes the statistics counted in memory and truncates the
+ * log.
+ * With noForce set, stored pages stay dirty in the buffer pool until a
+ * checkpoint or eviction writes them.
+ *
+ * With syncCommits set, a page store only returns once its entry is forced
+ * to disk, and only then writes the page. Forcing is done by one commit
+ * thread for every log at once, as soon as commitRecords entries are waiting
+ * or the oldest waiting entry is commitIntervalMillis old, so concurrent
+ * writers share a single force. Inserts wait once they released the table's
+ * locks, so concurrent inserts into one table share forces too.
+ */
+public class WriteAheadLog
+{
+	static final int MAGIC = 0x57414C47; // "WALG"
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 16;
+	static final int ENTRY_OVERHEAD = 20;
+
+	// log page writes before they reach the page files
+	static boolean enabled = true;
+	// keep stored pages dirty in the buffer pool instead of writing them
+	static boolean noForce = false;
+	// log size that triggers a checkpoint
+	static long checkpointBytes = 4L << 20;
+	// make page stores wait until their entry is forced to disk
+	static boolean syncCommits = false;
+	// longest time an entry waits for the commit thread
+	static long commitIntervalMillis = 2;
+	// waiting entries that trigger a force before the interval ends
+	static int commitRecords = 64;
+
+	private static final HashMap<String, WriteAheadLog> logs = new HashMap<String, WriteAheadLog>();
+	private static final HashSet<String> recovered = new HashSet<String>();
+
+	// group commit state, guarded by commitLock
+	private static final Object commitLock = new Object();
+	private static Thread committer;
+	private static int pending;
+	private static long firstPendingAt;
+	private static long forces;
+	private static long committed;
+
+	private final String tableName;
+	private final File file;
+	private RandomAccessFile raf;
+	private FileChannel channel;
+	private long nextLsn;
+	// last lsn appended and last lsn known to be on disk, guarded by commitLock
+	private long appendedLsn;
+	private long durableLsn;
+
+	private WriteAheadLog(String tableName, File file)
+	{
+		this.tableName = tableName;
+		this.file = file;
+	}
+
+	static File logFile(String tableName)
+	{
+		return new File(new File(FileManager.directory, tableName), tableName + ".wal");
+	}
+
+	// Returns the open log of the table, replaying it first if this is the
+	// first use of the table since start-up.
+	static synchronized WriteAheadLog forTable(String tableName)
+	{
+		WriteAheadLog log = logs.get(tableName);
+		if(log == null)
+		{
+			log = new WriteAheadLog(tableName, logFile(tableName));
+			try
+			{
+				log.open();
+				if(recovered.add(tableName))
+				{
+					log.redo();
+				}
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+				log.close();
+				return null;
+			}
+			logs.put(tableName, log);
+		}
+		return log;
+	}
+
+	// Replays the log of the table if it has one and was not replayed yet.
+	static void ensureRecovered(String tableName)
+	{
+		synchronized(WriteAheadLog.class)
+		{
+			if(recovered.contains(tableName) || logs.containsKey(tableName))
+			{
+				return;
+			}
+			if(!logFile(tableName).exists())
+			{
+				recovered.add(tableName);
+				return;
+			}
+		}
+		forTable(tableName);
+	}
+
+	private void open() throws IOException
+	{
+		file.getParentFile().mkdirs();
+		boolean exists = file.exists() && file.length() >= HEADER_SIZE;
+		raf = new RandomAccessFile(file, "rw");
+		channel = raf.getChannel();
+		if(!exists)
+		{
+			truncate(1);
+			return;
+		}
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		channel.read(header, 0);
+		header.flip();
+		if(header.getInt() != MAGIC)
+		{
+			throw new IOException("Not a write-ahead log: " + file);
+		}
+		header.getInt();
+		nextLsn = header.getLong();
+		// find the end of the valid entries and drop a torn tail
+		long end = scan(null);
+		if(end < channel.size())
+		{
+			channel.truncate(end);
+		}
+	}
+
+	// Visits the valid entries in log order and returns the offset after the
+	// last one. Sets nextLsn past the last entry.
+	private long scan(Map<Integer, byte[]> images) throws IOException
+	{
+		long pos = HEADER_SIZE;
+		long size = channel.size();
+		ByteBuffer head = ByteBuffer.allocate(16);
+		while(pos + ENTRY_OVERHEAD <= size)
+		{
+			head.clear();
+			channel.read(head, pos);
+			head.flip();
+			int length = head.getInt();
+			long lsn = head.getLong();
+			int pageNumber = head.getInt();
+			if(length < 0 || pos + ENTRY_OVERHEAD + length > size)
+			{
+				break;
+			}
+			ByteBuffer body = ByteBuffer.allocate(length + 4);
+			while(body.hasRemaining())
+			{
+				if(channel.read(body, pos + 16 + body.position()) < 0)
+				{
+					break;
+				}
+			}
+			body.flip();
+			byte[] payload = new byte[length];
+			body.get(payload);
+			int crc = body.getInt();
+			if(crc != checksum(lsn, pageNumber, payload))
+			{
+				break;
+			}
+			if(images != null)
+			{
+				images.put(pageNumber, payload);
+			}
+			nextLsn = Math.max(nextLsn, lsn + 1);
+			pos += ENTRY_OVERHEAD + length;
+		}
+		return pos;
+	}
+
+	private static int checksum(long lsn, int pageNumber, byte[] payload)
+	{
+		CRC32 crc = new CRC32();
+		ByteBuffer b = ByteBuffer.allocate(12);
+		b.putLong(lsn).putInt(pageNumber);
+		crc.update(b.array());
+		crc.update(payload);
+		return (int)crc.getValue();
+	}
+
+	// Rewrites every page that is missing on disk or older than its last image.
+	private void redo() throws IOException
+	{
+		TreeMap<Integer, byte[]> images = new TreeMap<Integer, byte[]>();
+		scan(images);
+		for(Map.Entry<Integer, byte[]> e : images.entrySet())
+		{
+			long imageLsn = PageCodec.lsn(ByteBuffer.wrap(e.getValue()));
+			Long diskLsn = FileManager.readPageLsn(tableName, e.getKey());
+			if(diskLsn == null || diskLsn < imageLsn)
+			{
+				FileManager.writePageImage(tableName, e.getKey(), e.getValue());
+			}
+		}
+		// the catalog is not logged, so its counts may predate the logged
+		// pages even when they all reached disk before the catalog did
+		if(!images.isEmpty())
+		{
+			FileManager.repairTableCounts(tableName, images.lastKey() + 1);
+		}
+	}
+
+	// Assigns the next lsn to the page and appends its image. Returns the
+	// encoded image, or null when the log could not be written.
+	synchronized byte[] append(int pageNumber, Page p)
+	{
+		long lsn = nextLsn;
+		p.setLsn(lsn);
+		byte[] payload = PageCodec.encode(p);
+		ByteBuffer buf = ByteBuffer.allocate(ENTRY_OVERHEAD + payload.length);
+		buf.putInt(payload.length).putLong(lsn).putInt(pageNumber).put(payload)
+				.putInt(checksum(lsn, pageNumber, payload));
+		buf.flip();
+		try
+		{
+			long pos = channel.size();
+			while(buf.hasRemaining())
+			{
+				channel.write(buf, pos + buf.position());
+			}
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			return null;
+		}
+		nextLsn++;
+		if(syncCommits)
+		{
+			synchronized(commitLock)
+			{
+				appendedLsn = lsn;
+				if(pending++ == 0)
+				{
+					firstPendingAt = System.currentTimeMillis();
+				}
+				startCommitter();
+				commitLock.notifyAll();
+			}
+		}
+		return payload;
+	}
+
+	// Blocks until the entry with the given lsn has been forced to disk.
+	void awaitDurable(long lsn)
+	{
+		synchronized(commitLock)
+		{
+			while(durableLsn < lsn && committer != null)
+			{
+				try
+				{
+					commitLock.wait();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	// Forces the log up to the given lsn right away, for a page about to be
+	// written back before the commit thread got to its entry.
+	void forceUpTo(long lsn)
+	{
+		long upTo;
+		synchronized(commitLock)
+		{
+			if(durableLsn >= lsn)
+			{
+				return;
+			}
+			upTo = appendedLsn;
+		}
+		force(upTo);
+	}
+
+	private void force(long upTo)
+	{
+		try
+		{
+			channel.force(false);
+		}
+		catch (IOException e)
+		{
+			// waiters are released anyway rather than blocking forever
+			e.printStackTrace();
+		}
+		synchronized(commitLock)
+		{
+			forces++;
+			durableLsn = Math.max(durableLsn, upTo);
+			commitLock.notifyAll();
+		}
+	}
+
+	// Must be called with commitLock held.
+	private static void startCommitter()
+	{
+		if(committer != null)
+		{
+			return;
+		}
+		committer = new Thread(WriteAheadLog::commitLoop, "wal-group-commit");
+		committer.setDaemon(true);
+		committer.start();
+	}
+
+	// Waits for a batch of entries, then forces every log that has entries
+	// not yet on disk.
+	private static void commitLoop()
+	{
+		while(true)
+		{
+			int batch;
+			synchronized(commitLock)
+			{
+				try
+				{
+					while(pending == 0)
+					{
+						commitLock.wait();
+					}
+					long deadline = firstPendingAt + commitIntervalMillis;
+					long now = System.currentTimeMillis();
+					while(pending > 0 && pending < commitRecords && now < deadline)
+					{
+						commitLock.wait(deadline - now);
+						now = System.currentTimeMillis();
+					}
+				}
+				catch (InterruptedException e)
+				{
+					return;
+				}
+				batch = pending;
+				pending = 0;
+				committed += batch;
+			}
+			ArrayList<WriteAheadLog> open;
+			synchronized(WriteAheadLog.class)
+			{
+				open = new ArrayList<WriteAheadLog>(logs.values());
+			}
+			for(WriteAheadLog log : open)
+			{
+				long upTo;
+				synchronized(commitLock)
+				{
+					if(log.durableLsn >= log.appendedLsn)
+					{
+						continue;
+					}
+					upTo = log.appendedLsn;
+				}
+				log.force(upTo);
+			}
+		}
+	}
+
+	// Writes back the dirty pages of the table and empties the log, once the
+	// log has grown past checkpointBytes.
+	synchronized void checkpointIfFull()
+	{
+		try
+		{
+			if(channel.size() >= checkpointBytes)
+			{
+				checkpoint();
+			}
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	synchronized void checkpoint() throws IOException
+	{
+		BufferPool.flush(tableName);
+		// the entries may only go once the pages they reflect are on disk
+		TreeMap<Integer, byte[]> images = new TreeMap<Integer, byte[]>();
+		scan(images);
+		FileManager.forceTablePages(tableName, images.keySet());
+		FileManager.storeTableStats(tableName);
+		truncate(nextLsn);
+	}
+
+	private void truncate(long startLsn) throws IOException
+	{
+		channel.truncate(0);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).putInt(VERSION).putLong(startLsn);
+		header.flip();
+		channel.write(header, 0);
+		nextLsn = startLsn;
+	}
+
+	// Latest logged image of every page still covered by the log.
+	synchronized TreeMap<Integer, Page> pageImages()
+	{
+		TreeMap<Integer, byte[]> images = new TreeMap<Integer, byte[]>();
+		TreeMap<Integer, Page> res = new TreeMap<Integer, Page>();
+		try
+		{
+			scan(images);
+			for(Map.Entry<Integer, byte[]> e : images.entrySet())
+			{
+				res.put(e.getKey(), PageCodec.decode(ByteBuffer.wrap(e.getValue())));
+			}
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		return res;
+	}
+
+	synchronized long size() throws IOException
+	{
+		return channel.size();
+	}
+
+	synchronized long getNextLsn()
+	{
+		return nextLsn;
+	}
+
+	private synchronized void close()
+	{
+		synchronized(commitLock)
+		{
+			// nobody waits on a closed log
+			durableLsn = Long.MAX_VALUE;
+			commitLock.notifyAll();
+		}
+		try
+		{
+			if(raf != null)
+			{
+				raf.close();
+			}
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	// Closes and deletes the log of a table being created over an older one,
+	// so its page images are never replayed into the new table.
+	static synchronized void drop(String tableName)
+	{
+		WriteAheadLog log = logs.remove(tableName);
+		if(log != null)
+		{
+			log.close();
+		}
+		logFile(tableName).delete();
+		recovered.add(tableName);
+	}
+
+	// Closes every log and forgets which tables were replayed.
+	static synchronized void closeAll()
+	{
+		for(WriteAheadLog log : logs.values())
+		{
+			log.close();
+		}
+		logs.clear();
+		recovered.clear();
+	}
+
+	public static long getForces()
+	{
+		synchronized(commitLock)
+		{
+			return forces;
+		}
+	}
+
+	public static long getCommitted()
+	{
+		synchronized(commitLock)
+		{
+			return committed;
+		}
+	}
+
+	public static void resetStats()
+	{
+		synchronized(commitLock)
+		{
+			forces = 0;
+			committed = 0;
+		}
+	}
+
+	// Forces a checkpoint of the table, returning false if it has no log.
+	public static boolean checkpoint(String tableName)
+	{
+		WriteAheadLog log = enabled ? forTable(tableName) : null;
+		if(log == null)
+		{
+			return false;
+		}
+		try
+		{
+			log.checkpoint();
+			return true;
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			return false;
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package DBMS;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-page minimum and maximum of every column. A page whose range of values
+ * excludes a predicate is skipped without being read. Null values are left
+ * out of the ranges.
+ *
+ * A zone is only started for a page when its first record is inserted, so it
+ * always covers every record of the page; pages without a zone (written
+ * before zone maps existed, or restored from the write-ahead log) are always
+ * read. Inserts only ever widen zones.
+ *
+ * FileManager keeps one zone map per table in memory, shared by every loaded
+ * catalog of the table, and appends the zone of a page to the table's zone
+ * log once the page is full, so the zone of the tail page is lost on a
+ * restart until the page fills up.
+ */
+public class ZoneMap
+{
+	// per page, null for pages without a zone
+	private final ArrayList<String[]> mins = new ArrayList<String[]>();
+	private final ArrayList<String[]> maxs = new ArrayList<String[]>();
+
+	// Widens the zone of the page to the record, starting the zone when the
+	// record is the first one of a new page.
+	synchronized void add(int pageNumber, String[] record, ColumnType[] types, boolean newPage)
+	{
+		if(pageNumber >= mins.size() || mins.get(pageNumber) == null)
+		{
+			if(!newPage)
+			{
+				return;
+			}
+			while(mins.size() <= pageNumber)
+			{
+				mins.add(null);
+				maxs.add(null);
+			}
+			mins.set(pageNumber, new String[record.length]);
+			maxs.set(pageNumber, new String[record.length]);
+		}
+		String[] min = mins.get(pageNumber);
+		String[] max = maxs.get(pageNumber);
+		for(int j = 0; j < record.length && j < min.length; j++)
+		{
+			String v = record[j];
+			if(v == null)
+			{
+				continue;
+			}
+			ColumnType type = types == null ? null : types[j];
+			if(min[j] == null || compare(type, v, min[j]) < 0)
+			{
+				min[j] = v;
+			}
+			if(max[j] == null || compare(type, v, max[j]) > 0)
+			{
+				max[j] = v;
+			}
+		}
+	}
+
+	// Sets the zone of the page to the range of the records it holds.
+	synchronized void set(int pageNumber, List<String[]> records, ColumnType[] types)
+	{
+		if(pageNumber < mins.size())
+		{
+			mins.set(pageNumber, null);
+			maxs.set(pageNumber, null);
+		}
+		if(records.isEmpty())
+		{
+			return;
+		}
+		add(pageNumber, records.get(0), types, true);
+		for(String[] record : records)
+		{
+			add(pageNumber, record, types, false);
+		}
+	}
+
+	// Sets the zone of the page to the given range, as read from a zone log.
+	synchronized void set(int pageNumber, String[] min, String[] max)
+	{
+		while(mins.size() <= pageNumber)
+		{
+			mins.add(null);
+			maxs.add(null);
+		}
+		mins.set(pageNumber, min);
+		maxs.set(pageNumber, max);
+	}
+
+	private static int compare(ColumnType type, String a, String b)
+	{
+		return type == null ? a.compareTo(b) : type.compare(a, b);
+	}
+
+	// False only when the zone of the page proves that no record of it
+	// satisfies all the bound predicates.
+	synchronized boolean mayMatch(int pageNumber, Predicate[] bound)
+	{
+		if(pageNumber >= mins.size() || mins.get(pageNumber) == null)
+		{
+			return true;
+		}
+		String[] min = mins.get(pageNumber);
+		String[] max = maxs.get(pageNumber);
+		for(Predicate p : bound)
+		{
+			int j = p.getColumnIndex();
+			if(j < min.length && !p.mayMatch(min[j], max[j]))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// {minimums, maximums} of the page, null when it has no zone.
+	synchronized String[][] getZone(int pageNumber)
+	{
+		if(pageNumber >= mins.size() || mins.get(pageNumber) == null)
+		{
+			return null;
+		}
+		return new String[][]{mins.get(pageNumber).clone(), maxs.get(pageNumber).clone()};
+	}
+
+	// Minimum of a column on a page, null when unknown or only nulls.
+	public synchronized String getMin(int pageNumber, int column)
+	{
+		return pageNumber < mins.size() && mins.get(pageNumber) != null ? mins.get(pageNumber)[column] : null;
+	}
+
+	public synchronized String getMax(int pageNumber, int column)
+	{
+		return pageNumber < maxs.size() && maxs.get(pageNumber) != null ? maxs.get(pageNumber)[column] : null;
+	}
+}